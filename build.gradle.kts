@@ -2,8 +2,12 @@ plugins {
     java
     id("org.springframework.boot") version "3.3.3"
     id("io.spring.dependency-management") version "1.1.6"
+    id("me.champeau.jmh") version "0.7.3"
 }
 
+// ahead-of-time processed bean definitions, used when started with -Dspring.aot.enabled=true
+apply(plugin = "org.springframework.boot.aot")
+
 group = "com.github.gluhov"
 version = "1.0.0"
 
@@ -15,16 +19,40 @@ repositories {
     mavenCentral()
 }
 
+val loadtest by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+
+configurations[loadtest.implementationConfigurationName].extendsFrom(configurations.implementation.get())
+configurations[loadtest.runtimeOnlyConfigurationName].extendsFrom(configurations.runtimeOnly.get())
+
 dependencies {
     implementation("org.springframework.boot:spring-boot-starter-security")
     implementation("org.springframework.boot:spring-boot-starter-webflux")
     implementation("org.springframework.boot:spring-boot-starter-oauth2-resource-server")
+    implementation("org.springframework.boot:spring-boot-starter-actuator")
+    implementation("org.springframework.boot:spring-boot-starter-aop")
 
     compileOnly("org.projectlombok:lombok")
     developmentOnly("org.springframework.boot:spring-boot-docker-compose")
 
     implementation("org.keycloak:keycloak-core:25.0.4")
     implementation("org.keycloak:keycloak-admin-client:25.0.4")
+    implementation("com.github.ben-manes.caffeine:caffeine")
+    implementation("io.github.resilience4j:resilience4j-spring-boot3:2.2.0")
+    implementation("io.github.resilience4j:resilience4j-reactor:2.2.0")
+    implementation("io.projectreactor:reactor-core-micrometer")
+    implementation("io.micrometer:micrometer-tracing-bridge-otel")
+    // kc.blocking-detection needs BlockHound at runtime, only builds made with -PblockingDetection carry it
+    compileOnly("io.projectreactor.tools:blockhound:1.0.9.RELEASE")
+    if (project.hasProperty("blockingDetection")) {
+        runtimeOnly("io.projectreactor.tools:blockhound:1.0.9.RELEASE")
+    }
+    implementation("org.springframework.boot:spring-boot-starter-data-r2dbc")
+    runtimeOnly("io.micrometer:micrometer-registry-prometheus")
+    runtimeOnly("io.opentelemetry:opentelemetry-exporter-otlp")
+    runtimeOnly("org.postgresql:r2dbc-postgresql")
 
     annotationProcessor("org.projectlombok:lombok")
 
@@ -34,10 +62,98 @@ dependencies {
     testImplementation("org.testcontainers:postgresql")
     testImplementation("com.github.dasniko:testcontainers-keycloak:3.4.0")
     testImplementation("io.projectreactor:reactor-test")
+    testImplementation("io.opentelemetry:opentelemetry-sdk-testing")
+    testImplementation("io.projectreactor.tools:blockhound:1.0.9.RELEASE")
+    testImplementation("io.projectreactor.tools:blockhound-junit-platform:1.0.9.RELEASE")
     testImplementation("org.testcontainers:junit-jupiter")
     testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+
+    jmh("org.springframework:spring-test")
+
+    "loadtestImplementation"("org.hdrhistogram:HdrHistogram:2.2.2")
 }
 
 tasks.withType<Test> {
     useJUnitPlatform()
-}
\ No newline at end of file
+    // BlockHound is installed in every test JVM and fails blocking calls on non-blocking threads, it has to add
+    // methods to JDK classes
+    jvmArgs("-XX:+AllowRedefinitionToAddDeleteMethods")
+}
+
+// AOT fixes the bean conditions at build time, the Keycloak settings only have to resolve, their values are read
+// again at startup
+tasks.named<org.springframework.boot.gradle.tasks.aot.ProcessAot>("processAot") {
+    args("--BASE_URL=http://keycloak", "--REALM=orchestrator", "--KEYCLOAK_USER=", "--KEYCLOAK_PASSWORD=",
+        "--KEYCLOAK_CLIENT_ID=", "--KEYCLOAK_CLIENT_SECRET=")
+}
+
+// only the application runs AOT-processed, test contexts would need Docker for the Testcontainers ones at build time
+tasks.named("processTestAot") {
+    enabled = false
+}
+
+// ./gradlew jmh -Pjmh.includes=JwtDecoder to run a subset
+jmh {
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+    benchmarkMode.set(listOf("thrpt"))
+    timeUnit.set("us")
+    resultFormat.set("JSON")
+    (project.findProperty("jmh.includes") as String?)?.let { includes.set(listOf(it)) }
+}
+
+// ./gradlew loadTest -Ploadtest.args="--rps=200,400,800 --stub.latency=20ms"
+tasks.register<JavaExec>("loadTest") {
+    description = "Runs the orchestrator against an in-process Keycloak stub at a target request rate."
+    group = "verification"
+    classpath = loadtest.runtimeClasspath
+    mainClass.set("com.github.gluhov.orchestrator.loadtest.LoadTest")
+    (project.findProperty("loadtest.args") as String?)?.let { args(it.trim().split(Regex("\\s+"))) }
+}
+
+// the boot jar unpacked into a jar whose classpath is the same in every run, which the CDS archive requires
+val cdsDir = layout.buildDirectory.dir("cds")
+val extractBootJar by tasks.registering(JavaExec::class) {
+    description = "Extracts the boot jar into build/cds for class data sharing."
+    group = "build"
+    val bootJar = tasks.bootJar.flatMap { it.archiveFile }
+    inputs.file(bootJar)
+    outputs.dir(cdsDir)
+    classpath(bootJar)
+    mainClass.set("org.springframework.boot.loader.launch.JarLauncher")
+    systemProperty("jarmode", "tools")
+    args("extract", "--force", "--destination", cdsDir.get().asFile.path)
+}
+
+// java -XX:SharedArchiveFile=build/cds/application.jsa -Dspring.aot.enabled=true -jar build/cds/project-1.0.0.jar
+tasks.register<JavaExec>("cdsArchive") {
+    description = "Trains the class data sharing archive build/cds/application.jsa by starting the extracted jar once."
+    group = "build"
+    dependsOn(extractBootJar)
+    val archive = cdsDir.map { it.file("application.jsa") }
+    outputs.file(archive)
+    classpath(cdsDir.map { it.file(tasks.bootJar.get().archiveFileName.get()) })
+    mainClass.set("com.github.gluhov.orchestrator.OrchestratorApplication")
+    // the context is refreshed and the JVM exits before anything connects to Keycloak or Postgres
+    jvmArgs("-XX:ArchiveClassesAtExit=${archive.get().asFile.path}", "-Dspring.context.exit=onRefresh",
+        "-Dspring.aot.enabled=true")
+    args("--BASE_URL=http://keycloak", "--REALM=orchestrator", "--KEYCLOAK_USER=", "--KEYCLOAK_PASSWORD=",
+        "--KEYCLOAK_CLIENT_ID=", "--KEYCLOAK_CLIENT_SECRET=")
+}
+
+// ./gradlew startupBenchmark -Pstartup.args="--runs=10 --modes=default,aot-cds"
+tasks.register<JavaExec>("startupBenchmark") {
+    description = "Measures the time to the first served login of a fresh orchestrator JVM per startup mode."
+    group = "verification"
+    dependsOn("cdsArchive")
+    classpath = loadtest.runtimeClasspath
+    mainClass.set("com.github.gluhov.orchestrator.loadtest.StartupBenchmark")
+    args("--jar=${cdsDir.get().file(tasks.bootJar.get().archiveFileName.get()).asFile.path}",
+        "--cds-archive=${cdsDir.get().file("application.jsa").asFile.path}")
+    (project.findProperty("startup.args") as String?)?.let { args(it.trim().split(Regex("\\s+"))) }
+}
+
+tasks.check {
+    dependsOn(loadtest.classesTaskName)
+}
@@ -0,0 +1,61 @@
+package com.github.gluhov.orchestrator.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.gluhov.orchestrator.dto.AuthRequestDto;
+import com.github.gluhov.orchestrator.dto.AuthResponseDto;
+import com.github.gluhov.orchestrator.dto.UserInfoDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Snake case Jackson (de)serialization of the DTOs exchanged with clients, using an ObjectMapper configured
+ * the way Spring Boot configures the WebFlux codecs.
+ */
+@State(Scope.Benchmark)
+public class DtoSerializationBenchmark {
+    private ObjectMapper objectMapper;
+    private byte[] authRequestJson;
+    private AuthResponseDto authResponse;
+    private UserInfoDto userInfo;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        authRequestJson = """
+                {"username":"john.doe","email":"john.doe@example.com","password":"password",\
+                "first_name":"John","last_name":"Doe"}"""
+                .getBytes(StandardCharsets.UTF_8);
+        authResponse = AuthResponseDto.builder()
+                .accessToken(Fixtures.ACCESS_TOKEN)
+                .refreshToken(Fixtures.ACCESS_TOKEN)
+                .expiresIn(300)
+                .tokenType("Bearer")
+                .build();
+        userInfo = UserInfoDto.builder()
+                .username("john.doe")
+                .email("john.doe@example.com")
+                .firstName("John")
+                .lastName("Doe")
+                .build();
+    }
+
+    @Benchmark
+    public AuthRequestDto readAuthRequest() throws Exception {
+        return objectMapper.readValue(authRequestJson, AuthRequestDto.class);
+    }
+
+    @Benchmark
+    public byte[] writeAuthResponse() throws Exception {
+        return objectMapper.writeValueAsBytes(authResponse);
+    }
+
+    @Benchmark
+    public byte[] writeUserInfo() throws Exception {
+        return objectMapper.writeValueAsBytes(userInfo);
+    }
+}
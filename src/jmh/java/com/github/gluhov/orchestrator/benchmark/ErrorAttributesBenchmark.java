@@ -0,0 +1,52 @@
+package com.github.gluhov.orchestrator.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.gluhov.orchestrator.errorhandling.AppErrorAttributes;
+import com.github.gluhov.orchestrator.exception.AuthException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.boot.web.error.ErrorAttributeOptions;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.ServerRequest;
+
+import java.util.Map;
+
+/**
+ * Rendering of an expected failure (wrong credentials) to the response body, as done for every failed request by
+ * AppErrorWebExceptionHandler.
+ */
+@State(Scope.Benchmark)
+public class ErrorAttributesBenchmark {
+    private AppErrorAttributes errorAttributes;
+    private ServerRequest request;
+    private AuthException error;
+
+    @Setup
+    public void setUp() {
+        errorAttributes = new AppErrorAttributes(new SimpleMeterRegistry(), new ObjectMapper());
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/api/v1/auth/login"));
+        error = new AuthException("Error from Keycloak: {\"error\":\"invalid_grant\"}", "O_AUTHENTICATE_ERROR");
+        errorAttributes.storeErrorInformation(error, exchange);
+        request = ServerRequest.create(exchange, HandlerStrategies.withDefaults().messageReaders());
+    }
+
+    @Benchmark
+    public byte[] renderAuthError() {
+        return errorAttributes.render(error).body();
+    }
+
+    @Benchmark
+    public Map<String, Object> authErrorAttributes() {
+        return errorAttributes.getErrorAttributes(request, ErrorAttributeOptions.defaults());
+    }
+
+    @Benchmark
+    public AuthException createAuthError() {
+        return new AuthException("Error from Keycloak: {\"error\":\"invalid_grant\"}", "O_AUTHENTICATE_ERROR");
+    }
+}
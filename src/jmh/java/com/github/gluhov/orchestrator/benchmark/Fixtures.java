@@ -0,0 +1,25 @@
+package com.github.gluhov.orchestrator.benchmark;
+
+final class Fixtures {
+    /**
+     * Size and shape of a Keycloak access token, the signature is not meant to verify.
+     */
+    static final String ACCESS_TOKEN = "eyJhbGciOiJSUzI1NiIsInR5cCIgOiAiSldUIiwia2lkIiA6ICJxV0N3d3JzX0dZbW9Yb0F3bUJ0b2xfSmNjQ2hfR0w4R1dpbXJ0cHJGZ2Y0In0."
+            + "eyJleHAiOjE3MjYwNTg0MDAsImlhdCI6MTcyNjA1ODEwMCwianRpIjoiNGI3Y2E0ZjEtYjUyNy00ZjY4LWI3YjEtM2Y3ZmM0ZDM2ZjQxIiwiaXNzIjoiaHR0cDovL2xvY2FsaG9zdDo4MDg4L3JlYWxtcy9vcmNoZXN0cmF0b3ItcmVhbG0iLCJhdWQiOiJhY2NvdW50Iiwic3ViIjoiOGE0ZTJkYjYtNWE0Yy00YjIzLWJkZjgtZjI4MzM1YzE1YmQ4IiwidHlwIjoiQmVhcmVyIiwiYXpwIjoib3JjaGVzdHJhdG9yIiwic2lkIjoiYTFiMmMzZDQtZTVmNi03YTgwLTkwYjEtYzJkM2U0ZjVhNmI3IiwiYWNyIjoiMSIsInJlYWxtX2FjY2VzcyI6eyJyb2xlcyI6WyJvZmZsaW5lX2FjY2VzcyIsInVtYV9hdXRob3JpemF0aW9uIl19LCJzY29wZSI6Im9wZW5pZCBwcm9maWxlIGVtYWlsIiwiZW1haWxfdmVyaWZpZWQiOnRydWUsIm5hbWUiOiJKb2huIERvZSIsInByZWZlcnJlZF91c2VybmFtZSI6ImpvaG4uZG9lIiwiZ2l2ZW5fbmFtZSI6IkpvaG4iLCJmYW1pbHlfbmFtZSI6IkRvZSIsImVtYWlsIjoiam9obi5kb2VAZXhhbXBsZS5jb20ifQ."
+            + "c2lnbmF0dXJlLXBsYWNlaG9sZGVyLXNpZ25hdHVyZS1wbGFjZWhvbGRlci1zaWduYXR1cmUtcGxhY2Vob2xkZXItc2lnbmF0dXJlLXBsYWNlaG9sZGVyLXNpZ25hdHVyZS1wbGFjZWhvbGRlci1zaWduYXR1cmUtcGxhY2Vob2xkZXItc2lnbmF0dXJlLXBsYWNlaG9sZGVyLXNpZ25hdHVyZS1wbGFjZWhvbGRlci1zaWduYXR1cmUtcGxhY2Vob2xkZXI";
+
+    /**
+     * Token endpoint response of Keycloak for the password grant with the openid scope.
+     */
+    static final String TOKEN_RESPONSE = "{\"access_token\":\"" + ACCESS_TOKEN + "\","
+            + "\"expires_in\":300,\"refresh_expires_in\":1800,"
+            + "\"refresh_token\":\"" + ACCESS_TOKEN + "\","
+            + "\"token_type\":\"Bearer\","
+            + "\"id_token\":\"" + ACCESS_TOKEN + "\","
+            + "\"not-before-policy\":0,"
+            + "\"session_state\":\"a1b2c3d4-e5f6-7a80-90b1-c2d3e4f5a6b7\","
+            + "\"scope\":\"openid profile email\"}";
+
+    private Fixtures() {
+    }
+}
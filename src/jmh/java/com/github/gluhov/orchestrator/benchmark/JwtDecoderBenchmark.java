@@ -0,0 +1,70 @@
+package com.github.gluhov.orchestrator.benchmark;
+
+import com.github.gluhov.orchestrator.security.CachingReactiveJwtDecoder;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Decoding of a Keycloak-like RS256 access token with the decoder chain of WebSecurityConfig, with the key set
+ * already in memory as it is once CachingJwkSource is warm.
+ */
+@State(Scope.Benchmark)
+public class JwtDecoderBenchmark {
+    private ReactiveJwtDecoder nimbusDecoder;
+    private ReactiveJwtDecoder cachingDecoder;
+    private String token;
+
+    @Setup
+    public void setUp() throws Exception {
+        RSAKey key = new RSAKeyGenerator(2048).keyID("benchmark").generate();
+        JWK publicKey = key.toPublicJWK();
+        nimbusDecoder = NimbusReactiveJwtDecoder.withJwkSource(jwt -> Flux.just(publicKey)).build();
+        cachingDecoder = new CachingReactiveJwtDecoder(nimbusDecoder, 10_000, Duration.ofMinutes(5), new SimpleMeterRegistry());
+
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .issuer("http://localhost:8088/realms/orchestrator-realm")
+                .subject("8a4e2db6-5a4c-4b23-bdf8-f28335c15bd8")
+                .audience(List.of("account"))
+                .issueTime(new Date())
+                .expirationTime(Date.from(Instant.now().plus(Duration.ofHours(1))))
+                .claim("preferred_username", "john.doe")
+                .claim("email", "john.doe@example.com")
+                .claim("given_name", "John")
+                .claim("family_name", "Doe")
+                .claim("scope", "openid profile email")
+                .build();
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID("benchmark").build(), claims);
+        jwt.sign(new RSASSASigner(key));
+        token = jwt.serialize();
+    }
+
+    @Benchmark
+    public Jwt verify() {
+        return nimbusDecoder.decode(token).block();
+    }
+
+    @Benchmark
+    public Jwt verifyCached() {
+        return cachingDecoder.decode(token).block();
+    }
+}
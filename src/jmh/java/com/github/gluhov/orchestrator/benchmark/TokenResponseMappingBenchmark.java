@@ -0,0 +1,85 @@
+package com.github.gluhov.orchestrator.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.gluhov.orchestrator.dto.AuthResponseDto;
+import com.github.gluhov.orchestrator.security.TokenResponseParser;
+import org.keycloak.representations.AccessTokenResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Work done on a token endpoint response: binding it to {@link AccessTokenResponse} and copying the fields returned
+ * to the client into {@link AuthResponseDto}, against reading only those fields with {@link TokenResponseParser}
+ * as SecurityService does. The decode benchmarks start from the response split into network-sized buffers, as the
+ * web client receives it.
+ */
+@State(Scope.Benchmark)
+public class TokenResponseMappingBenchmark {
+    private static final int CHUNK_SIZE = 1024;
+    private static final ResolvableType ACCESS_TOKEN_RESPONSE = ResolvableType.forClass(AccessTokenResponse.class);
+
+    private ObjectMapper objectMapper;
+    private Jackson2JsonDecoder decoder;
+    private byte[] tokenResponseJson;
+    private AccessTokenResponse accessTokenResponse;
+
+    @Setup
+    public void setUp() throws Exception {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        decoder = new Jackson2JsonDecoder(objectMapper);
+        tokenResponseJson = Fixtures.TOKEN_RESPONSE.getBytes(StandardCharsets.UTF_8);
+        accessTokenResponse = objectMapper.readValue(tokenResponseJson, AccessTokenResponse.class);
+    }
+
+    @Benchmark
+    public AuthResponseDto bindAndMap() throws Exception {
+        return map(objectMapper.readValue(tokenResponseJson, AccessTokenResponse.class));
+    }
+
+    @Benchmark
+    public AuthResponseDto decodeAndMap() {
+        return decoder.decodeToMono(chunks(), ACCESS_TOKEN_RESPONSE, null, Map.of())
+                .map(decoded -> map((AccessTokenResponse) decoded))
+                .block();
+    }
+
+    @Benchmark
+    public AuthResponseDto streamingParse() {
+        return TokenResponseParser.parse(chunks()).block();
+    }
+
+    @Benchmark
+    public AuthResponseDto mapOnly() {
+        return map(accessTokenResponse);
+    }
+
+    private Flux<DataBuffer> chunks() {
+        return Flux.range(0, (tokenResponseJson.length + CHUNK_SIZE - 1) / CHUNK_SIZE).map(this::chunk);
+    }
+
+    private DataBuffer chunk(int index) {
+        return DefaultDataBufferFactory.sharedInstance.wrap(Arrays.copyOfRange(tokenResponseJson,
+                index * CHUNK_SIZE, Math.min(tokenResponseJson.length, (index + 1) * CHUNK_SIZE)));
+    }
+
+    private static AuthResponseDto map(AccessTokenResponse accessTokenResponse) {
+        return AuthResponseDto.builder()
+                .accessToken(accessTokenResponse.getToken())
+                .expiresIn(accessTokenResponse.getExpiresIn())
+                .refreshToken(accessTokenResponse.getRefreshToken())
+                .tokenType(accessTokenResponse.getTokenType())
+                .build();
+    }
+}
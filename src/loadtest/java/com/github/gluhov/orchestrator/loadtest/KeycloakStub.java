@@ -0,0 +1,308 @@
+package com.github.gluhov.orchestrator.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stand-in for the Keycloak endpoints the orchestrator calls: token (password, refresh_token and
+ * client_credentials grants), userinfo, certs, admin user creation and listing, and partial import. The listing
+ * serves the configured number of synthetic users {@code user-0..n}. Tokens are real RS256 JWTs verifiable
+ * with the published key set, credentials are not checked except that the password {@code wrong} is refused
+ * with 401. Every endpoint answers after the configured latency
+ * and fails with 503 at the configured rate. Users whose name starts with {@code admin} get the
+ * {@code orchestrator-admin} realm role.
+ */
+public class KeycloakStub implements AutoCloseable {
+    public enum Endpoint {
+        TOKEN, USERINFO, CERTS, ADMIN_USERS, LIST_USERS, PARTIAL_IMPORT
+    }
+
+    /**
+     * Injected behaviour of one endpoint: a fixed delay plus a uniformly distributed jitter, and the share of
+     * requests answered with 503.
+     */
+    public record Behaviour(Duration latency, Duration jitter, double errorRate) {
+        Duration nextDelay() {
+            long jitterNanos = jitter.toNanos();
+            return jitterNanos <= 0 ? latency
+                    : latency.plusNanos(ThreadLocalRandom.current().nextLong(jitterNanos + 1));
+        }
+
+        boolean nextFails() {
+            return errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate;
+        }
+    }
+
+    private record Reply(HttpResponseStatus status, String body, String location) {
+        static Reply json(String body) {
+            return new Reply(HttpResponseStatus.OK, body, null);
+        }
+    }
+
+    private static final String UNAVAILABLE = "{\"error\":\"temporarily_unavailable\",\"error_description\":\"Injected failure\"}";
+    private static final String ADMIN_PREFIX = "admin";
+    private static final String INVALID_REQUEST = "{\"error\":\"invalid_request\"}";
+    private static final String WRONG_PASSWORD = "wrong";
+    private static final String INVALID_GRANT = "{\"error\":\"invalid_grant\",\"error_description\":\"Invalid user credentials\"}";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String realm;
+    private final Map<Endpoint, Behaviour> behaviours;
+    private final Duration tokenTtl;
+    private final int users;
+    private final RSAKey signingKey;
+    private final JWSSigner signer;
+    private final String jwks;
+    private final Map<Endpoint, AtomicLong> served = new EnumMap<>(Endpoint.class);
+    private final Map<Endpoint, AtomicLong> failed = new EnumMap<>(Endpoint.class);
+    private final DisposableServer server;
+    private final String issuer;
+
+    public KeycloakStub(String realm, int port, Map<Endpoint, Behaviour> behaviours, Duration tokenTtl, int users) {
+        this.realm = realm;
+        this.behaviours = behaviours;
+        this.tokenTtl = tokenTtl;
+        this.users = users;
+        try {
+            this.signingKey = new RSAKeyGenerator(2048).keyID("loadtest").generate();
+            this.signer = new RSASSASigner(signingKey);
+        } catch (JOSEException e) {
+            throw new IllegalStateException("Failed to generate the signing key", e);
+        }
+        this.jwks = new JWKSet(signingKey.toPublicJWK()).toString();
+        for (Endpoint endpoint : Endpoint.values()) {
+            served.put(endpoint, new AtomicLong());
+            failed.put(endpoint, new AtomicLong());
+        }
+        String realmPath = "/realms/" + realm;
+        this.server = HttpServer.create()
+                .host("127.0.0.1")
+                .port(port)
+                .route(routes -> routes
+                        .post(realmPath + "/protocol/openid-connect/token", (request, response) -> reply(Endpoint.TOKEN, response, token(request)))
+                        .get(realmPath + "/protocol/openid-connect/userinfo", (request, response) -> reply(Endpoint.USERINFO, response, userInfo(request)))
+                        .get(realmPath + "/protocol/openid-connect/certs", (request, response) -> reply(Endpoint.CERTS, response, Mono.just(Reply.json(jwks))))
+                        .post("/admin/realms/" + realm + "/users", (request, response) -> reply(Endpoint.ADMIN_USERS, response, createUser(request)))
+                        .get("/admin/realms/" + realm + "/users", (request, response) -> reply(Endpoint.LIST_USERS, response, listUsers(request)))
+                        .post("/admin/realms/" + realm + "/partialImport", (request, response) -> reply(Endpoint.PARTIAL_IMPORT, response, partialImport(request))))
+                .bindNow();
+        this.issuer = getBaseUrl() + realmPath;
+    }
+
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.port();
+    }
+
+    public String getRealm() {
+        return realm;
+    }
+
+    public long getServed(Endpoint endpoint) {
+        return served.get(endpoint).get();
+    }
+
+    public long getFailed(Endpoint endpoint) {
+        return failed.get(endpoint).get();
+    }
+
+    @Override
+    public void close() {
+        server.disposeNow();
+    }
+
+    private Publisher<Void> reply(Endpoint endpoint, HttpServerResponse response, Mono<Reply> reply) {
+        Behaviour behaviour = behaviours.get(endpoint);
+        boolean fails = behaviour.nextFails();
+        served.get(endpoint).incrementAndGet();
+        if (fails) {
+            failed.get(endpoint).incrementAndGet();
+        }
+        return Mono.delay(behaviour.nextDelay())
+                .then(fails ? Mono.just(new Reply(HttpResponseStatus.SERVICE_UNAVAILABLE, UNAVAILABLE, null)) : reply)
+                .onErrorResume(IllegalArgumentException.class, e -> Mono.just(new Reply(HttpResponseStatus.BAD_REQUEST, INVALID_REQUEST, null)))
+                .flatMap(r -> {
+                    response.status(r.status());
+                    if (r.location() != null) {
+                        response.header(HttpHeaderNames.LOCATION, r.location());
+                    }
+                    if (r.body() == null) {
+                        return response.send();
+                    }
+                    return response.header(HttpHeaderNames.CONTENT_TYPE, "application/json")
+                            .sendString(Mono.just(r.body()))
+                            .then();
+                });
+    }
+
+    private Mono<Reply> token(HttpServerRequest request) {
+        return request.receive().aggregate().asString(StandardCharsets.UTF_8)
+                .map(body -> new QueryStringDecoder(body, false).parameters())
+                .map(form -> {
+                    String grantType = first(form, "grant_type");
+                    if ("password".equals(grantType) && WRONG_PASSWORD.equals(first(form, "password"))) {
+                        return new Reply(HttpResponseStatus.UNAUTHORIZED, INVALID_GRANT, null);
+                    }
+                    JWTClaimsSet subject = switch (grantType == null ? "" : grantType) {
+                        case "password" -> userClaims(first(form, "username"));
+                        case "refresh_token" -> parse(first(form, "refresh_token"));
+                        case "client_credentials" -> userClaims("service-account-" + first(form, "client_id"));
+                        default -> throw new IllegalArgumentException("Unsupported grant type " + grantType);
+                    };
+                    return Reply.json(tokenResponse(subject));
+                });
+    }
+
+    private Mono<Reply> userInfo(HttpServerRequest request) {
+        return Mono.fromCallable(() -> {
+            String authorization = request.requestHeaders().get(HttpHeaderNames.AUTHORIZATION, "");
+            JWTClaimsSet claims = parse(authorization.replaceFirst("(?i)^Bearer ", ""));
+            Map<String, Object> userInfo = new LinkedHashMap<>();
+            for (String claim : List.of("sub", "email", "email_verified", "preferred_username", "given_name", "family_name", "name")) {
+                userInfo.put(claim, claims.getClaim(claim));
+            }
+            return Reply.json(objectMapper.writeValueAsString(userInfo));
+        }).onErrorResume(IllegalArgumentException.class, e -> Mono.just(new Reply(HttpResponseStatus.UNAUTHORIZED,
+                "{\"error\":\"invalid_token\"}", null)));
+    }
+
+    private Mono<Reply> createUser(HttpServerRequest request) {
+        return request.receive().aggregate().asString(StandardCharsets.UTF_8)
+                .map(body -> new Reply(HttpResponseStatus.CREATED, null,
+                        getBaseUrl() + "/admin/realms/" + realm + "/users/" + UUID.randomUUID()));
+    }
+
+    private Mono<Reply> listUsers(HttpServerRequest request) {
+        return Mono.fromCallable(() -> {
+            Map<String, List<String>> query = new QueryStringDecoder(request.uri()).parameters();
+            int first = Integer.parseInt(Objects.requireNonNullElse(first(query, "first"), "0"));
+            int max = Integer.parseInt(Objects.requireNonNullElse(first(query, "max"), "100"));
+            List<Map<String, Object>> page = new ArrayList<>();
+            for (int i = first; i < Math.min(users, first + max); i++) {
+                Map<String, Object> user = new LinkedHashMap<>();
+                user.put("id", UUID.nameUUIDFromBytes(("user-" + i).getBytes(StandardCharsets.UTF_8)).toString());
+                user.put("username", "user-" + i);
+                user.put("email", "user-" + i + "@example.com");
+                user.put("firstName", "Load");
+                user.put("lastName", "Test");
+                user.put("enabled", true);
+                user.put("emailVerified", true);
+                user.put("createdTimestamp", 1_700_000_000_000L + i);
+                page.add(user);
+            }
+            return Reply.json(objectMapper.writeValueAsString(page));
+        });
+    }
+
+    private Mono<Reply> partialImport(HttpServerRequest request) {
+        return request.receive().aggregate().asByteArray()
+                .map(body -> {
+                    try {
+                        int users = objectMapper.readTree(body).path("users").size();
+                        return Reply.json("{\"overwritten\":0,\"added\":" + users + ",\"skipped\":0,\"results\":[]}");
+                    } catch (IOException e) {
+                        throw new IllegalArgumentException("Malformed partial import", e);
+                    }
+                });
+    }
+
+    private JWTClaimsSet userClaims(String username) {
+        String name = username == null ? "anonymous" : username;
+        return new JWTClaimsSet.Builder()
+                .subject(UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8)).toString())
+                .claim("preferred_username", name)
+                .claim("email", name + "@example.com")
+                .claim("email_verified", true)
+                .claim("given_name", "Load")
+                .claim("family_name", "Test")
+                .claim("name", "Load Test")
+                .claim("realm_access", Map.of("roles", name.startsWith(ADMIN_PREFIX)
+                        ? List.of("offline_access", "orchestrator-admin") : List.of("offline_access")))
+                .build();
+    }
+
+    private String tokenResponse(JWTClaimsSet subject) {
+        Instant now = Instant.now();
+        String sessionId = UUID.randomUUID().toString();
+        try {
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("access_token", sign(subject, now, "Bearer", sessionId));
+            response.put("expires_in", tokenTtl.toSeconds());
+            response.put("refresh_expires_in", tokenTtl.toSeconds());
+            response.put("refresh_token", sign(subject, now, "Refresh", sessionId));
+            response.put("token_type", "Bearer");
+            response.put("not-before-policy", 0);
+            response.put("session_state", sessionId);
+            response.put("scope", "openid profile email");
+            return objectMapper.writeValueAsString(response);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to issue a token", e);
+        }
+    }
+
+    private String sign(JWTClaimsSet subject, Instant now, String type, String sessionId) throws JOSEException {
+        JWTClaimsSet claims = new JWTClaimsSet.Builder(subject)
+                .jwtID(UUID.randomUUID().toString())
+                .issuer(issuer)
+                .audience("account")
+                .issueTime(Date.from(now))
+                .expirationTime(Date.from(now.plus(tokenTtl)))
+                .claim("typ", type)
+                .claim("azp", "orchestrator")
+                .claim("sid", sessionId)
+                .claim("scope", "openid profile email")
+                .build();
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(signingKey.getKeyID()).build(), claims);
+        jwt.sign(signer);
+        return jwt.serialize();
+    }
+
+    private static JWTClaimsSet parse(String token) {
+        if (token == null) {
+            throw new IllegalArgumentException("Missing token");
+        }
+        try {
+            return SignedJWT.parse(token).getJWTClaimsSet();
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("Malformed token", e);
+        }
+    }
+
+    private static String first(Map<String, List<String>> form, String name) {
+        List<String> values = form.get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+}
@@ -0,0 +1,147 @@
+package com.github.gluhov.orchestrator.loadtest;
+
+import com.github.gluhov.orchestrator.OrchestratorApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Offline load test of the orchestrator. Starts {@link KeycloakStub}, starts the orchestrator in the same JVM
+ * pointed at it (or uses {@code --target}), logs in a pool of users and then drives login, refresh-token,
+ * register and profile requests at each requested rate, printing throughput and p50/p99/p99.9 latency per step.
+ * Stepping the rate up shows where latency starts to climb and requests start to fail, i.e. the saturation point.
+ * <p>
+ * Options, all optional:
+ * <ul>
+ *     <li>{@code --rps=100,200,400} rates of the consecutive steps, {@code --duration=30s} length of a step,
+ *     {@code --warmup=10s} unreported run at the first rate</li>
+ *     <li>{@code --mix=login:1,refresh:1,register:1,profile:4} operation weights, {@code --users=200} seeded sessions</li>
+ *     <li>{@code --connections=1000}, {@code --timeout=10s}, {@code --max-in-flight=10000} load generator limits</li>
+ *     <li>{@code --stub.latency=10ms}, {@code --stub.jitter=5ms}, {@code --stub.error-rate=0.0}, each also per endpoint
+ *     as {@code --stub.token.latency}, {@code --stub.userinfo.*}, {@code --stub.certs.*}, {@code --stub.admin-users.*},
+ *     {@code --stub.list-users.*}, {@code --stub.partial-import.*};
+ *     {@code --stub.port=0}, {@code --stub.token-ttl=1h}, {@code --stub.users=10000} users listed by the admin API</li>
+ *     <li>{@code --app.<property>=<value>} properties of the in-process orchestrator, e.g. {@code --app.kc.profile.source=claims}</li>
+ *     <li>{@code --target=http://host:port} drive an orchestrator started separately and pointed at the stub,
+ *     {@code --stub-only} only run the stub until the process is stopped</li>
+ * </ul>
+ * Running the orchestrator in its own JVM keeps the load generator from competing with it for CPU.
+ */
+public final class LoadTest {
+    private static final String REALM = "orchestrator-realm";
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = new LoadTestOptions(args);
+        try (KeycloakStub stub = new KeycloakStub(REALM, options.getInt("stub.port", 0), options.getBehaviours(),
+                options.getDuration("stub.token-ttl", Duration.ofHours(1)), options.getInt("stub.users", 10_000))) {
+            System.out.printf("Keycloak stub listening on %s, realm %s%n", stub.getBaseUrl(), stub.getRealm());
+            if (Boolean.parseBoolean(options.getString("stub-only", "false"))) {
+                Thread.currentThread().join();
+            }
+            String target = options.getString("target", null);
+            ConfigurableApplicationContext context = null;
+            if (target == null) {
+                context = startOrchestrator(stub, options);
+                target = "http://127.0.0.1:" + context.getEnvironment().getProperty("local.server.port");
+            }
+            try {
+                run(target, stub, options);
+            } finally {
+                if (context != null) {
+                    context.close();
+                }
+            }
+        }
+        System.exit(0);
+    }
+
+    private static void run(String target, KeycloakStub stub, LoadTestOptions options) throws InterruptedException {
+        Duration timeout = options.getDuration("timeout", Duration.ofSeconds(10));
+        try (Workload workload = new Workload(target, options.getInt("connections", 1000), timeout,
+                options.getMix("mix", "login:1,refresh:1,register:1,profile:4"))) {
+            int users = options.getInt("users", 200);
+            System.out.printf("Seeding %d sessions against %s%n", users, target);
+            workload.seed(users);
+
+            OpenModelDriver driver = new OpenModelDriver(workload, options.getInt("max-in-flight", 10_000), timeout);
+            List<Double> rates = options.getRates("rps", "100");
+            Duration warmup = options.getDuration("warmup", Duration.ofSeconds(10));
+            if (!warmup.isZero()) {
+                System.out.printf("Warming up at %.0f rps for %s%n", rates.get(0), warmup);
+                driver.run(rates.get(0), warmup);
+            }
+            Duration duration = options.getDuration("duration", Duration.ofSeconds(30));
+            for (int i = 0; i < rates.size(); i++) {
+                Map<KeycloakStub.Endpoint, long[]> before = snapshot(stub);
+                OpenModelDriver.Step step = driver.run(rates.get(i), duration);
+                print(i + 1, rates.size(), step, before, snapshot(stub));
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext startOrchestrator(KeycloakStub stub, LoadTestOptions options) {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("BASE_URL", stub.getBaseUrl());
+        properties.put("REALM", stub.getRealm());
+        properties.put("KEYCLOAK_USER", "admin");
+        properties.put("KEYCLOAK_PASSWORD", "admin");
+        properties.put("KEYCLOAK_CLIENT_ID", "orchestrator");
+        properties.put("KEYCLOAK_CLIENT_SECRET", "secret");
+        properties.put("server.port", 0);
+        // failed Keycloak calls are logged per request, which would dominate the run under error injection
+        properties.put("logging.level.root", "error");
+        properties.put("logging.level.com.github.gluhov.orchestrator", "off");
+        // every request comes from the load generator's address
+        properties.put("kc.login-throttle.enabled", false);
+        properties.putAll(options.getApplicationProperties());
+        // passed as arguments so they take precedence over application.yaml
+        return new SpringApplicationBuilder(OrchestratorApplication.class)
+                .run(properties.entrySet().stream()
+                        .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                        .toArray(String[]::new));
+    }
+
+    private static Map<KeycloakStub.Endpoint, long[]> snapshot(KeycloakStub stub) {
+        Map<KeycloakStub.Endpoint, long[]> snapshot = new EnumMap<>(KeycloakStub.Endpoint.class);
+        for (KeycloakStub.Endpoint endpoint : KeycloakStub.Endpoint.values()) {
+            snapshot.put(endpoint, new long[]{stub.getServed(endpoint), stub.getFailed(endpoint)});
+        }
+        return snapshot;
+    }
+
+    private static void print(int index, int steps, OpenModelDriver.Step step,
+                              Map<KeycloakStub.Endpoint, long[]> before, Map<KeycloakStub.Endpoint, long[]> after) {
+        System.out.printf("%n== step %d/%d: %.0f rps for %s ==%n", index, steps, step.rate(), step.duration());
+        System.out.printf("%-10s %9s %9s %7s %7s %7s %8s %9s %9s %9s %9s%n",
+                "operation", "completed", "ok", "4xx", "5xx", "failed", "dropped", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        step.stats().forEach((operation, stats) -> {
+            if (stats.getCompleted() + stats.getDropped() > 0) {
+                printRow(operation.name().toLowerCase(Locale.ROOT), stats);
+            }
+        });
+        OperationStats total = step.total();
+        printRow("total", total);
+        System.out.printf("achieved %.1f rps (%.1f ok rps)%n",
+                total.getCompleted() * 1e9 / step.elapsedNanos(), total.getOk() * 1e9 / step.elapsedNanos());
+        StringBuilder upstream = new StringBuilder("keycloak calls:");
+        after.forEach((endpoint, counts) -> upstream.append(String.format(" %s %d (failed %d)",
+                endpoint.name().toLowerCase(Locale.ROOT), counts[0] - before.get(endpoint)[0], counts[1] - before.get(endpoint)[1])));
+        System.out.println(upstream);
+    }
+
+    private static void printRow(String name, OperationStats stats) {
+        System.out.printf("%-10s %9d %9d %7d %7d %7d %8d %9.2f %9.2f %9.2f %9.2f%n",
+                name, stats.getCompleted(), stats.getOk(), stats.getClientErrors(), stats.getServerErrors(),
+                stats.getFailures(), stats.getDropped(), stats.getPercentileMillis(50), stats.getPercentileMillis(99),
+                stats.getPercentileMillis(99.9), stats.getMaxMillis());
+    }
+
+    private LoadTest() {
+    }
+}
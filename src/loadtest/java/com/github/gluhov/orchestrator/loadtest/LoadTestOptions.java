@@ -0,0 +1,107 @@
+package com.github.gluhov.orchestrator.loadtest;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * {@code --key=value} command line options of {@link LoadTest}. Durations accept the Spring Boot formats
+ * ({@code 250ms}, {@code 30s}, {@code PT1M}).
+ */
+final class LoadTestOptions {
+    private final Map<String, String> values = new LinkedHashMap<>();
+
+    LoadTestOptions(String[] args) {
+        for (String arg : args) {
+            if (arg.isBlank()) {
+                continue;
+            }
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Options are expected as --key=value, got " + arg);
+            }
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                values.put(arg.substring(2), "true");
+            } else {
+                values.put(arg.substring(2, separator), arg.substring(separator + 1));
+            }
+        }
+    }
+
+    String getString(String key, String defaultValue) {
+        return values.getOrDefault(key, defaultValue);
+    }
+
+    int getInt(String key, int defaultValue) {
+        String value = values.get(key);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    double getDouble(String key, double defaultValue) {
+        String value = values.get(key);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    Duration getDuration(String key, Duration defaultValue) {
+        String value = values.get(key);
+        return value == null ? defaultValue : DurationStyle.detectAndParse(value);
+    }
+
+    List<Double> getRates(String key, String defaultValue) {
+        return Arrays.stream(getString(key, defaultValue).split(","))
+                .map(String::trim)
+                .map(Double::parseDouble)
+                .toList();
+    }
+
+    /**
+     * Weights of the operations in the mix, e.g. {@code login:1,refresh:1,profile:4,register:1}.
+     */
+    Map<Workload.Operation, Integer> getMix(String key, String defaultValue) {
+        Map<Workload.Operation, Integer> mix = new EnumMap<>(Workload.Operation.class);
+        for (String entry : getString(key, defaultValue).split(",")) {
+            String[] parts = entry.trim().split(":");
+            mix.put(Workload.Operation.valueOf(parts[0].trim().toUpperCase(Locale.ROOT)),
+                    parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 1);
+        }
+        return mix;
+    }
+
+    /**
+     * Behaviour of one stub endpoint, {@code stub.<endpoint>.<setting>} overrides {@code stub.<setting>}.
+     */
+    KeycloakStub.Behaviour getBehaviour(KeycloakStub.Endpoint endpoint) {
+        String prefix = "stub." + endpoint.name().toLowerCase(Locale.ROOT).replace('_', '-') + ".";
+        Duration latency = getDuration(prefix + "latency", getDuration("stub.latency", Duration.ofMillis(10)));
+        Duration jitter = getDuration(prefix + "jitter", getDuration("stub.jitter", Duration.ofMillis(5)));
+        double errorRate = getDouble(prefix + "error-rate", getDouble("stub.error-rate", 0));
+        return new KeycloakStub.Behaviour(latency, jitter, errorRate);
+    }
+
+    Map<KeycloakStub.Endpoint, KeycloakStub.Behaviour> getBehaviours() {
+        Map<KeycloakStub.Endpoint, KeycloakStub.Behaviour> behaviours = new EnumMap<>(KeycloakStub.Endpoint.class);
+        for (KeycloakStub.Endpoint endpoint : KeycloakStub.Endpoint.values()) {
+            behaviours.put(endpoint, getBehaviour(endpoint));
+        }
+        return behaviours;
+    }
+
+    /**
+     * {@code app.*} options are handed to the in-process orchestrator as application properties.
+     */
+    Map<String, Object> getApplicationProperties() {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        values.forEach((key, value) -> {
+            if (key.startsWith("app.")) {
+                properties.put(key.substring(4), value);
+            }
+        });
+        return properties;
+    }
+}
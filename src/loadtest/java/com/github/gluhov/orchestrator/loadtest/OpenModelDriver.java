@@ -0,0 +1,78 @@
+package com.github.gluhov.orchestrator.loadtest;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open workload model: requests are started on a fixed schedule derived from the target rate whether or not
+ * earlier ones have completed, the way independent clients arrive in production. A slow server therefore builds
+ * up in-flight requests instead of silently lowering the offered rate. Past {@code maxInFlight} the request is
+ * counted as dropped so the generator itself cannot run out of memory.
+ */
+final class OpenModelDriver {
+    record Step(double rate, Duration duration, Map<Workload.Operation, OperationStats> stats, long elapsedNanos) {
+        OperationStats total() {
+            OperationStats total = new OperationStats();
+            stats.values().forEach(total::add);
+            return total;
+        }
+    }
+
+    private final Workload workload;
+    private final int maxInFlight;
+    private final Duration drainTimeout;
+
+    OpenModelDriver(Workload workload, int maxInFlight, Duration drainTimeout) {
+        this.workload = workload;
+        this.maxInFlight = maxInFlight;
+        this.drainTimeout = drainTimeout;
+    }
+
+    Step run(double rate, Duration duration) throws InterruptedException {
+        Map<Workload.Operation, OperationStats> stats = new EnumMap<>(Workload.Operation.class);
+        for (Workload.Operation operation : Workload.Operation.values()) {
+            stats.put(operation, new OperationStats());
+        }
+        AtomicInteger inFlight = new AtomicInteger();
+        double intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        for (long i = 0; ; i++) {
+            long intended = start + (long) (i * intervalNanos);
+            if (intended - end >= 0) {
+                break;
+            }
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Workload.Operation operation = workload.next();
+            OperationStats operationStats = stats.get(operation);
+            if (inFlight.incrementAndGet() > maxInFlight) {
+                inFlight.decrementAndGet();
+                operationStats.recordDropped();
+                continue;
+            }
+            workload.execute(operation).subscribe(
+                    status -> operationStats.recordStatus(status, System.nanoTime() - intended),
+                    error -> {
+                        operationStats.recordFailure(System.nanoTime() - intended);
+                        inFlight.decrementAndGet();
+                    },
+                    inFlight::decrementAndGet);
+        }
+        awaitDrain(inFlight);
+        return new Step(rate, duration, stats, System.nanoTime() - start);
+    }
+
+    private void awaitDrain(AtomicInteger inFlight) throws InterruptedException {
+        long deadline = System.nanoTime() + drainTimeout.toNanos();
+        while (inFlight.get() > 0 && deadline - System.nanoTime() > 0) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.github.gluhov.orchestrator.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Outcome counters and the latency histogram of one operation during one step. Latency is recorded in
+ * microseconds from the intended send time, so queueing in the load generator is not hidden.
+ */
+final class OperationStats {
+    private static final long MAX_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(5);
+
+    private final Histogram latency = new ConcurrentHistogram(MAX_TRACKABLE_MICROS, 3);
+    private final LongAdder ok = new LongAdder();
+    private final LongAdder clientErrors = new LongAdder();
+    private final LongAdder serverErrors = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    void recordStatus(int status, long latencyNanos) {
+        record(latencyNanos);
+        if (status < 400) {
+            ok.increment();
+        } else if (status < 500) {
+            clientErrors.increment();
+        } else {
+            serverErrors.increment();
+        }
+    }
+
+    void recordFailure(long latencyNanos) {
+        record(latencyNanos);
+        failures.increment();
+    }
+
+    void recordDropped() {
+        dropped.increment();
+    }
+
+    long getCompleted() {
+        return latency.getTotalCount();
+    }
+
+    long getOk() {
+        return ok.sum();
+    }
+
+    long getClientErrors() {
+        return clientErrors.sum();
+    }
+
+    long getServerErrors() {
+        return serverErrors.sum();
+    }
+
+    long getFailures() {
+        return failures.sum();
+    }
+
+    long getDropped() {
+        return dropped.sum();
+    }
+
+    double getPercentileMillis(double percentile) {
+        return latency.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    double getMaxMillis() {
+        return latency.getMaxValue() / 1000.0;
+    }
+
+    void add(OperationStats other) {
+        latency.add(other.latency);
+        ok.add(other.getOk());
+        clientErrors.add(other.getClientErrors());
+        serverErrors.add(other.getServerErrors());
+        failures.add(other.getFailures());
+        dropped.add(other.getDropped());
+    }
+
+    private void record(long latencyNanos) {
+        latency.recordValue(Math.min(MAX_TRACKABLE_MICROS, Math.max(0, TimeUnit.NANOSECONDS.toMicros(latencyNanos))));
+    }
+}
@@ -0,0 +1,142 @@
+package com.github.gluhov.orchestrator.loadtest;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold start benchmark of the orchestrator. Starts {@link KeycloakStub}, then launches the extracted application jar
+ * in a fresh JVM per run and measures the time from launching the process to the first login answered with 200,
+ * i.e. the time until a new instance actually serves traffic. Each startup mode is run several times and the
+ * median, minimum and maximum are printed.
+ * <p>
+ * Modes: {@code default} plain JVM, {@code cds} with the class data sharing archive of the training run,
+ * {@code aot} with the ahead-of-time processed bean definitions, {@code aot-cds} with both. The archive must come
+ * from the same JVM and the same jar, {@code ./gradlew startupBenchmark} builds both first.
+ * <p>
+ * Options: {@code --jar=} the extracted application jar, {@code --cds-archive=} the archive,
+ * {@code --modes=default,cds,aot,aot-cds}, {@code --runs=5}, {@code --timeout=60s} per run, {@code --jvm-args=}
+ * extra JVM options separated by spaces, and the stub options of {@link LoadTest}.
+ */
+public final class StartupBenchmark {
+    private static final String REALM = "orchestrator-realm";
+    private static final String LOGIN = "{\"username\":\"user-0\",\"password\":\"password\"}";
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = new LoadTestOptions(args);
+        Path jar = Path.of(options.getString("jar", "build/cds/project-1.0.0.jar"));
+        Path cdsArchive = Path.of(options.getString("cds-archive", "build/cds/application.jsa"));
+        List<String> modes = Arrays.asList(options.getString("modes", "default,cds,aot,aot-cds").split(","));
+        int runs = options.getInt("runs", 5);
+        Duration timeout = options.getDuration("timeout", Duration.ofSeconds(60));
+        String jvmArgs = options.getString("jvm-args", "").trim();
+        if (!Files.isRegularFile(jar)) {
+            throw new IllegalArgumentException("No application jar at " + jar + ", run ./gradlew cdsArchive first");
+        }
+
+        HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+        try (KeycloakStub stub = new KeycloakStub(REALM, options.getInt("stub.port", 0), options.getBehaviours(),
+                options.getDuration("stub.token-ttl", Duration.ofHours(1)), options.getInt("stub.users", 10_000))) {
+            System.out.printf("Keycloak stub listening on %s, %d runs per mode of %s%n", stub.getBaseUrl(), runs, jar);
+            System.out.printf("%-10s %9s %9s %9s%n", "mode", "p50 ms", "min ms", "max ms");
+            for (String mode : modes) {
+                List<String> command = new ArrayList<>();
+                command.add(ProcessHandle.current().info().command().orElse("java"));
+                command.addAll(jvmOptions(mode.trim(), cdsArchive));
+                if (!jvmArgs.isEmpty()) {
+                    command.addAll(Arrays.asList(jvmArgs.split("\\s+")));
+                }
+                long[] millis = new long[runs];
+                for (int run = 0; run < runs; run++) {
+                    millis[run] = timeToFirstLogin(httpClient, command, jar, stub, timeout);
+                }
+                Arrays.sort(millis);
+                System.out.printf("%-10s %9d %9d %9d%n", mode.trim(), millis[runs / 2], millis[0], millis[runs - 1]);
+            }
+        }
+        System.exit(0);
+    }
+
+    private static List<String> jvmOptions(String mode, Path cdsArchive) {
+        return switch (mode) {
+            case "default" -> List.of();
+            case "cds" -> List.of("-XX:SharedArchiveFile=" + cdsArchive);
+            case "aot" -> List.of("-Dspring.aot.enabled=true");
+            case "aot-cds" -> List.of("-XX:SharedArchiveFile=" + cdsArchive, "-Dspring.aot.enabled=true");
+            default -> throw new IllegalArgumentException("Unknown mode " + mode + ", expected default, cds, aot or aot-cds");
+        };
+    }
+
+    private static long timeToFirstLogin(HttpClient httpClient, List<String> jvmCommand, Path jar, KeycloakStub stub,
+                                         Duration timeout) throws IOException, InterruptedException {
+        int port = freePort();
+        List<String> command = new ArrayList<>(jvmCommand);
+        command.add("-jar");
+        command.add(jar.toString());
+        command.add("--server.port=" + port);
+        command.add("--logging.level.root=warn");
+        // every login comes from the same address
+        command.add("--kc.login-throttle.enabled=false");
+        ProcessBuilder builder = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        Map<String, String> environment = builder.environment();
+        environment.put("BASE_URL", stub.getBaseUrl());
+        environment.put("REALM", stub.getRealm());
+        environment.put("KEYCLOAK_USER", "admin");
+        environment.put("KEYCLOAK_PASSWORD", "admin");
+        environment.put("KEYCLOAK_CLIENT_ID", "orchestrator");
+        environment.put("KEYCLOAK_CLIENT_SECRET", "secret");
+
+        HttpRequest login = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/api/v1/auth/login"))
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(5))
+                .POST(HttpRequest.BodyPublishers.ofString(LOGIN))
+                .build();
+        long start = System.nanoTime();
+        Process process = builder.start();
+        try {
+            long deadline = start + timeout.toNanos();
+            while (System.nanoTime() < deadline) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("Orchestrator exited with " + process.exitValue() + ": " + command);
+                }
+                try {
+                    if (httpClient.send(login, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    }
+                } catch (ConnectException e) {
+                    // not listening yet
+                }
+                Thread.sleep(5);
+            }
+            throw new IllegalStateException("No login served within " + timeout + ": " + command);
+        } finally {
+            process.destroy();
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private StartupBenchmark() {
+    }
+}
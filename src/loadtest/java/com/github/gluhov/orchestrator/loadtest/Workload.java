@@ -0,0 +1,142 @@
+package com.github.gluhov.orchestrator.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.ByteBufFlux;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Requests sent to the orchestrator. Refresh and profile calls use the tokens of a pool of users logged in by
+ * {@link #seed(int)}, registrations use a fresh email every time.
+ */
+final class Workload implements AutoCloseable {
+    enum Operation {
+        LOGIN, REFRESH, REGISTER, PROFILE
+    }
+
+    private record Session(String accessToken, String refreshToken) {
+    }
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ConnectionProvider connectionProvider;
+    private final HttpClient httpClient;
+    private final Operation[] weighted;
+    private final List<Session> sessions = new ArrayList<>();
+    private final AtomicLong registrations = new AtomicLong();
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private int users;
+
+    Workload(String target, int maxConnections, Duration responseTimeout, Map<Operation, Integer> mix) {
+        this.connectionProvider = ConnectionProvider.builder("loadtest")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(-1)
+                .pendingAcquireTimeout(responseTimeout)
+                .build();
+        this.httpClient = HttpClient.create(connectionProvider)
+                .baseUrl(target)
+                .responseTimeout(responseTimeout);
+        List<Operation> operations = new ArrayList<>();
+        mix.forEach((operation, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                operations.add(operation);
+            }
+        });
+        if (operations.isEmpty()) {
+            throw new IllegalArgumentException("The operation mix is empty");
+        }
+        this.weighted = operations.toArray(Operation[]::new);
+    }
+
+    /**
+     * Logs in {@code users} users, their sessions back the refresh and profile operations.
+     */
+    void seed(int users) {
+        this.users = users;
+        List<Session> seeded = Flux.range(0, users)
+                .flatMap(user -> post("/api/v1/auth/login", credentials(user))
+                        .map(reply -> {
+                            if (reply.status() != 200) {
+                                throw new IllegalStateException("Seeding login failed with " + reply.status() + ": " + reply.body());
+                            }
+                            return toSession(reply.body());
+                        })
+                        // the adaptive Keycloak limit starts low and sheds a burst of logins until it grows
+                        .retryWhen(Retry.backoff(10, Duration.ofMillis(100))), 8)
+                .collectList()
+                .block();
+        sessions.addAll(seeded);
+    }
+
+    Operation next() {
+        return weighted[ThreadLocalRandom.current().nextInt(weighted.length)];
+    }
+
+    /**
+     * Sends the request and completes with the response status.
+     */
+    Mono<Integer> execute(Operation operation) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return switch (operation) {
+            case LOGIN -> post("/api/v1/auth/login", credentials(random.nextInt(users))).map(Reply::status);
+            case REFRESH -> post("/api/v1/auth/refresh-token", "{\"refresh_token\":\"" + session(random).refreshToken() + "\"}")
+                    .map(Reply::status);
+            case REGISTER -> post("/api/v1/auth/register", "{\"email\":\"lt-" + runId + "-" + registrations.incrementAndGet()
+                    + "@example.com\",\"password\":\"password\",\"first_name\":\"Load\",\"last_name\":\"Test\"}")
+                    .map(Reply::status);
+            case PROFILE -> httpClient
+                    .headers(headers -> headers.set(HttpHeaderNames.AUTHORIZATION, "Bearer " + session(random).accessToken()))
+                    .get()
+                    .uri("/api/v1/profile")
+                    .responseSingle((response, body) -> body.then(Mono.just(response.status().code())));
+        };
+    }
+
+    @Override
+    public void close() {
+        connectionProvider.disposeLater().block(Duration.ofSeconds(10));
+    }
+
+    private record Reply(int status, String body) {
+    }
+
+    private Mono<Reply> post(String uri, String json) {
+        return httpClient
+                .headers(headers -> headers.set(HttpHeaderNames.CONTENT_TYPE, "application/json"))
+                .post()
+                .uri(uri)
+                .send(ByteBufFlux.fromString(Mono.just(json)))
+                .responseSingle((response, body) -> body.asString()
+                        .defaultIfEmpty("")
+                        .map(text -> new Reply(response.status().code(), text)));
+    }
+
+    private Session session(ThreadLocalRandom random) {
+        return sessions.get(random.nextInt(sessions.size()));
+    }
+
+    private Session toSession(String body) {
+        try {
+            // the auth endpoints answer with the serialized ResponseEntity, the tokens are under "body"
+            JsonNode json = objectMapper.readTree(body).path("body");
+            return new Session(json.path("access_token").asText(), json.path("refresh_token").asText());
+        } catch (Exception e) {
+            throw new IllegalStateException("Unexpected login response " + body, e);
+        }
+    }
+
+    private static String credentials(int user) {
+        return "{\"username\":\"user-" + user + "\",\"password\":\"password\"}";
+    }
+}
@@ -1,9 +1,14 @@
 package com.github.gluhov.orchestrator;
 
+import com.github.gluhov.orchestrator.config.BlockingDetection;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
 @SpringBootApplication
 public class OrchestratorApplication {
-    public static void main(String[] args) { SpringApplication.run(OrchestratorApplication.class, args);}
-}
\ No newline at end of file
+    public static void main(String[] args) {
+        SpringApplication application = new SpringApplication(OrchestratorApplication.class);
+        application.addListeners(new BlockingDetection());
+        application.run(args);
+    }
+}
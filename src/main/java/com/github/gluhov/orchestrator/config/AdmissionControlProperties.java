@@ -0,0 +1,50 @@
+package com.github.gluhov.orchestrator.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Load shedding of the auth and profile endpoints by priority. Refreshing a token and reading the profile serve
+ * sessions that already exist and are {@code high} priority, logins and registrations are {@code low}. A request is
+ * turned away with a chance that grows from 0 at its class's {@code targetDelay} of estimated queueing delay to 1 at
+ * twice that, the delay of a class being the largest of its own and of the classes above it.
+ */
+@Data
+@ConfigurationProperties(prefix = "kc.admission")
+public class AdmissionControlProperties {
+    private boolean enabled = true;
+    /**
+     * Time constant of the response time average, also how long an estimate takes to fade without new responses.
+     */
+    private Duration decay = Duration.ofSeconds(5);
+    /**
+     * Responses of a class before its delay is estimated, the average starts as their mean.
+     */
+    private int minResponses = 20;
+    /**
+     * The fastest successful response of an endpoint within this window and the one before is taken as its response
+     * time without queueing.
+     */
+    private Duration baselineWindow = Duration.ofMinutes(1);
+    /**
+     * Bounds of the {@code Retry-After} of a rejection, which is the estimated queueing delay rounded up to seconds.
+     */
+    private Duration minRetryAfter = Duration.ofSeconds(1);
+    private Duration maxRetryAfter = Duration.ofSeconds(30);
+    private Priority high = new Priority(Duration.ofSeconds(3));
+    private Priority low = new Priority(Duration.ofMillis(300));
+
+    @Data
+    public static class Priority {
+        private Duration targetDelay;
+
+        public Priority() {
+        }
+
+        public Priority(Duration targetDelay) {
+            this.targetDelay = targetDelay;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.github.gluhov.orchestrator.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+import reactor.blockhound.BlockHound;
+import reactor.blockhound.BlockingMethod;
+import reactor.blockhound.BlockingOperationError;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Installs BlockHound and counts, logs and optionally fails the blocking calls it reports. The only class touching
+ * BlockHound, so that {@link BlockingDetection} loads without it on the classpath.
+ */
+@Slf4j
+class BlockingCallReporter {
+    private static final String APPLICATION_PACKAGE = "com.github.gluhov.orchestrator.";
+
+    private final Set<String> reported = ConcurrentHashMap.newKeySet();
+    private volatile boolean fail;
+
+    BlockingCallReporter(boolean fail) {
+        this.fail = fail;
+    }
+
+    void install() {
+        BlockHound.builder()
+                .loadIntegrations()
+                .blockingMethodCallback(this::report)
+                .install();
+    }
+
+    void report(BlockingMethod method) {
+        BlockingOperationError error = new BlockingOperationError(method);
+        String blockingMethod = method.getClassName() + "." + method.getName();
+        String callSite = callSite(error.getStackTrace());
+        Counter.builder("orchestrator.blocking.calls")
+                .tag("method", blockingMethod)
+                .tag("call_site", callSite)
+                .register(Metrics.globalRegistry)
+                .increment();
+        if (reported.add(blockingMethod + " " + callSite)) {
+            log.warn("Blocking call {} on non-blocking thread {} at {}", blockingMethod,
+                    Thread.currentThread().getName(), callSite, error);
+        }
+        if (fail) {
+            throw error;
+        }
+    }
+
+    void setFail(boolean fail) {
+        this.fail = fail;
+    }
+
+    /**
+     * The first frame of the orchestrator's code, or of any code outside the JDK and BlockHound when there is none.
+     */
+    static String callSite(StackTraceElement[] stackTrace) {
+        StackTraceElement fallback = null;
+        for (StackTraceElement frame : stackTrace) {
+            String className = frame.getClassName();
+            if (className.startsWith(APPLICATION_PACKAGE) && !className.equals(BlockingCallReporter.class.getName())) {
+                return frame.getClassName() + "." + frame.getMethodName();
+            }
+            if (fallback == null && !className.startsWith("java.") && !className.startsWith("jdk.")
+                    && !className.startsWith("sun.") && !className.startsWith("reactor.blockhound.")
+                    && !className.equals(BlockingCallReporter.class.getName())) {
+                fallback = frame;
+            }
+        }
+        return fallback == null ? "unknown" : fallback.getClassName() + "." + fallback.getMethodName();
+    }
+}
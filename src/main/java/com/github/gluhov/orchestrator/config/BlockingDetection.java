@@ -0,0 +1,44 @@
+package com.github.gluhov.orchestrator.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationEnvironmentPreparedEvent;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.ApplicationListener;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Installs BlockHound when {@code kc.blocking-detection.enabled} is set, as soon as the environment is known and
+ * before any event loop thread exists. Every blocking call on a non-blocking thread is counted in
+ * {@code orchestrator.blocking.calls} tagged by blocking method and call site, the first frame of the orchestrator's
+ * own code, and the first one of each kind is logged with its stack trace.
+ * <p>
+ * BlockHound is only on the runtime classpath of builds made with {@code -PblockingDetection}, production jars do
+ * not carry its instrumentation. Tests do not need this: BlockHound's JUnit platform integration installs it in every
+ * test JVM, failing the calls.
+ */
+@Slf4j
+public class BlockingDetection implements ApplicationListener<ApplicationEnvironmentPreparedEvent> {
+    private static final String BLOCK_HOUND = "reactor.blockhound.BlockHound";
+
+    @Override
+    public void onApplicationEvent(ApplicationEnvironmentPreparedEvent event) {
+        BlockingDetectionProperties properties = Binder.get(event.getEnvironment())
+                .bindOrCreate("kc.blocking-detection", BlockingDetectionProperties.class);
+        if (!properties.isEnabled()) {
+            return;
+        }
+        if (!ClassUtils.isPresent(BLOCK_HOUND, BlockingDetection.class.getClassLoader())) {
+            log.error("Blocking call detection is enabled but BlockHound is not on the classpath, "
+                    + "build with -PblockingDetection");
+            return;
+        }
+        try {
+            new BlockingCallReporter(properties.isFail()).install();
+            log.info("Blocking call detection installed, blocking calls on non-blocking threads {}",
+                    properties.isFail() ? "fail" : "are reported");
+        } catch (RuntimeException | Error e) {
+            log.error("Cannot install blocking call detection, is the JVM started with "
+                    + "-XX:+AllowRedefinitionToAddDeleteMethods? {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.github.gluhov.orchestrator.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Detection of blocking calls on non-blocking threads such as Netty's event loops with BlockHound, which needs the
+ * JVM option {@code -XX:+AllowRedefinitionToAddDeleteMethods}. Read once at startup, before the server starts.
+ */
+@Data
+@ConfigurationProperties(prefix = "kc.blocking-detection")
+public class BlockingDetectionProperties {
+    private boolean enabled = false;
+    /**
+     * Fail the blocking call with {@code BlockingOperationError} instead of only reporting it, as in tests.
+     */
+    private boolean fail = false;
+}
@@ -0,0 +1,46 @@
+package com.github.gluhov.orchestrator.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keycloak nodes that calls addressed to {@code kc.base-url} are spread across, and hedging of idempotent calls.
+ * The nodes must issue tokens for the same public hostname, so that the issuer of every token matches
+ * {@code kc.realm-url}.
+ */
+@Data
+@ConfigurationProperties(prefix = "kc.balancing")
+public class KeycloakBalancingProperties {
+    /**
+     * Node base URLs, e.g. {@code http://keycloak-1:8080}. Empty sends every call to {@code kc.base-url}.
+     */
+    private List<String> nodes = new ArrayList<>();
+    /**
+     * Time constant of the per node latency average, a node's slow response is forgotten over a few of these.
+     */
+    private Duration decay = Duration.ofSeconds(10);
+    /**
+     * Latency charged to a node for a failed call.
+     */
+    private Duration failurePenalty = Duration.ofSeconds(1);
+    private Hedging hedging = new Hedging();
+
+    @Data
+    public static class Hedging {
+        private boolean enabled = true;
+        /**
+         * A second request is sent to another node when the first takes longer than this percentile of recent calls.
+         */
+        private double percentile = 0.95;
+        private int window = 256;
+        private Duration minDelay = Duration.ofMillis(5);
+        /**
+         * Hedged requests allowed as a fraction of all requests, so that a slow cluster does not get double the load.
+         */
+        private double budget = 0.1;
+    }
+}
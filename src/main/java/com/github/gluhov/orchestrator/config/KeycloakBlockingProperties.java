@@ -0,0 +1,33 @@
+package com.github.gluhov.orchestrator.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Execution of the blocking {@code keycloak-admin-client} calls. At most {@code maxConcurrency} run at a time, which
+ * also sizes the admin client connection pool, and up to {@code maxPending} more wait without holding a thread.
+ */
+@Data
+@ConfigurationProperties(prefix = "kc.blocking")
+public class KeycloakBlockingProperties {
+    private Mode mode = Mode.VIRTUAL;
+    private int maxConcurrency = 64;
+    private int maxPending = 1000;
+    /**
+     * Pinned virtual threads are recorded when they stay pinned at least this long.
+     */
+    private Duration pinnedThreshold = Duration.ofMillis(20);
+
+    public enum Mode {
+        /**
+         * A new virtual thread per call.
+         */
+        VIRTUAL,
+        /**
+         * Reactor's shared bounded elastic platform thread pool.
+         */
+        BOUNDED_ELASTIC
+    }
+}
@@ -0,0 +1,32 @@
+package com.github.gluhov.orchestrator.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Connection pool and timeout settings of every Keycloak upstream, so that a login storm on the token endpoint
+ * cannot exhaust the connections used by profile or JWKS calls.
+ */
+@Data
+@ConfigurationProperties(prefix = "kc.http")
+public class KeycloakHttpProperties {
+    private Pool token = new Pool();
+    private Pool userinfo = new Pool();
+    private Pool jwks = new Pool();
+    private Pool admin = new Pool();
+
+    @Data
+    public static class Pool {
+        private int maxConnections = 50;
+        private int pendingAcquireMaxCount = 500;
+        private Duration pendingAcquireTimeout = Duration.ofSeconds(5);
+        private Duration maxIdleTime = Duration.ofSeconds(30);
+        private Duration maxLifeTime = Duration.ofMinutes(5);
+        private Duration evictInBackground = Duration.ofSeconds(30);
+        private Duration connectTimeout = Duration.ofSeconds(2);
+        private Duration responseTimeout = Duration.ofSeconds(5);
+        private boolean http2 = false;
+    }
+}
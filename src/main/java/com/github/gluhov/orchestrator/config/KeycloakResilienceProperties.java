@@ -0,0 +1,26 @@
+package com.github.gluhov.orchestrator.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Timeout and adaptive concurrency limit of every Keycloak operation. Circuit breakers and bulkheads are
+ * configured through the standard {@code resilience4j.*} properties, one instance per operation.
+ */
+@Data
+@ConfigurationProperties(prefix = "kc.resilience")
+public class KeycloakResilienceProperties {
+    private Duration timeout = Duration.ofSeconds(5);
+    private AdaptiveLimit adaptiveLimit = new AdaptiveLimit();
+
+    @Data
+    public static class AdaptiveLimit {
+        private int initialLimit = 20;
+        private int minLimit = 2;
+        private int maxLimit = 200;
+        private double backoffRatio = 0.9;
+        private Duration slowCallThreshold = Duration.ofSeconds(1);
+    }
+}
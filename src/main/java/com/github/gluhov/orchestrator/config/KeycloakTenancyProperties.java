@@ -0,0 +1,37 @@
+package com.github.gluhov.orchestrator.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Realms served next to {@code kc.realm}. A login, registration or token refresh names its realm in the
+ * {@code X-Realm} header, an authenticated call is served in the realm that issued its token.
+ */
+@Data
+@ConfigurationProperties(prefix = "kc.tenancy")
+public class KeycloakTenancyProperties {
+    /**
+     * Realm names besides {@code kc.realm}, tokens of any other issuer are rejected.
+     */
+    private List<String> realms = new ArrayList<>();
+    /**
+     * Start of the {@code iss} claim of the extra realms' tokens, differs from {@code kc.base-url} when Keycloak
+     * has a public hostname.
+     */
+    private String issuerBaseUrl;
+    /**
+     * Client credentials per realm, realms without an entry use the orchestrator client of {@code kc.realm}.
+     */
+    private Map<String, Client> clients = new HashMap<>();
+
+    @Data
+    public static class Client {
+        private String clientId;
+        private String clientSecret;
+    }
+}
@@ -0,0 +1,37 @@
+package com.github.gluhov.orchestrator.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Login attempts allowed per username and per client address within {@code window}. Attempts past
+ * {@code freeAttempts} are delayed, starting at {@code baseDelay} and doubling up to {@code maxDelay}; attempts past
+ * {@code maxAttempts} are rejected. Successful logins do not count.
+ */
+@Data
+@ConfigurationProperties(prefix = "kc.login-throttle")
+public class LoginThrottleProperties {
+    private boolean enabled = true;
+    private Duration window = Duration.ofMinutes(15);
+    private Duration baseDelay = Duration.ofMillis(250);
+    private Duration maxDelay = Duration.ofSeconds(4);
+    private int sketchWidth = 65536;
+    private Limits username = new Limits(5, 20);
+    private Limits clientAddress = new Limits(50, 200);
+
+    @Data
+    public static class Limits {
+        private int freeAttempts;
+        private int maxAttempts;
+
+        public Limits() {
+        }
+
+        public Limits(int freeAttempts, int maxAttempts) {
+            this.freeAttempts = freeAttempts;
+            this.maxAttempts = maxAttempts;
+        }
+    }
+}
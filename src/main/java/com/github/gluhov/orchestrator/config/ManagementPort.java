@@ -0,0 +1,34 @@
+package com.github.gluhov.orchestrator.config;
+
+import org.springframework.boot.web.context.WebServerInitializedEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+
+import java.net.InetSocketAddress;
+
+/**
+ * The port the separate management server listens on, taken once it is up so that a random port works as well.
+ * Actuator is served there with {@code management.server.port} set and is not reachable on the API port at all.
+ */
+@Component
+public class ManagementPort implements ApplicationListener<WebServerInitializedEvent> {
+    private static final String MANAGEMENT_NAMESPACE = "management";
+
+    private volatile int port = -1;
+
+    @Override
+    public void onApplicationEvent(WebServerInitializedEvent event) {
+        if (MANAGEMENT_NAMESPACE.equals(event.getApplicationContext().getServerNamespace())) {
+            port = event.getWebServer().getPort();
+        }
+    }
+
+    /**
+     * Whether the request came in on the management port, never when actuator shares the API port.
+     */
+    public boolean matches(ServerHttpRequest request) {
+        InetSocketAddress address = request.getLocalAddress();
+        return port > 0 && address != null && address.getPort() == port;
+    }
+}
@@ -0,0 +1,19 @@
+package com.github.gluhov.orchestrator.config;
+
+import org.springframework.boot.web.embedded.netty.NettyServerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Reactor Netty server metrics, which include the event loop pending tasks. Spring Boot does not publish them on
+ * its own. Scheduler executor metrics are published by {@link ReactorSchedulerMetrics}.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public NettyServerCustomizer nettyServerMetricsCustomizer() {
+        // per request latency is already recorded as http.server.requests, keep the Netty meters uri-less
+        return httpServer -> httpServer.metrics(true, uri -> "/");
+    }
+}
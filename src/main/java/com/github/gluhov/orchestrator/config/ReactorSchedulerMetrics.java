@@ -0,0 +1,69 @@
+package com.github.gluhov.orchestrator.config;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+import reactor.core.Scannable;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Publishes executor metrics of every Reactor scheduler created while the context is up as
+ * {@code reactor.scheduler.*}, the global decorator is removed again when the context closes. Each executor is
+ * named after its scheduler kind and an index, e.g. {@code parallel-0}. Bounded elastic schedulers replace idle
+ * workers over time, a new executor takes the index of one that was shut down and replaces its meters, so the
+ * number of series stays bounded by the number of executors alive at once.
+ */
+@Component
+public class ReactorSchedulerMetrics implements DisposableBean {
+    private static final String DECORATOR_KEY = "orchestrator-scheduler-metrics";
+    private static final String METRIC_PREFIX = "reactor.scheduler";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, List<ScheduledExecutorService>> executors = new HashMap<>();
+
+    public ReactorSchedulerMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        Schedulers.setExecutorServiceDecorator(DECORATOR_KEY, this::decorate);
+    }
+
+    @Override
+    public void destroy() {
+        Schedulers.removeExecutorServiceDecorator(DECORATOR_KEY);
+    }
+
+    synchronized ScheduledExecutorService decorate(Scheduler scheduler, ScheduledExecutorService executor) {
+        // names look like parallel(4,"parallel"), keep the scheduler kind only
+        String kind = Scannable.from(scheduler).scanOrDefault(Scannable.Attr.NAME, "scheduler").split("\\(")[0];
+        List<ScheduledExecutorService> slots = executors.computeIfAbsent(kind, k -> new ArrayList<>());
+        int index = 0;
+        while (index < slots.size() && !slots.get(index).isShutdown()) {
+            index++;
+        }
+        String name = kind + "-" + index;
+        if (index == slots.size()) {
+            slots.add(executor);
+        } else {
+            removeMeters(name);
+            slots.set(index, executor);
+        }
+        return ExecutorServiceMetrics.monitor(meterRegistry, executor, name, METRIC_PREFIX, Tags.empty());
+    }
+
+    private void removeMeters(String name) {
+        List<Meter> meters = meterRegistry.getMeters().stream()
+                .filter(meter -> meter.getId().getName().startsWith(METRIC_PREFIX + ".")
+                        && name.equals(meter.getId().getTag("name")))
+                .toList();
+        meters.forEach(meterRegistry::remove);
+    }
+}
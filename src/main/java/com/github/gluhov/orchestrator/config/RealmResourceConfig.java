@@ -1,13 +1,25 @@
 package com.github.gluhov.orchestrator.config;
 
+import com.github.gluhov.orchestrator.keycloak.KeycloakTracePropagationFilter;
+import io.micrometer.tracing.Tracer;
+import io.micrometer.tracing.propagation.Propagator;
+import org.jboss.resteasy.client.jaxrs.ResteasyClient;
+import org.jboss.resteasy.client.jaxrs.internal.ResteasyClientBuilderImpl;
 import org.keycloak.OAuth2Constants;
+import org.keycloak.admin.client.JacksonProvider;
 import org.keycloak.admin.client.Keycloak;
 import org.keycloak.admin.client.KeycloakBuilder;
 import org.keycloak.admin.client.resource.RealmResource;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 
+/**
+ * The blocking admin client, used for partial imports only. Its beans are lazy: building RESTEasy's client and
+ * provider registry is a noticeable part of startup, so it is left to the first import.
+ */
 @Configuration
 public class RealmResourceConfig {
     @Value("${spring.security.oauth2.client.registration.keycloak.client-id}")
@@ -23,8 +35,25 @@ public class RealmResourceConfig {
     @Value("${kc.password}")
     private String password;
 
+    /**
+     * The default admin client pools 10 connections, size the pool to the calls {@link KeycloakBlockingProperties}
+     * lets run at once so that they do not queue again inside the HTTP client. Shared by the admin clients of all
+     * realms. There is no propagator when tracing is off.
+     */
     @Bean
-    Keycloak keycloak() {
+    @Lazy
+    ResteasyClient keycloakResteasyClient(KeycloakBlockingProperties blockingProperties, Tracer tracer,
+                                          ObjectProvider<Propagator> propagator) {
+        return new ResteasyClientBuilderImpl()
+                .connectionPoolSize(blockingProperties.getMaxConcurrency())
+                .register(JacksonProvider.class, 100)
+                .register(new KeycloakTracePropagationFilter(tracer, propagator.getIfAvailable(() -> Propagator.NOOP)))
+                .build();
+    }
+
+    @Bean
+    @Lazy
+    Keycloak keycloak(ResteasyClient keycloakResteasyClient) {
         return KeycloakBuilder.builder()
                 .serverUrl(baseUrl)
                 .realm(realm)
@@ -33,10 +62,12 @@ public class RealmResourceConfig {
                 .grantType(OAuth2Constants.CLIENT_CREDENTIALS)
                 .username(user)
                 .password(password)
+                .resteasyClient(keycloakResteasyClient)
                 .build();
     }
 
     @Bean
+    @Lazy
     RealmResource realResource(Keycloak keycloak){
         return keycloak.realm(realm);
     }
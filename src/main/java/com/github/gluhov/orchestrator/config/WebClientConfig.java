@@ -1,13 +1,95 @@
 package com.github.gluhov.orchestrator.config;
 
+import com.github.gluhov.orchestrator.keycloak.KeycloakLoadBalancingFilter;
+import com.github.gluhov.orchestrator.keycloak.KeycloakNodeBalancer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 @Configuration
-public class WebClientConfig {
-    @Bean
-    public WebClient webClient() {
-        return WebClient.builder().build();
+@EnableConfigurationProperties(KeycloakHttpProperties.class)
+public class WebClientConfig implements DisposableBean {
+    public static final String TOKEN_WEB_CLIENT = "tokenWebClient";
+    public static final String USERINFO_WEB_CLIENT = "userinfoWebClient";
+    public static final String JWKS_WEB_CLIENT = "jwksWebClient";
+    public static final String ADMIN_WEB_CLIENT = "adminWebClient";
+
+    private final List<ConnectionProvider> connectionProviders = new CopyOnWriteArrayList<>();
+    @Value("${kc.base-url}")
+    private String baseUrl;
+
+    @Bean(TOKEN_WEB_CLIENT)
+    public WebClient tokenWebClient(WebClient.Builder builder, KeycloakHttpProperties properties,
+                                    KeycloakNodeBalancer balancer, MeterRegistry meterRegistry) {
+        return webClient(builder, "keycloak-token", properties.getToken(), false, balancer, meterRegistry);
+    }
+
+    @Bean(USERINFO_WEB_CLIENT)
+    public WebClient userinfoWebClient(WebClient.Builder builder, KeycloakHttpProperties properties,
+                                       KeycloakNodeBalancer balancer, MeterRegistry meterRegistry) {
+        return webClient(builder, "keycloak-userinfo", properties.getUserinfo(), true, balancer, meterRegistry);
+    }
+
+    @Bean(JWKS_WEB_CLIENT)
+    public WebClient jwksWebClient(WebClient.Builder builder, KeycloakHttpProperties properties,
+                                   KeycloakNodeBalancer balancer, MeterRegistry meterRegistry) {
+        return webClient(builder, "keycloak-jwks", properties.getJwks(), true, balancer, meterRegistry);
+    }
+
+    @Bean(ADMIN_WEB_CLIENT)
+    public WebClient adminWebClient(WebClient.Builder builder, KeycloakHttpProperties properties,
+                                    KeycloakNodeBalancer balancer, MeterRegistry meterRegistry) {
+        return webClient(builder, "keycloak-admin", properties.getAdmin(), false, balancer, meterRegistry);
+    }
+
+    @Override
+    public void destroy() {
+        connectionProviders.forEach(ConnectionProvider::dispose);
+    }
+
+    /**
+     * Pools are per remote address, so with {@code kc.balancing.nodes} every node gets {@code pool} connections.
+     * Only idempotent reads may be {@code hedged}.
+     */
+    private WebClient webClient(WebClient.Builder builder, String name, KeycloakHttpProperties.Pool pool, boolean hedged,
+                                KeycloakNodeBalancer balancer, MeterRegistry meterRegistry) {
+        ConnectionProvider connectionProvider = ConnectionProvider.builder(name)
+                .maxConnections(pool.getMaxConnections())
+                .pendingAcquireMaxCount(pool.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(pool.getPendingAcquireTimeout())
+                .maxIdleTime(pool.getMaxIdleTime())
+                .maxLifeTime(pool.getMaxLifeTime())
+                .evictInBackground(pool.getEvictInBackground())
+                .metrics(true)
+                .build();
+        connectionProviders.add(connectionProvider);
+
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) pool.getConnectTimeout().toMillis())
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .keepAlive(true)
+                .responseTimeout(pool.getResponseTimeout());
+        if (pool.isHttp2()) {
+            httpClient = baseUrl.startsWith("https")
+                    ? httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11).secure()
+                    : httpClient.protocol(HttpProtocol.H2C, HttpProtocol.HTTP11);
+        }
+
+        return builder.clone()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .filter(new KeycloakLoadBalancingFilter(balancer, name, hedged, meterRegistry))
+                .build();
     }
-}
\ No newline at end of file
+}
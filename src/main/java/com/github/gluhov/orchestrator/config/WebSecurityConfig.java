@@ -1,18 +1,28 @@
 package com.github.gluhov.orchestrator.config;
 
+import com.github.gluhov.orchestrator.keycloak.KeycloakRealms;
+import com.github.gluhov.orchestrator.security.CachingReactiveJwtDecoder;
+import com.github.gluhov.orchestrator.security.IssuerRoutingJwtDecoder;
+import com.github.gluhov.orchestrator.security.KeycloakRealmRoleConverter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
-import org.springframework.boot.autoconfigure.security.oauth2.resource.OAuth2ResourceServerProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
 import org.springframework.security.config.web.server.ServerHttpSecurity;
-import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
 import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
+import org.springframework.security.oauth2.server.resource.authentication.ReactiveJwtAuthenticationConverterAdapter;
 import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.util.matcher.AndServerWebExchangeMatcher;
+import org.springframework.security.web.server.util.matcher.ServerWebExchangeMatcher;
+import org.springframework.security.web.server.util.matcher.ServerWebExchangeMatchers;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.reactive.CorsConfigurationSource;
 import org.springframework.web.cors.reactive.UrlBasedCorsConfigurationSource;
 
+import java.time.Duration;
 import java.util.List;
 
 @Configuration
@@ -23,14 +33,28 @@ import java.util.List;
 public class WebSecurityConfig {
 
     @Bean
-    public SecurityWebFilterChain securityFilterChain(ServerHttpSecurity http, OAuth2ResourceServerProperties properties) {
+    public SecurityWebFilterChain securityFilterChain(ServerHttpSecurity http, ReactiveJwtDecoder jwtDecoder,
+                                                      ManagementPort managementPort,
+                                                      @Value("${kc.admin-role:orchestrator-admin}") String adminRole) {
+        JwtAuthenticationConverter jwtAuthenticationConverter = new JwtAuthenticationConverter();
+        jwtAuthenticationConverter.setJwtGrantedAuthoritiesConverter(new KeycloakRealmRoleConverter());
         return http
                 .csrf(ServerHttpSecurity.CsrfSpec::disable)
                 .authorizeExchange((authz) -> authz
                         .pathMatchers("/api/v1/auth/**").permitAll()
+                        .pathMatchers("/actuator/health/**").permitAll()
+                        // metrics name Keycloak nodes, realms and upstream errors, they are only scraped on the
+                        // management port, which is not exposed with the API
+                        .matchers(new AndServerWebExchangeMatcher(
+                                ServerWebExchangeMatchers.pathMatchers("/actuator/prometheus"),
+                                exchange -> managementPort.matches(exchange.getRequest())
+                                        ? ServerWebExchangeMatcher.MatchResult.match()
+                                        : ServerWebExchangeMatcher.MatchResult.notMatch())).permitAll()
+                        .pathMatchers("/api/v1/admin/**").hasRole(adminRole)
                         .anyExchange().authenticated())
                 .oauth2ResourceServer(oauth2 -> oauth2
-                        .jwt(jwt -> jwt.jwtDecoder(jwtDecoder(properties))))
+                        .jwt(jwt -> jwt.jwtDecoder(jwtDecoder)
+                                .jwtAuthenticationConverter(new ReactiveJwtAuthenticationConverterAdapter(jwtAuthenticationConverter))))
                 .build();
     }
 
@@ -39,13 +63,19 @@ public class WebSecurityConfig {
         CorsConfiguration configuration = new CorsConfiguration();
         configuration.setAllowedOrigins(List.of("*"));
         configuration.setAllowedMethods(List.of("GET", "POST", "PUT", "DELETE"));
-        configuration.setAllowedHeaders(List.of("Authorization", "Content-Type"));
+        configuration.setAllowedHeaders(List.of("Authorization", "Content-Type", KeycloakRealms.REALM_HEADER));
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
         source.registerCorsConfiguration("/**", configuration);
         return source;
     }
 
-    private ReactiveJwtDecoder jwtDecoder(OAuth2ResourceServerProperties properties) {
-        return NimbusReactiveJwtDecoder.withJwkSetUri(properties.getJwt().getJwkSetUri()).build();
+    /**
+     * One cache in front of all realms, a cached token skips the issuer lookup as well.
+     */
+    @Bean
+    public ReactiveJwtDecoder jwtDecoder(KeycloakRealms keycloakRealms, MeterRegistry meterRegistry,
+                                         @Value("${kc.jwt-cache.max-size:10000}") long maxSize,
+                                         @Value("${kc.jwt-cache.max-ttl:5m}") Duration maxTtl) {
+        return new CachingReactiveJwtDecoder(new IssuerRoutingJwtDecoder(keycloakRealms), maxSize, maxTtl, meterRegistry);
     }
 }
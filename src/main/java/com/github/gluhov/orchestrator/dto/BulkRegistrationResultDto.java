@@ -0,0 +1,26 @@
+package com.github.gluhov.orchestrator.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of one line of a bulk registration, {@code index} is the zero-based position of the line in the request.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public class BulkRegistrationResultDto {
+    private long index;
+    private String email;
+    private String userId;
+    private String errorCode;
+    private String errorMessage;
+}
@@ -0,0 +1,26 @@
+package com.github.gluhov.orchestrator.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public class UserDto {
+    private String id;
+    private String username;
+    private String email;
+    private String firstName;
+    private String lastName;
+    private Boolean enabled;
+    private Boolean emailVerified;
+    private Long createdTimestamp;
+}
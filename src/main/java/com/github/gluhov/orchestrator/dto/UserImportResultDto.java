@@ -0,0 +1,29 @@
+package com.github.gluhov.orchestrator.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of one imported chunk, covering request lines {@code first_index} to {@code first_index + size - 1}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public class UserImportResultDto {
+    private long chunk;
+    private long firstIndex;
+    private int size;
+    private int added;
+    private int skipped;
+    private int overwritten;
+    private String errorCode;
+    private String errorMessage;
+}
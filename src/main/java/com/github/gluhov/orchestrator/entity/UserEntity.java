@@ -0,0 +1,27 @@
+package com.github.gluhov.orchestrator.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Row of the local {@code users} read model, a copy of the Keycloak user as of {@code syncedAt}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UserEntity {
+    private String id;
+    private String username;
+    private String email;
+    private String firstName;
+    private String lastName;
+    private boolean enabled;
+    private boolean emailVerified;
+    private Long createdTimestamp;
+    private Instant syncedAt;
+}
@@ -1,63 +1,104 @@
 package com.github.gluhov.orchestrator.errorhandling;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.gluhov.orchestrator.exception.ApiException;
 import com.github.gluhov.orchestrator.exception.AuthException;
+import com.github.gluhov.orchestrator.exception.ServiceUnavailableException;
+import com.github.gluhov.orchestrator.exception.TooManyRequestsException;
 import com.github.gluhov.orchestrator.exception.UnauthorizedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.boot.web.error.ErrorAttributeOptions;
 import org.springframework.boot.web.reactive.error.DefaultErrorAttributes;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.server.ServerRequest;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
+/**
+ * Maps failures to the {@code {"errors":[{"code":..,"message":..}]}} body. Stateless, the outcome of every
+ * error is returned as an immutable {@link RenderedError}. The serialized body of each distinct
+ * status, code and message is kept in a bounded cache, so repeated failures such as a Keycloak outage
+ * do not serialize anything.
+ */
 @Component
 public class AppErrorAttributes extends DefaultErrorAttributes {
-    private HttpStatus status = HttpStatus.INTERNAL_SERVER_ERROR;
+    private static final int MAX_RENDERED_ERRORS = 1000;
 
-    public AppErrorAttributes() {
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper objectMapper;
+    private final Cache<ErrorKey, RenderedError> renderedErrors = Caffeine.newBuilder()
+            .maximumSize(MAX_RENDERED_ERRORS)
+            .build();
+
+    public AppErrorAttributes(MeterRegistry meterRegistry, ObjectMapper objectMapper) {
         super();
+        this.meterRegistry = meterRegistry;
+        this.objectMapper = objectMapper;
+    }
+
+    public record RenderedError(HttpStatus status, String code, String message, byte[] body, Counter counter) {
+    }
+
+    private record ErrorKey(HttpStatus status, String code, String message) {
     }
 
     @Override
     public Map<String, Object> getErrorAttributes(ServerRequest request, ErrorAttributeOptions options) {
-        var errorAttributes = super.getErrorAttributes(request, ErrorAttributeOptions.defaults());
-        var error = getError(request);
+        RenderedError error = render(getError(request));
+        var errorMap = new LinkedHashMap<String, Object>();
+        errorMap.put("code", error.code());
+        errorMap.put("message", error.message());
+        var errorAttributes = new LinkedHashMap<String, Object>();
+        errorAttributes.put("status", error.status().value());
+        errorAttributes.put("errors", Map.of("errors", List.of(errorMap)));
+        return errorAttributes;
+    }
 
-        var errorList = new ArrayList<Map<String, Object>>();
+    /**
+     * Resolves the response for the error and counts it in {@code orchestrator.errors}.
+     */
+    public RenderedError render(Throwable error) {
+        RenderedError rendered = renderedErrors.get(toKey(error), this::serialize);
+        rendered.counter().increment();
+        return rendered;
+    }
 
+    private ErrorKey toKey(Throwable error) {
         if (error instanceof AuthException || error instanceof UnauthorizedException) {
-            status = HttpStatus.UNAUTHORIZED;
-            var errorMap = new LinkedHashMap<String, Object>();
-            errorMap.put("code", ((ApiException) error).getErrorCode());
-            errorMap.put("message", error.getMessage());
-            errorList.add(errorMap);
+            return new ErrorKey(HttpStatus.UNAUTHORIZED, ((ApiException) error).getErrorCode(), error.getMessage());
+        } else if (error instanceof TooManyRequestsException) {
+            return new ErrorKey(HttpStatus.TOO_MANY_REQUESTS, ((ApiException) error).getErrorCode(), error.getMessage());
+        } else if (error instanceof ServiceUnavailableException) {
+            return new ErrorKey(HttpStatus.SERVICE_UNAVAILABLE, ((ApiException) error).getErrorCode(), error.getMessage());
         } else if (error instanceof ApiException) {
-            status = HttpStatus.BAD_REQUEST;
-            var errorMap = new LinkedHashMap<String, Object>();
-            errorMap.put("code", ((ApiException) error).getErrorCode());
-            errorMap.put("message", error.getMessage());
-            errorList.add(errorMap);
-        }  else {
-            status = HttpStatus.INTERNAL_SERVER_ERROR;
-            var message = error.getMessage();
-            if (message == null)
-                message = error.getClass().getName();
-
-            var errorMap = new LinkedHashMap<String, Object>();
-            errorMap.put("code", "INTERNAL_ERROR");
-            errorMap.put("message", message);
-            errorList.add(errorMap);
+            return new ErrorKey(HttpStatus.BAD_REQUEST, ((ApiException) error).getErrorCode(), error.getMessage());
         }
+        var message = error.getMessage();
+        if (message == null)
+            message = error.getClass().getName();
+        return new ErrorKey(HttpStatus.INTERNAL_SERVER_ERROR, "INTERNAL_ERROR", message);
+    }
 
-        var errors = new HashMap<String, Object>();
-        errors.put("errors", errorList);
-        errorAttributes.put("status", status.value());
-        errorAttributes.put("errors", errors);
-
-        return errorAttributes;
+    private RenderedError serialize(ErrorKey key) {
+        var errorMap = new LinkedHashMap<String, Object>();
+        errorMap.put("code", key.code());
+        errorMap.put("message", key.message());
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(Map.of("errors", List.of(errorMap)));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize error " + key.code(), e);
+        }
+        Counter counter = meterRegistry.counter("orchestrator.errors",
+                "code", String.valueOf(key.code()),
+                "status", String.valueOf(key.status().value()));
+        return new RenderedError(key.status(), key.code(), key.message(), body, counter);
     }
-}
\ No newline at end of file
+}
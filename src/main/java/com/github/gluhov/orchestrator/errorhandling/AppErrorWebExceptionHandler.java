@@ -2,13 +2,11 @@ package com.github.gluhov.orchestrator.errorhandling;
 
 import org.springframework.boot.autoconfigure.web.WebProperties;
 import org.springframework.boot.autoconfigure.web.reactive.error.AbstractErrorWebExceptionHandler;
-import org.springframework.boot.web.error.ErrorAttributeOptions;
 import org.springframework.boot.web.reactive.error.ErrorAttributes;
 import org.springframework.context.ApplicationContext;
 import org.springframework.http.MediaType;
 import org.springframework.http.codec.ServerCodecConfigurer;
 import org.springframework.stereotype.Component;
-import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.server.RequestPredicates;
 import org.springframework.web.reactive.function.server.RouterFunction;
 import org.springframework.web.reactive.function.server.RouterFunctions;
@@ -16,21 +14,23 @@ import org.springframework.web.reactive.function.server.ServerResponse;
 
 @Component
 public class AppErrorWebExceptionHandler extends AbstractErrorWebExceptionHandler {
+    private final AppErrorAttributes appErrorAttributes;
 
     public AppErrorWebExceptionHandler(AppErrorAttributes g, ApplicationContext applicationContext, ServerCodecConfigurer serverCodecConfigurer) {
         super(g, new WebProperties.Resources(), applicationContext);
         super.setMessageWriters(serverCodecConfigurer.getWriters());
         super.setMessageReaders(serverCodecConfigurer.getReaders());
+        this.appErrorAttributes = g;
     }
 
     @Override
     protected RouterFunction<ServerResponse> getRoutingFunction(final ErrorAttributes errorAttributes) {
         return RouterFunctions.route(RequestPredicates.all(), request -> {
-            var props = getErrorAttributes(request, ErrorAttributeOptions.defaults());
+            var error = appErrorAttributes.render(getError(request));
 
-            return ServerResponse.status(Integer.parseInt(props.getOrDefault("status", 500).toString()))
+            return ServerResponse.status(error.status())
                     .contentType(MediaType.APPLICATION_JSON)
-                    .body(BodyInserters.fromValue(props.get("errors")));
+                    .bodyValue(error.body());
         });
     }
-}
\ No newline at end of file
+}
@@ -2,13 +2,17 @@ package com.github.gluhov.orchestrator.exception;
 
 import lombok.Getter;
 
+/**
+ * Expected failure rendered to the client by its error code. Carries no stack trace: it is created on every
+ * rejected or failed request and the trace would only point at the reactive operator that raised it.
+ */
 public class ApiException extends RuntimeException {
 
     @Getter
     protected String errorCode;
 
     public ApiException(String message, String errorCode) {
-        super(message);
+        super(message, null, false, false);
         this.errorCode = errorCode;
     }
-}
\ No newline at end of file
+}
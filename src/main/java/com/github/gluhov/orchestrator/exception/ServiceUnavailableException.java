@@ -0,0 +1,10 @@
+package com.github.gluhov.orchestrator.exception;
+
+/**
+ * Upstream call was not attempted or was abandoned to protect the orchestrator, rendered as 503.
+ */
+public class ServiceUnavailableException extends ApiException {
+    public ServiceUnavailableException(String message, String errorCode) {
+        super(message, errorCode);
+    }
+}
@@ -0,0 +1,10 @@
+package com.github.gluhov.orchestrator.exception;
+
+/**
+ * Request was rejected before reaching Keycloak because its caller is over a rate limit, rendered as 429.
+ */
+public class TooManyRequestsException extends ApiException {
+    public TooManyRequestsException(String message, String errorCode) {
+        super(message, errorCode);
+    }
+}
@@ -0,0 +1,11 @@
+package com.github.gluhov.orchestrator.exception;
+
+/**
+ * Keycloak answered with a server error or asked us to back off with 429, rendered as 503. Unlike the other
+ * {@link ApiException}s it is held against Keycloak by the circuit breakers and adaptive concurrency limits.
+ */
+public class UpstreamException extends ServiceUnavailableException {
+    public UpstreamException(String message, String errorCode) {
+        super(message, errorCode);
+    }
+}
@@ -0,0 +1,151 @@
+package com.github.gluhov.orchestrator.keycloak;
+
+import com.github.gluhov.orchestrator.config.WebClientConfig;
+import com.github.gluhov.orchestrator.exception.ApiException;
+import com.github.gluhov.orchestrator.exception.AuthException;
+import com.github.gluhov.orchestrator.exception.ServiceUnavailableException;
+import com.github.gluhov.orchestrator.util.ConcurrencyLimiter;
+import lombok.extern.slf4j.Slf4j;
+import org.keycloak.OAuth2Constants;
+import org.keycloak.representations.AccessTokenResponse;
+import org.keycloak.representations.idm.AdminEventRepresentation;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Reactive replacement for the blocking {@code keycloak-admin-client} on the request path.
+ * Authenticates with the client credentials grant and keeps the service account token until shortly before it expires.
+ */
+@Component
+@Slf4j
+public class KeycloakAdminClient {
+    private static final long TOKEN_EXPIRY_MARGIN_SECONDS = 30;
+
+    private final WebClient webClient;
+    private final String usersUrl;
+    private final String adminEventsUrl;
+    private final String tokenUrl;
+    private final String clientId;
+    private final String clientSecret;
+    private final ConcurrencyLimiter limiter;
+    private final Mono<String> serviceAccountToken;
+
+    public KeycloakAdminClient(@Qualifier(WebClientConfig.ADMIN_WEB_CLIENT) WebClient webClient,
+                               @Value("${kc.base-url}") String baseUrl,
+                               @Value("${kc.realm}") String realm,
+                               @Value("${spring.security.oauth2.client.registration.keycloak.client-id}") String clientId,
+                               @Value("${spring.security.oauth2.client.registration.keycloak.client-secret}") String clientSecret,
+                               @Value("${kc.admin.max-concurrency:32}") int maxConcurrency,
+                               @Value("${kc.admin.max-pending:1000}") int maxPending) {
+        this.webClient = webClient;
+        this.usersUrl = baseUrl + "/admin/realms/" + realm + "/users";
+        this.adminEventsUrl = baseUrl + "/admin/realms/" + realm + "/admin-events";
+        this.tokenUrl = baseUrl + "/realms/" + realm + "/protocol/openid-connect/token";
+        this.clientId = clientId;
+        this.clientSecret = clientSecret;
+        this.limiter = new ConcurrencyLimiter(maxConcurrency, maxPending,
+                () -> new ServiceUnavailableException("Too many concurrent Keycloak admin calls", "O_ADMIN_BUSY"));
+        this.serviceAccountToken = fetchServiceAccountToken()
+                .cache(token -> Duration.ofSeconds(Math.max(0, token.getExpiresIn() - TOKEN_EXPIRY_MARGIN_SECONDS)),
+                        error -> Duration.ZERO,
+                        () -> Duration.ZERO)
+                .map(AccessTokenResponse::getToken);
+    }
+
+    /**
+     * Creates the user together with its credentials and returns the id taken from the {@code Location} header.
+     */
+    public Mono<String> createUser(UserRepresentation user) {
+        return limiter.limit(serviceAccountToken.flatMap(token -> webClient.post()
+                .uri(usersUrl)
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(user)
+                .retrieve()
+                .onStatus(status -> status.is4xxClientError() || status.is5xxServerError(),
+                        KeycloakErrors.toException(AuthException::new, "O_REGISTER_USER_ERROR"))
+                .toBodilessEntity()
+                .flatMap(response -> {
+                    URI location = response.getHeaders().getLocation();
+                    if (location == null || location.getPath().isEmpty()) {
+                        return Mono.error(new AuthException("Missing location header after user registration", "O_REGISTER_USER_ERROR"));
+                    }
+                    String path = location.getPath();
+                    return Mono.just(path.substring(path.lastIndexOf('/') + 1));
+                })));
+    }
+
+    /**
+     * Reads one page of users, in the order Keycloak lists them, in brief representation.
+     */
+    public Mono<List<UserRepresentation>> listUsers(long first, int max) {
+        return limiter.limit(serviceAccountToken.flatMap(token -> webClient.get()
+                .uri(usersUrl + "?briefRepresentation=true&first={first}&max={max}", first, max)
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .accept(MediaType.APPLICATION_JSON)
+                .retrieve()
+                .onStatus(status -> status.is4xxClientError() || status.is5xxServerError(),
+                        KeycloakErrors.toException(ApiException::new, "O_EXPORT_USERS_ERROR"))
+                .bodyToFlux(UserRepresentation.class)
+                .collectList()));
+    }
+
+    /**
+     * Reads the user, completes empty when it does not exist.
+     */
+    public Mono<UserRepresentation> getUser(String id) {
+        return limiter.limit(serviceAccountToken.flatMap(token -> webClient.get()
+                .uri(usersUrl + "/{id}", id)
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .accept(MediaType.APPLICATION_JSON)
+                .retrieve()
+                // a missing user is left to the default handler and mapped to an empty result below
+                .onStatus(status -> status.value() != HttpStatus.NOT_FOUND.value()
+                                && (status.is4xxClientError() || status.is5xxServerError()),
+                        KeycloakErrors.toException(ApiException::new, "O_GET_USER_ERROR"))
+                .bodyToMono(UserRepresentation.class)
+                .onErrorResume(WebClientResponseException.NotFound.class, e -> Mono.empty())));
+    }
+
+    /**
+     * Reads one page of the admin events on users, newest first. Keycloak only records them when admin events are
+     * enabled for the realm.
+     */
+    public Mono<List<AdminEventRepresentation>> listUserEvents(int first, int max) {
+        return limiter.limit(serviceAccountToken.flatMap(token -> webClient.get()
+                .uri(adminEventsUrl + "?resourceTypes=USER&first={first}&max={max}", first, max)
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .accept(MediaType.APPLICATION_JSON)
+                .retrieve()
+                .onStatus(status -> status.is4xxClientError() || status.is5xxServerError(),
+                        KeycloakErrors.toException(ApiException::new, "O_ADMIN_EVENTS_ERROR"))
+                .bodyToFlux(AdminEventRepresentation.class)
+                .collectList()));
+    }
+
+    private Mono<AccessTokenResponse> fetchServiceAccountToken() {
+        return webClient.post()
+                .uri(tokenUrl)
+                .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                .body(BodyInserters.fromFormData("client_id", clientId)
+                        .with("client_secret", clientSecret)
+                        .with("grant_type", OAuth2Constants.CLIENT_CREDENTIALS))
+                .retrieve()
+                .onStatus(status -> status.is4xxClientError() || status.is5xxServerError(),
+                        KeycloakErrors.toException(AuthException::new, "O_ADMIN_TOKEN_ERROR"))
+                .bodyToMono(AccessTokenResponse.class);
+    }
+}
@@ -0,0 +1,151 @@
+package com.github.gluhov.orchestrator.keycloak;
+
+import com.github.gluhov.orchestrator.config.KeycloakBlockingProperties;
+import com.github.gluhov.orchestrator.exception.ServiceUnavailableException;
+import com.github.gluhov.orchestrator.util.ConcurrencyLimiter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.context.ContextSnapshot;
+import io.micrometer.context.ContextSnapshotFactory;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs calls of the blocking {@code keycloak-admin-client} off the event loop, on a new virtual thread per call or
+ * on the bounded elastic scheduler ({@code kc.blocking.mode}). Calls over {@code kc.blocking.max-concurrency} wait in
+ * a {@link ConcurrencyLimiter} queue instead of on a thread.
+ * <p>
+ * Publishes {@code orchestrator.keycloak.blocking.wait}, the time from subscription until the call starts on its
+ * thread, {@code orchestrator.keycloak.blocking.calls} per operation and, in virtual mode,
+ * {@code orchestrator.keycloak.blocking.pinned} for virtual threads pinned to their carrier, e.g. by a
+ * {@code synchronized} block in the HTTP client, read from the {@code jdk.VirtualThreadPinned} JFR event.
+ * <p>
+ * The thread of a call gets the caller's observation from the Reactor context, and the call is traced as a span
+ * named after its operation, so the requests the admin client sends carry the caller's trace.
+ */
+@Component
+@EnableConfigurationProperties(KeycloakBlockingProperties.class)
+@Slf4j
+public class KeycloakBlockingExecutor implements SmartLifecycle {
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final ContextSnapshotFactory CONTEXT_SNAPSHOTS = ContextSnapshotFactory.builder().build();
+
+    private final KeycloakBlockingProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Tracer tracer;
+    private final Scheduler scheduler;
+    private final ConcurrencyLimiter limiter;
+    private final Timer wait;
+    private final Timer pinned;
+    private volatile RecordingStream pinnedEvents;
+    private volatile boolean running;
+
+    public KeycloakBlockingExecutor(KeycloakBlockingProperties properties, MeterRegistry meterRegistry, Tracer tracer) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.tracer = tracer;
+        this.scheduler = properties.getMode() == KeycloakBlockingProperties.Mode.VIRTUAL
+                ? Schedulers.fromExecutorService(Executors.newThreadPerTaskExecutor(
+                        Thread.ofVirtual().name("keycloak-blocking-", 0).factory()), "keycloak-blocking")
+                : Schedulers.boundedElastic();
+        this.limiter = new ConcurrencyLimiter(properties.getMaxConcurrency(), properties.getMaxPending(),
+                () -> new ServiceUnavailableException("Too many blocking Keycloak admin calls", "O_KEYCLOAK_BLOCKING_BUSY"));
+        String mode = properties.getMode().name().toLowerCase(Locale.ROOT);
+        this.wait = Timer.builder("orchestrator.keycloak.blocking.wait").tag("mode", mode).register(meterRegistry);
+        this.pinned = Timer.builder("orchestrator.keycloak.blocking.pinned").register(meterRegistry);
+        Gauge.builder("orchestrator.keycloak.blocking.in_flight", limiter, ConcurrencyLimiter::getInFlight)
+                .tag("mode", mode)
+                .register(meterRegistry);
+        Gauge.builder("orchestrator.keycloak.blocking.pending", limiter, ConcurrencyLimiter::getPending)
+                .tag("mode", mode)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs the call on a blocking-friendly thread once a permit is free, fails fast with 503 when too many calls wait.
+     */
+    public <T> Mono<T> execute(String operation, Callable<T> call) {
+        return Mono.deferContextual(context -> {
+            long subscribed = System.nanoTime();
+            ContextSnapshot snapshot = CONTEXT_SNAPSHOTS.captureFrom(context);
+            return limiter.limit(Mono.fromCallable(() -> {
+                        long started = System.nanoTime();
+                        wait.record(started - subscribed, TimeUnit.NANOSECONDS);
+                        String outcome = "error";
+                        try (ContextSnapshot.Scope restored = snapshot.setThreadLocals()) {
+                            T result = traced(operation, call);
+                            outcome = "success";
+                            return result;
+                        } finally {
+                            Timer.builder("orchestrator.keycloak.blocking.calls")
+                                    .tag("operation", operation)
+                                    .tag("outcome", outcome)
+                                    .register(meterRegistry)
+                                    .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                        }
+                    })
+                    .subscribeOn(scheduler));
+        });
+    }
+
+    private <T> T traced(String operation, Callable<T> call) throws Exception {
+        Span span = tracer.nextSpan().name(operation).start();
+        try (Tracer.SpanInScope inScope = tracer.withSpan(span)) {
+            return call.call();
+        } catch (Exception | Error e) {
+            span.error(e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        if (properties.getMode() != KeycloakBlockingProperties.Mode.VIRTUAL) {
+            return;
+        }
+        try {
+            RecordingStream stream = new RecordingStream();
+            stream.enable(PINNED_EVENT).withThreshold(properties.getPinnedThreshold());
+            stream.onEvent(PINNED_EVENT, event -> pinned.record(event.getDuration()));
+            stream.startAsync();
+            pinnedEvents = stream;
+        } catch (RuntimeException e) {
+            log.warn("Cannot record pinned virtual threads, JFR is unavailable: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void stop() {
+        RecordingStream stream = pinnedEvents;
+        if (stream != null) {
+            stream.close();
+        }
+        pinnedEvents = null;
+        if (properties.getMode() == KeycloakBlockingProperties.Mode.VIRTUAL) {
+            scheduler.dispose();
+        }
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
@@ -0,0 +1,15 @@
+package com.github.gluhov.orchestrator.keycloak;
+
+import java.util.function.Predicate;
+
+/**
+ * {@link KeycloakErrors#isClientError} for the resilience4j circuit breaker {@code ignore-exception-predicate},
+ * which takes a class name.
+ */
+public class KeycloakClientErrorPredicate implements Predicate<Throwable> {
+
+    @Override
+    public boolean test(Throwable error) {
+        return KeycloakErrors.isClientError(error);
+    }
+}
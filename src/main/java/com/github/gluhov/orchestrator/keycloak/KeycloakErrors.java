@@ -0,0 +1,55 @@
+package com.github.gluhov.orchestrator.keycloak;
+
+import com.github.gluhov.orchestrator.exception.ApiException;
+import com.github.gluhov.orchestrator.exception.UpstreamException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import reactor.core.publisher.Mono;
+
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Maps Keycloak error responses to exceptions. Server errors and 429 mean Keycloak is failing or shedding load and
+ * become {@link UpstreamException}; any other error status is a client error, such as wrong credentials or a taken
+ * username, and becomes the exception of the caller's choice.
+ */
+@Slf4j
+public final class KeycloakErrors {
+
+    private KeycloakErrors() {
+    }
+
+    /**
+     * Response handler for {@code onStatus} that logs the error body and fails with {@code errorCode}.
+     */
+    public static Function<ClientResponse, Mono<? extends Throwable>> toException(
+            BiFunction<String, String, ? extends ApiException> clientError, String errorCode) {
+        return clientResponse -> clientResponse.bodyToMono(String.class)
+                .defaultIfEmpty("")
+                .flatMap(errorBody -> {
+                    log.error("Error from Keycloak: {}", errorBody);
+                    return Mono.error(toException(clientResponse.statusCode(), errorBody, clientError, errorCode));
+                });
+    }
+
+    public static ApiException toException(HttpStatusCode status, String errorBody,
+                                           BiFunction<String, String, ? extends ApiException> clientError,
+                                           String errorCode) {
+        String message = "Error from Keycloak: " + errorBody;
+        if (status.is5xxServerError() || status.value() == HttpStatus.TOO_MANY_REQUESTS.value()) {
+            return new UpstreamException(message, errorCode);
+        }
+        return clientError.apply(message, errorCode);
+    }
+
+    /**
+     * Client errors and our own rejections are not held against Keycloak, upstream failures and unexpected errors
+     * such as timeouts and refused connections are.
+     */
+    public static boolean isClientError(Throwable error) {
+        return error instanceof ApiException && !(error instanceof UpstreamException);
+    }
+}
@@ -0,0 +1,167 @@
+package com.github.gluhov.orchestrator.keycloak;
+
+import com.github.gluhov.orchestrator.config.KeycloakBalancingProperties;
+import com.github.gluhov.orchestrator.util.RollingPercentile;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Sends the calls a web client addresses to {@code kc.base-url} to the node picked by {@link KeycloakNodeBalancer}.
+ * <p>
+ * With hedging on, a GET that has not been answered within the recent {@code kc.balancing.hedging.percentile} of
+ * this client's response times is sent once more to another node and the first response wins, the other call is
+ * cancelled. Only idempotent reads such as userinfo and JWKS may be hedged, and hedges are limited to
+ * {@code kc.balancing.hedging.budget} of the calls, so that a cluster that is slow overall does not get extra load.
+ */
+public class KeycloakLoadBalancingFilter implements ExchangeFilterFunction {
+    private static final long CREDIT_PER_HEDGE = 1000;
+    private static final long MAX_CREDIT = 10 * CREDIT_PER_HEDGE;
+
+    private final KeycloakNodeBalancer balancer;
+    private final boolean hedged;
+    private final RollingPercentile latency;
+    private final long minHedgeDelayNanos;
+    private final long creditPerCall;
+    private final AtomicLong hedgeCredit = new AtomicLong();
+    private final Counter hedgesSent;
+    private final Counter hedgesWon;
+    private final Counter hedgesOverBudget;
+
+    public KeycloakLoadBalancingFilter(KeycloakNodeBalancer balancer, String client, boolean hedged, MeterRegistry meterRegistry) {
+        KeycloakBalancingProperties.Hedging hedging = balancer.getHedging();
+        this.balancer = balancer;
+        this.hedged = hedged && hedging.isEnabled();
+        this.latency = new RollingPercentile(hedging.getPercentile(), hedging.getWindow());
+        this.minHedgeDelayNanos = hedging.getMinDelay().toNanos();
+        this.creditPerCall = Math.round(hedging.getBudget() * CREDIT_PER_HEDGE);
+        this.hedgesSent = Counter.builder("orchestrator.keycloak.hedges").tag("client", client).tag("outcome", "sent").register(meterRegistry);
+        this.hedgesWon = Counter.builder("orchestrator.keycloak.hedges").tag("client", client).tag("outcome", "won").register(meterRegistry);
+        this.hedgesOverBudget = Counter.builder("orchestrator.keycloak.hedges").tag("client", client).tag("outcome", "over_budget").register(meterRegistry);
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        if (!balancer.isEnabled() || path(request.url()) == null) {
+            return next.exchange(request);
+        }
+        if (!hedged || request.method() != HttpMethod.GET) {
+            return send(request, next, null, null).map(Attempt::response);
+        }
+        return Mono.defer(() -> {
+            hedgeCredit.getAndUpdate(credit -> Math.min(MAX_CREDIT, credit + creditPerCall));
+            long threshold = latency.get();
+            if (threshold < 0) {
+                return send(request, next, null, null).map(Attempt::response);
+            }
+            AtomicReference<KeycloakNodeBalancer.Node> primaryNode = new AtomicReference<>();
+            Mono<Attempt> primary = send(request, next, null, primaryNode);
+            Mono<Attempt> hedge = Mono.delay(Duration.ofNanos(Math.max(threshold, minHedgeDelayNanos)))
+                    .filter(tick -> takeHedgeCredit())
+                    .flatMap(tick -> {
+                        hedgesSent.increment();
+                        return send(request, next, primaryNode.get(), null);
+                    });
+            return Mono.firstWithValue(primary, hedge)
+                    .doOnNext(attempt -> {
+                        if (attempt.hedge()) {
+                            hedgesWon.increment();
+                        }
+                    })
+                    .map(Attempt::response)
+                    // a response that lost the race is still holding a connection
+                    .doOnDiscard(Attempt.class, attempt -> attempt.response().releaseBody().subscribe())
+                    .onErrorMap(NoSuchElementException.class, KeycloakLoadBalancingFilter::firstError);
+        });
+    }
+
+    /**
+     * The error of the call rather than the one of {@link Mono#firstWithValue} when the call and its hedge failed.
+     */
+    private static Throwable firstError(NoSuchElementException e) {
+        List<Throwable> errors = e.getCause() == null ? List.of() : Exceptions.unwrapMultiple(e.getCause());
+        return errors.isEmpty() ? e : errors.get(0);
+    }
+
+    private boolean takeHedgeCredit() {
+        long credit;
+        do {
+            credit = hedgeCredit.get();
+            if (credit < CREDIT_PER_HEDGE) {
+                hedgesOverBudget.increment();
+                return false;
+            }
+        } while (!hedgeCredit.compareAndSet(credit, credit - CREDIT_PER_HEDGE));
+        return true;
+    }
+
+    private Mono<Attempt> send(ClientRequest request, ExchangeFunction next, KeycloakNodeBalancer.Node exclude,
+                               AtomicReference<KeycloakNodeBalancer.Node> chosen) {
+        boolean hedge = exclude != null;
+        return Mono.defer(() -> {
+            KeycloakNodeBalancer.Node node = balancer.choose(exclude);
+            if (chosen != null) {
+                chosen.set(node);
+            }
+            ClientRequest routed = ClientRequest.from(request)
+                    .url(URI.create(node.getUrl() + path(request.url())))
+                    .build();
+            AtomicBoolean ended = new AtomicBoolean();
+            long start = System.nanoTime();
+            node.start();
+            return next.exchange(routed)
+                    .doOnNext(response -> {
+                        if (ended.compareAndSet(false, true)) {
+                            long elapsed = System.nanoTime() - start;
+                            boolean failed = response.statusCode().is5xxServerError();
+                            node.end(elapsed, failed);
+                            if (!failed) {
+                                latency.record(elapsed);
+                            }
+                        }
+                    })
+                    .doOnError(e -> {
+                        if (ended.compareAndSet(false, true)) {
+                            node.end(System.nanoTime() - start, true);
+                        }
+                    })
+                    .doOnCancel(() -> {
+                        // the losing call of a hedge, it took at least this long
+                        if (ended.compareAndSet(false, true)) {
+                            node.end(System.nanoTime() - start, false);
+                        }
+                    })
+                    .map(response -> new Attempt(response, hedge));
+        });
+    }
+
+    /**
+     * The part of the URL after {@code kc.base-url}, or null for a URL elsewhere.
+     */
+    private String path(URI url) {
+        String value = url.toString();
+        String baseUrl = balancer.getBaseUrl();
+        if (!value.startsWith(baseUrl)
+                || value.length() > baseUrl.length() && "/?#".indexOf(value.charAt(baseUrl.length())) < 0) {
+            return null;
+        }
+        return value.substring(baseUrl.length());
+    }
+
+    private record Attempt(ClientResponse response, boolean hedge) {
+    }
+}
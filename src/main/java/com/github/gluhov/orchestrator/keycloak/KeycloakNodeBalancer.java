@@ -0,0 +1,134 @@
+package com.github.gluhov.orchestrator.keycloak;
+
+import com.github.gluhov.orchestrator.config.KeycloakBalancingProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Picks the Keycloak node for a call by the power of two choices: of two random nodes the one with the lower
+ * latency average times outstanding calls wins. The average jumps to a slower response at once and decays over
+ * {@code kc.balancing.decay}, so a node that stalls, e.g. in a GC pause, stops getting calls right away.
+ */
+@Component
+@EnableConfigurationProperties(KeycloakBalancingProperties.class)
+public class KeycloakNodeBalancer {
+    @Getter
+    private final String baseUrl;
+    private final List<Node> nodes;
+    @Getter
+    private final KeycloakBalancingProperties.Hedging hedging;
+    private final long decayNanos;
+    private final long failurePenaltyNanos;
+
+    public KeycloakNodeBalancer(@Value("${kc.base-url}") String baseUrl, KeycloakBalancingProperties properties,
+                                MeterRegistry meterRegistry) {
+        this.baseUrl = trimSlash(baseUrl);
+        this.decayNanos = properties.getDecay().toNanos();
+        this.failurePenaltyNanos = properties.getFailurePenalty().toNanos();
+        this.hedging = properties.getHedging();
+        List<Node> configured = new ArrayList<>();
+        for (String url : properties.getNodes()) {
+            if (url != null && !url.isBlank()) {
+                configured.add(new Node(trimSlash(url.trim())));
+            }
+        }
+        this.nodes = Collections.unmodifiableList(configured);
+        for (Node node : nodes) {
+            Gauge.builder("orchestrator.keycloak.node.outstanding", node, n -> n.outstanding.get())
+                    .tag("node", node.getUrl())
+                    .register(meterRegistry);
+            Gauge.builder("orchestrator.keycloak.node.latency.ewma", node, n -> n.getLatencyNanos() / 1e9)
+                    .tag("node", node.getUrl())
+                    .baseUnit("seconds")
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Whether there are nodes to choose from, otherwise calls go to {@code kc.base-url} unchanged.
+     */
+    public boolean isEnabled() {
+        return nodes.size() > 1;
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * The better of two distinct random nodes, or the other one when one of them is {@code exclude}, which may be null.
+     */
+    public Node choose(Node exclude) {
+        int size = nodes.size();
+        if (size == 1) {
+            return nodes.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int index = random.nextInt(size);
+        Node first = nodes.get(index);
+        Node second = nodes.get((index + 1 + random.nextInt(size - 1)) % size);
+        if (first == exclude) {
+            return second;
+        }
+        if (second == exclude) {
+            return first;
+        }
+        return first.getCost() <= second.getCost() ? first : second;
+    }
+
+    private static String trimSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    public class Node {
+        @Getter
+        private final String url;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private long latencyNanos;
+        private long updatedAt = System.nanoTime();
+
+        Node(String url) {
+            this.url = url;
+        }
+
+        public void start() {
+            outstanding.incrementAndGet();
+        }
+
+        /**
+         * Ends a call started with {@link #start()}, a failed call is charged the failure penalty.
+         */
+        public void end(long elapsedNanos, boolean failed) {
+            outstanding.decrementAndGet();
+            long sample = failed ? Math.max(elapsedNanos, failurePenaltyNanos) : elapsedNanos;
+            synchronized (this) {
+                long now = System.nanoTime();
+                if (sample > latencyNanos) {
+                    latencyNanos = sample;
+                } else {
+                    double weight = Math.exp(-(double) (now - updatedAt) / decayNanos);
+                    latencyNanos = (long) (latencyNanos * weight + sample * (1 - weight));
+                }
+                updatedAt = now;
+            }
+        }
+
+        synchronized long getLatencyNanos() {
+            return latencyNanos;
+        }
+
+        double getCost() {
+            return (double) getLatencyNanos() * (outstanding.get() + 1);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.github.gluhov.orchestrator.keycloak;
+
+import com.github.gluhov.orchestrator.security.CachingJwkSource;
+import com.github.gluhov.orchestrator.security.TokenRequestForm;
+import lombok.Builder;
+import lombok.Getter;
+import org.keycloak.admin.client.resource.RealmResource;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+
+import java.util.function.Supplier;
+
+/**
+ * Endpoints, client credentials and clients of one realm. The web clients and connection pools behind them are
+ * shared by all realms.
+ */
+@Getter
+@Builder
+public class KeycloakRealm {
+    private final String name;
+    /**
+     * Whether this is {@code kc.realm}, the realm the user read model mirrors.
+     */
+    private final boolean defaultRealm;
+    private final String issuer;
+    private final String tokenUrl;
+    private final String userinfoUrl;
+    private final String clientId;
+    private final String clientSecret;
+    /**
+     * Client credentials, grant type and scope of a login, encoded once.
+     */
+    private final TokenRequestForm passwordGrant;
+    /**
+     * Client credentials and grant type of a token refresh, encoded once.
+     */
+    private final TokenRequestForm refreshTokenGrant;
+    private final KeycloakAdminClient adminClient;
+    /**
+     * The blocking admin client, built on first use: only imports need it and building it loads RESTEasy. Resolve
+     * it off the event loop, inside the {@link KeycloakBlockingExecutor} call that uses it.
+     */
+    private final Supplier<RealmResource> realmResource;
+    private final CachingJwkSource jwkSource;
+    /**
+     * Verifies the signature with the realm's keys and the issuer, without caching.
+     */
+    private final ReactiveJwtDecoder jwtDecoder;
+}
@@ -0,0 +1,137 @@
+package com.github.gluhov.orchestrator.keycloak;
+
+import com.github.gluhov.orchestrator.config.KeycloakTenancyProperties;
+import com.github.gluhov.orchestrator.config.WebClientConfig;
+import com.github.gluhov.orchestrator.security.CachingJwkSource;
+import com.github.gluhov.orchestrator.security.TokenRequestForm;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.jboss.resteasy.client.jaxrs.ResteasyClient;
+import org.keycloak.OAuth2Constants;
+import org.keycloak.admin.client.KeycloakBuilder;
+import org.keycloak.admin.client.resource.RealmResource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.function.SingletonSupplier;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+
+/**
+ * Builds the {@link KeycloakRealm}s. {@code kc.realm} keeps the admin clients the rest of the application uses, the
+ * other realms get their own on top of the shared web clients and admin HTTP client. The blocking admin clients are
+ * only built when an import first needs them.
+ */
+@Component
+public class KeycloakRealmFactory {
+    private static final String REALMS_PATH = "/realms/";
+
+    private final KeycloakTenancyProperties properties;
+    private final WebClient adminWebClient;
+    private final WebClient jwksWebClient;
+    private final ObjectProvider<ResteasyClient> resteasyClient;
+    private final KeycloakAdminClient defaultAdminClient;
+    private final ObjectProvider<RealmResource> defaultRealmResource;
+    private final MeterRegistry meterRegistry;
+    @Value("${kc.base-url}")
+    private String baseUrl;
+    @Value("${kc.realm}")
+    private String defaultRealm;
+    @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri}")
+    private String defaultIssuer;
+    @Value("${spring.security.oauth2.resourceserver.jwt.jwk-set-uri}")
+    private String defaultJwkSetUri;
+    @Value("${spring.security.oauth2.client.registration.keycloak.client-id}")
+    private String clientId;
+    @Value("${spring.security.oauth2.client.registration.keycloak.client-secret}")
+    private String clientSecret;
+    @Value("${kc.admin.max-concurrency:32}")
+    private int adminMaxConcurrency;
+    @Value("${kc.admin.max-pending:1000}")
+    private int adminMaxPending;
+    @Value("${kc.jwks.refresh-interval:5m}")
+    private Duration jwksRefreshInterval;
+    @Value("${kc.jwks.kid-miss-min-interval:30s}")
+    private Duration jwksKidMissMinInterval;
+    @Value("${kc.jwks.prewarm-timeout:5s}")
+    private Duration jwksPrewarmTimeout;
+
+    public KeycloakRealmFactory(KeycloakTenancyProperties properties,
+                                @Qualifier(WebClientConfig.ADMIN_WEB_CLIENT) WebClient adminWebClient,
+                                @Qualifier(WebClientConfig.JWKS_WEB_CLIENT) WebClient jwksWebClient,
+                                ObjectProvider<ResteasyClient> resteasyClient,
+                                KeycloakAdminClient defaultAdminClient,
+                                ObjectProvider<RealmResource> defaultRealmResource,
+                                MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.adminWebClient = adminWebClient;
+        this.jwksWebClient = jwksWebClient;
+        this.resteasyClient = resteasyClient;
+        this.defaultAdminClient = defaultAdminClient;
+        this.defaultRealmResource = defaultRealmResource;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public String getDefaultRealm() {
+        return defaultRealm;
+    }
+
+    /**
+     * The {@code iss} claim of the realm's tokens.
+     */
+    public String issuer(String realm) {
+        if (defaultRealm.equals(realm)) {
+            return defaultIssuer;
+        }
+        String issuerBaseUrl = properties.getIssuerBaseUrl() == null ? baseUrl : properties.getIssuerBaseUrl();
+        return issuerBaseUrl + REALMS_PATH + realm;
+    }
+
+    /**
+     * Builds the realm without calling Keycloak, tokens and keys are fetched on first use.
+     */
+    public KeycloakRealm create(String realm) {
+        boolean isDefault = defaultRealm.equals(realm);
+        String realmUrl = baseUrl + REALMS_PATH + realm;
+        KeycloakTenancyProperties.Client client = properties.getClients().get(realm);
+        String realmClientId = client != null && client.getClientId() != null ? client.getClientId() : clientId;
+        String realmClientSecret = client != null && client.getClientSecret() != null ? client.getClientSecret() : clientSecret;
+        String issuer = issuer(realm);
+
+        CachingJwkSource jwkSource = new CachingJwkSource(jwksWebClient, realm,
+                isDefault ? defaultJwkSetUri : realmUrl + "/protocol/openid-connect/certs",
+                jwksRefreshInterval, jwksKidMissMinInterval, jwksPrewarmTimeout, meterRegistry);
+        NimbusReactiveJwtDecoder jwtDecoder = NimbusReactiveJwtDecoder.withJwkSource(jwkSource).build();
+        jwtDecoder.setJwtValidator(JwtValidators.createDefaultWithIssuer(issuer));
+
+        return KeycloakRealm.builder()
+                .name(realm)
+                .defaultRealm(isDefault)
+                .issuer(issuer)
+                .tokenUrl(realmUrl + "/protocol/openid-connect/token")
+                .userinfoUrl(realmUrl + "/protocol/openid-connect/userinfo")
+                .clientId(realmClientId)
+                .clientSecret(realmClientSecret)
+                .passwordGrant(new TokenRequestForm("client_id", realmClientId, "client_secret", realmClientSecret,
+                        "grant_type", OAuth2Constants.PASSWORD, "scope", "openid profile"))
+                .refreshTokenGrant(new TokenRequestForm("client_id", realmClientId, "client_secret", realmClientSecret,
+                        "grant_type", OAuth2Constants.REFRESH_TOKEN))
+                .adminClient(isDefault ? defaultAdminClient : new KeycloakAdminClient(adminWebClient, baseUrl, realm,
+                        realmClientId, realmClientSecret, adminMaxConcurrency, adminMaxPending))
+                .realmResource(isDefault ? defaultRealmResource::getObject : SingletonSupplier.of(() -> KeycloakBuilder.builder()
+                        .serverUrl(baseUrl)
+                        .realm(realm)
+                        .clientId(realmClientId)
+                        .clientSecret(realmClientSecret)
+                        .grantType(OAuth2Constants.CLIENT_CREDENTIALS)
+                        .resteasyClient(resteasyClient.getObject())
+                        .build()
+                        .realm(realm)))
+                .jwkSource(jwkSource)
+                .jwtDecoder(jwtDecoder)
+                .build();
+    }
+}
@@ -0,0 +1,119 @@
+package com.github.gluhov.orchestrator.keycloak;
+
+import com.github.gluhov.orchestrator.config.KeycloakTenancyProperties;
+import com.github.gluhov.orchestrator.exception.ApiException;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The realms this orchestrator serves, {@code kc.realm} and {@code kc.tenancy.realms}, looked up by name or by
+ * token issuer. A realm's clients and decoder are built on its first request and kept, {@code kc.realm}'s on start
+ * so that its keys are fetched before the first token arrives.
+ */
+@Component
+@EnableConfigurationProperties(KeycloakTenancyProperties.class)
+public class KeycloakRealms implements SmartLifecycle {
+    public static final String REALM_HEADER = "X-Realm";
+
+    private final KeycloakRealmFactory factory;
+    private final String defaultRealm;
+    private final Set<String> names = new HashSet<>();
+    private final Map<String, String> realmsByIssuer = new HashMap<>();
+    private final ConcurrentMap<String, KeycloakRealm> realms = new ConcurrentHashMap<>();
+    private volatile boolean running;
+
+    public KeycloakRealms(KeycloakRealmFactory factory, KeycloakTenancyProperties properties) {
+        this.factory = factory;
+        this.defaultRealm = factory.getDefaultRealm();
+        names.add(defaultRealm);
+        for (String realm : properties.getRealms()) {
+            if (realm != null && !realm.isBlank()) {
+                names.add(realm.trim());
+            }
+        }
+        for (String name : names) {
+            realmsByIssuer.put(factory.issuer(name), name);
+        }
+    }
+
+    public KeycloakRealm getDefault() {
+        return realm(defaultRealm);
+    }
+
+    /**
+     * The named realm, {@code kc.realm} when the name is null.
+     */
+    public KeycloakRealm get(String name) {
+        if (name == null || name.isBlank() || name.equals(defaultRealm)) {
+            return getDefault();
+        }
+        if (!names.contains(name)) {
+            throw new ApiException("Unknown realm " + name, "O_UNKNOWN_REALM");
+        }
+        return realm(name);
+    }
+
+    /**
+     * The realm that issued the token, null for an issuer that is not served here.
+     */
+    public KeycloakRealm findByIssuer(String issuer) {
+        String name = issuer == null ? null : realmsByIssuer.get(issuer);
+        return name == null ? null : realm(name);
+    }
+
+    /**
+     * The realm of a verified token, {@code kc.realm} without one.
+     */
+    public KeycloakRealm forToken(Jwt jwt) {
+        if (jwt == null || jwt.getIssuer() == null) {
+            return getDefault();
+        }
+        KeycloakRealm realm = findByIssuer(jwt.getIssuer().toString());
+        return realm != null ? realm : getDefault();
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        getDefault().getJwkSource().start();
+        for (KeycloakRealm realm : realms.values()) {
+            realm.getJwkSource().startRefreshing();
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        for (KeycloakRealm realm : realms.values()) {
+            realm.getJwkSource().stop();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private KeycloakRealm realm(String name) {
+        KeycloakRealm realm = realms.get(name);
+        return realm != null ? realm : realms.computeIfAbsent(name, this::create);
+    }
+
+    private KeycloakRealm create(String name) {
+        KeycloakRealm realm = factory.create(name);
+        if (running) {
+            // keys are fetched by the first token, a blocking pre-warm would stall the request that got here
+            realm.getJwkSource().startRefreshing();
+        }
+        return realm;
+    }
+}
@@ -0,0 +1,120 @@
+package com.github.gluhov.orchestrator.keycloak;
+
+import com.github.gluhov.orchestrator.config.KeycloakResilienceProperties;
+import com.github.gluhov.orchestrator.exception.ServiceUnavailableException;
+import com.github.gluhov.orchestrator.util.AdaptiveConcurrencyLimit;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+import reactor.core.observability.micrometer.Micrometer;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Failure isolation for Keycloak calls. Every operation gets its own circuit breaker, bulkhead and adaptive
+ * concurrency limit, so a slow Keycloak turns into fast 503 responses instead of unbounded in-flight requests.
+ * Each call, rejected ones included, is observed as {@code orchestrator.keycloak.calls} tagged by operation, which
+ * with tracing on is a span named after the operation around the HTTP client span of the call.
+ */
+@Component
+@Slf4j
+@EnableConfigurationProperties(KeycloakResilienceProperties.class)
+public class KeycloakResilience {
+    public static final String AUTHENTICATE = "keycloak-authenticate";
+    public static final String REFRESH_TOKEN = "keycloak-refresh-token";
+    public static final String USERINFO = "keycloak-userinfo";
+    public static final String REGISTER = "keycloak-register";
+
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    private final BulkheadRegistry bulkheadRegistry;
+    private final MeterRegistry meterRegistry;
+    private final ObservationRegistry observationRegistry;
+    private final KeycloakResilienceProperties properties;
+    private final Map<String, Guard> guards = new ConcurrentHashMap<>();
+
+    public KeycloakResilience(CircuitBreakerRegistry circuitBreakerRegistry, BulkheadRegistry bulkheadRegistry,
+                              MeterRegistry meterRegistry, ObservationRegistry observationRegistry,
+                              KeycloakResilienceProperties properties) {
+        this.circuitBreakerRegistry = circuitBreakerRegistry;
+        this.bulkheadRegistry = bulkheadRegistry;
+        this.meterRegistry = meterRegistry;
+        this.observationRegistry = observationRegistry;
+        this.properties = properties;
+    }
+
+    public <T> Mono<T> execute(String operation, Supplier<Mono<T>> call) {
+        Guard guard = guards.computeIfAbsent(operation, this::guard);
+        return Mono.defer(call)
+                .timeout(properties.getTimeout())
+                .transform(mono -> guard.limit().limit(mono, () -> reject(operation, "concurrency-limit",
+                        "Keycloak concurrency limit reached", "O_KEYCLOAK_CONCURRENCY_LIMITED")))
+                .transformDeferred(BulkheadOperator.of(guard.bulkhead()))
+                .transformDeferred(CircuitBreakerOperator.of(guard.circuitBreaker()))
+                .onErrorMap(BulkheadFullException.class, e -> reject(operation, "bulkhead",
+                        "Keycloak bulkhead is full", "O_KEYCLOAK_BULKHEAD_FULL"))
+                .onErrorMap(CallNotPermittedException.class, e -> reject(operation, "circuit-open",
+                        "Keycloak circuit breaker is open", "O_KEYCLOAK_CIRCUIT_OPEN"))
+                .onErrorMap(TimeoutException.class, e -> reject(operation, "timeout",
+                        "Keycloak did not respond in time", "O_KEYCLOAK_TIMEOUT"))
+                .name("orchestrator.keycloak.calls")
+                .tag("operation", operation)
+                .tap(Micrometer.observation(observationRegistry, registry ->
+                        Observation.createNotStarted("orchestrator.keycloak.calls", registry).contextualName(operation)));
+    }
+
+    private ServiceUnavailableException reject(String operation, String reason, String message, String errorCode) {
+        log.debug("Keycloak {} call rejected: {}", operation, reason);
+        Counter.builder("orchestrator.keycloak.rejections")
+                .tag("operation", operation)
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+        return new ServiceUnavailableException(message, errorCode);
+    }
+
+    private Guard guard(String operation) {
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker(operation);
+        circuitBreaker.getEventPublisher().onStateTransition(event -> {
+            log.warn("Circuit breaker {} changed state: {}", operation, event.getStateTransition());
+            Counter.builder("orchestrator.keycloak.circuit.transitions")
+                    .tag("operation", operation)
+                    .tag("from", event.getStateTransition().getFromState().name())
+                    .tag("to", event.getStateTransition().getToState().name())
+                    .register(meterRegistry)
+                    .increment();
+        });
+
+        KeycloakResilienceProperties.AdaptiveLimit settings = properties.getAdaptiveLimit();
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(settings.getInitialLimit(), settings.getMinLimit(),
+                settings.getMaxLimit(), settings.getBackoffRatio(), settings.getSlowCallThreshold().toNanos(),
+                error -> !KeycloakErrors.isClientError(error));
+        Gauge.builder("orchestrator.keycloak.concurrency.limit", limit, AdaptiveConcurrencyLimit::getLimit)
+                .tag("operation", operation)
+                .register(meterRegistry);
+        Gauge.builder("orchestrator.keycloak.concurrency.in.flight", limit, AdaptiveConcurrencyLimit::getInFlight)
+                .tag("operation", operation)
+                .register(meterRegistry);
+
+        return new Guard(circuitBreaker, bulkheadRegistry.bulkhead(operation), limit);
+    }
+
+    private record Guard(CircuitBreaker circuitBreaker, Bulkhead bulkhead, AdaptiveConcurrencyLimit limit) {
+    }
+}
@@ -0,0 +1,29 @@
+package com.github.gluhov.orchestrator.keycloak;
+
+import io.micrometer.tracing.TraceContext;
+import io.micrometer.tracing.Tracer;
+import io.micrometer.tracing.propagation.Propagator;
+import jakarta.ws.rs.client.ClientRequestContext;
+import jakarta.ws.rs.client.ClientRequestFilter;
+
+/**
+ * Adds the trace headers of the current span to the requests of the blocking admin client, which unlike the web
+ * clients is not observed. The span is the one {@link KeycloakBlockingExecutor} runs the call in.
+ */
+public class KeycloakTracePropagationFilter implements ClientRequestFilter {
+    private final Tracer tracer;
+    private final Propagator propagator;
+
+    public KeycloakTracePropagationFilter(Tracer tracer, Propagator propagator) {
+        this.tracer = tracer;
+        this.propagator = propagator;
+    }
+
+    @Override
+    public void filter(ClientRequestContext request) {
+        TraceContext context = tracer.currentTraceContext().context();
+        if (context != null) {
+            propagator.inject(context, request.getHeaders(), (headers, name, value) -> headers.putSingle(name, value));
+        }
+    }
+}
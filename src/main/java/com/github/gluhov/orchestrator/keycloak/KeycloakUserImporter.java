@@ -0,0 +1,59 @@
+package com.github.gluhov.orchestrator.keycloak;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.gluhov.orchestrator.exception.ApiException;
+import jakarta.ws.rs.core.Response;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.keycloak.admin.client.resource.RealmResource;
+import org.keycloak.representations.idm.PartialImportRepresentation;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Creates users in batches through the realm partial import admin API, one Keycloak call and transaction per
+ * batch. The admin client is blocking, calls run through {@link KeycloakBlockingExecutor}.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class KeycloakUserImporter {
+    private final ObjectMapper objectMapper;
+    private final KeycloakBlockingExecutor blockingExecutor;
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record ImportSummary(int added, int skipped, int overwritten) {
+    }
+
+    /**
+     * Imports the users, {@code policy} decides what happens to users that already exist. With
+     * {@link PartialImportRepresentation.Policy#FAIL} an existing user fails the whole batch. The admin client is
+     * resolved on the executor too, building it on first use blocks.
+     */
+    public Mono<ImportSummary> importUsers(Supplier<RealmResource> realmResource, List<UserRepresentation> users,
+                                           PartialImportRepresentation.Policy policy) {
+        return blockingExecutor.execute("partial-import", () -> doImportUsers(realmResource.get(), users, policy));
+    }
+
+    private ImportSummary doImportUsers(RealmResource realmResource, List<UserRepresentation> users,
+                                        PartialImportRepresentation.Policy policy) throws Exception {
+        PartialImportRepresentation partialImport = new PartialImportRepresentation();
+        partialImport.setUsers(users);
+        partialImport.setIfResourceExists(policy.name());
+        try (Response response = realmResource.partialImport(partialImport)) {
+            String body = response.hasEntity() ? response.readEntity(String.class) : "";
+            if (response.getStatusInfo().getFamily() != Response.Status.Family.SUCCESSFUL) {
+                log.error("Error from Keycloak: {}", body);
+                throw KeycloakErrors.toException(HttpStatusCode.valueOf(response.getStatusInfo().getStatusCode()), body, ApiException::new,
+                        "O_IMPORT_USERS_ERROR");
+            }
+            return objectMapper.readValue(body, ImportSummary.class);
+        }
+    }
+}
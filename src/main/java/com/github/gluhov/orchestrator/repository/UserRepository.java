@@ -0,0 +1,112 @@
+package com.github.gluhov.orchestrator.repository;
+
+import com.github.gluhov.orchestrator.entity.UserEntity;
+import io.r2dbc.spi.Readable;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Statement;
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Postgres {@code users} table, see {@code db/init-db.sql}.
+ */
+@Repository
+@RequiredArgsConstructor
+public class UserRepository {
+    private static final String COLUMNS = "id, username, email, first_name, last_name, enabled, email_verified, created_timestamp, synced_at";
+    private static final String UPSERT = "INSERT INTO users (" + COLUMNS + ") VALUES ($1, $2, $3, $4, $5, $6, $7, $8, $9) "
+            + "ON CONFLICT (id) DO UPDATE SET username = EXCLUDED.username, email = EXCLUDED.email, "
+            + "first_name = EXCLUDED.first_name, last_name = EXCLUDED.last_name, enabled = EXCLUDED.enabled, "
+            + "email_verified = EXCLUDED.email_verified, created_timestamp = EXCLUDED.created_timestamp, "
+            + "synced_at = EXCLUDED.synced_at";
+
+    private final DatabaseClient databaseClient;
+
+    public Mono<UserEntity> findById(String id) {
+        return databaseClient.sql("SELECT " + COLUMNS + " FROM users WHERE id = :id")
+                .bind("id", id)
+                .map(UserRepository::toEntity)
+                .one();
+    }
+
+    /**
+     * Inserts or replaces the users as one batch of statements sent over a single connection.
+     */
+    public Mono<Long> upsertAll(List<UserEntity> users) {
+        if (users.isEmpty()) {
+            return Mono.just(0L);
+        }
+        return databaseClient.inConnectionMany(connection -> {
+                    Statement statement = connection.createStatement(UPSERT);
+                    for (int i = 0; i < users.size(); i++) {
+                        if (i > 0) {
+                            statement.add();
+                        }
+                        bind(statement, users.get(i));
+                    }
+                    return Flux.from(statement.execute()).flatMap(Result::getRowsUpdated);
+                })
+                .reduce(0L, Long::sum);
+    }
+
+    public Mono<Long> deleteAllById(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return Mono.just(0L);
+        }
+        return databaseClient.sql("DELETE FROM users WHERE id = ANY(:ids)")
+                .bind("ids", ids.toArray(String[]::new))
+                .fetch()
+                .rowsUpdated();
+    }
+
+    /**
+     * Removes the users a full sync did not see, i.e. the ones deleted from Keycloak since the previous one.
+     */
+    public Mono<Long> deleteSyncedBefore(Instant syncedAt) {
+        return databaseClient.sql("DELETE FROM users WHERE synced_at < :syncedAt")
+                .bind("syncedAt", syncedAt)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    private static void bind(Statement statement, UserEntity user) {
+        statement.bind(0, user.getId());
+        statement.bind(1, user.getUsername());
+        bindNullable(statement, 2, user.getEmail(), String.class);
+        bindNullable(statement, 3, user.getFirstName(), String.class);
+        bindNullable(statement, 4, user.getLastName(), String.class);
+        statement.bind(5, user.isEnabled());
+        statement.bind(6, user.isEmailVerified());
+        bindNullable(statement, 7, user.getCreatedTimestamp(), Long.class);
+        statement.bind(8, user.getSyncedAt());
+    }
+
+    private static <T> void bindNullable(Statement statement, int index, T value, Class<T> type) {
+        if (value == null) {
+            statement.bindNull(index, type);
+        } else {
+            statement.bind(index, value);
+        }
+    }
+
+    private static UserEntity toEntity(Readable row) {
+        return UserEntity.builder()
+                .id(row.get("id", String.class))
+                .username(row.get("username", String.class))
+                .email(row.get("email", String.class))
+                .firstName(row.get("first_name", String.class))
+                .lastName(row.get("last_name", String.class))
+                .enabled(Boolean.TRUE.equals(row.get("enabled", Boolean.class)))
+                .emailVerified(Boolean.TRUE.equals(row.get("email_verified", Boolean.class)))
+                .createdTimestamp(row.get("created_timestamp", Long.class))
+                .syncedAt(row.get("synced_at", Instant.class))
+                .build();
+    }
+}
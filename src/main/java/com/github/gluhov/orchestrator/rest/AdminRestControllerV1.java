@@ -0,0 +1,77 @@
+package com.github.gluhov.orchestrator.rest;
+
+import com.github.gluhov.orchestrator.dto.AuthRequestDto;
+import com.github.gluhov.orchestrator.dto.BulkRegistrationResultDto;
+import com.github.gluhov.orchestrator.dto.UserDto;
+import com.github.gluhov.orchestrator.dto.UserExportDto;
+import com.github.gluhov.orchestrator.dto.UserImportResultDto;
+import com.github.gluhov.orchestrator.keycloak.KeycloakRealms;
+import com.github.gluhov.orchestrator.service.UserService;
+import lombok.RequiredArgsConstructor;
+import org.keycloak.representations.idm.PartialImportRepresentation;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static com.github.gluhov.orchestrator.rest.AdminRestControllerV1.REST_URL;
+
+/**
+ * User administration in the realm that issued the admin's token.
+ */
+@RestController
+@RequiredArgsConstructor
+@RequestMapping(REST_URL)
+public class AdminRestControllerV1 {
+    public static final String REST_URL = "/api/v1/admin/users";
+    private final UserService userService;
+    private final KeycloakRealms keycloakRealms;
+
+    /**
+     * Streams the users of the admin's realm as NDJSON. An interrupted export is resumed by passing the
+     * {@code cursor} of the last received line.
+     */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<UserExportDto> exportAll(@AuthenticationPrincipal Jwt jwt, @RequestParam(defaultValue = "0") long cursor) {
+        return userService.exportAll(keycloakRealms.forToken(jwt), cursor);
+    }
+
+    /**
+     * Looks the user up in the read model, or in Keycloak when the model is disabled or stale.
+     */
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<UserDto>> getUser(@AuthenticationPrincipal Jwt jwt, @PathVariable String id) {
+        return userService.getUserById(keycloakRealms.forToken(jwt), id)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Registers one user per NDJSON line and streams one result line per user as soon as it is known.
+     */
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<BulkRegistrationResultDto> registerAll(@AuthenticationPrincipal Jwt jwt,
+                                                       @RequestBody Flux<AuthRequestDto> registrationRequests) {
+        return userService.registerAll(keycloakRealms.forToken(jwt), registrationRequests);
+    }
+
+    /**
+     * Imports one user per NDJSON line in chunks through the Keycloak partial import and streams one result line
+     * per chunk. {@code policy} is applied to users that already exist: SKIP, OVERWRITE or FAIL the chunk.
+     */
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<UserImportResultDto> importAll(@AuthenticationPrincipal Jwt jwt,
+                                               @RequestBody Flux<AuthRequestDto> registrationRequests,
+                                               @RequestParam(defaultValue = "SKIP") PartialImportRepresentation.Policy policy) {
+        return userService.importAll(keycloakRealms.forToken(jwt), registrationRequests, policy);
+    }
+}
@@ -0,0 +1,231 @@
+package com.github.gluhov.orchestrator.rest;
+
+import com.github.gluhov.orchestrator.config.AdmissionControlProperties;
+import com.github.gluhov.orchestrator.errorhandling.AppErrorAttributes;
+import com.github.gluhov.orchestrator.exception.ServiceUnavailableException;
+import com.github.gluhov.orchestrator.util.DeliberateDelay;
+import com.github.gluhov.orchestrator.util.QueueingDelayEstimator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Admission control of {@link AuthRestControllerV1} and {@link UserRestControllerV1}. When Keycloak slows down,
+ * logins and registrations are turned away first, so that token refreshes and profile reads of existing sessions
+ * keep their response times. Runs ahead of Spring Security, so a rejected request costs neither token decoding nor
+ * body parsing, and is answered with a pre-rendered 503 and a {@code Retry-After} of the estimated delay.
+ * <p>
+ * Each endpoint has a {@link QueueingDelayEstimator} of its own, a registration costs about twice a login and would
+ * otherwise be taken for a queued one, fed with the response times of its admitted requests that succeeded. A fast
+ * 400 or 401 is no baseline of the real work, and neither is a response marked as {@link DeliberateDelay}: a
+ * credential stuffing wave held back by the login throttle would otherwise look like queueing and get every login
+ * shed. The delay of a priority class is the largest estimate of its endpoints.
+ * Every decision is counted in {@code orchestrator.admission} tagged by priority and outcome, and the estimates are
+ * published as {@code orchestrator.admission.queueing.delay}.
+ */
+@Component
+@Slf4j
+@EnableConfigurationProperties(AdmissionControlProperties.class)
+public class AdmissionControlWebFilter implements WebFilter, Ordered {
+    /**
+     * Ahead of Spring Security's filter chain at -100.
+     */
+    public static final int ORDER = -200;
+    private static final ServiceUnavailableException OVERLOADED = new ServiceUnavailableException(
+            "Server is overloaded, try again later", "O_OVERLOADED");
+
+    public enum Priority {
+        HIGH, LOW
+    }
+
+    enum Endpoint {
+        PROFILE(Priority.HIGH), REFRESH_TOKEN(Priority.HIGH), LOGIN(Priority.LOW), REGISTER(Priority.LOW);
+
+        private final Priority priority;
+
+        Endpoint(Priority priority) {
+            this.priority = priority;
+        }
+
+        Priority priority() {
+            return priority;
+        }
+    }
+
+    private final AdmissionControlProperties properties;
+    private final AppErrorAttributes errorAttributes;
+    private final LongSupplier nanoClock;
+    private final DoubleSupplier random;
+    private final Map<Priority, Admission> admissions = new EnumMap<>(Priority.class);
+    private final Map<Endpoint, QueueingDelayEstimator> estimators = new EnumMap<>(Endpoint.class);
+
+    @Autowired
+    public AdmissionControlWebFilter(AdmissionControlProperties properties, AppErrorAttributes errorAttributes,
+                                     MeterRegistry meterRegistry) {
+        this(properties, errorAttributes, meterRegistry, System::nanoTime, () -> ThreadLocalRandom.current().nextDouble());
+    }
+
+    AdmissionControlWebFilter(AdmissionControlProperties properties, AppErrorAttributes errorAttributes,
+                              MeterRegistry meterRegistry, LongSupplier nanoClock, DoubleSupplier random) {
+        this.properties = properties;
+        this.errorAttributes = errorAttributes;
+        this.nanoClock = nanoClock;
+        this.random = random;
+        for (Endpoint endpoint : Endpoint.values()) {
+            estimators.put(endpoint, new QueueingDelayEstimator(properties.getDecay(), properties.getMinResponses(),
+                    properties.getBaselineWindow(), nanoClock));
+        }
+        for (Priority priority : Priority.values()) {
+            AdmissionControlProperties.Priority settings = priority == Priority.HIGH ? properties.getHigh() : properties.getLow();
+            admissions.put(priority, new Admission(
+                    settings,
+                    counter(meterRegistry, priority, "admitted"),
+                    counter(meterRegistry, priority, "rejected")));
+            Gauge.builder("orchestrator.admission.queueing.delay", this, filter -> filter.ownDelay(priority) / 1e9)
+                    .tag("priority", tag(priority))
+                    .baseUnit("seconds")
+                    .register(meterRegistry);
+        }
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        Endpoint endpoint = properties.isEnabled() ? endpoint(exchange.getRequest()) : null;
+        if (endpoint == null) {
+            return chain.filter(exchange);
+        }
+        Priority priority = endpoint.priority();
+        Admission admission = admissions.get(priority);
+        long delay = delay(priority);
+        long target = admission.settings().getTargetDelay().toNanos();
+        double excess = (double) (delay - target) / target;
+        if (excess > 0 && (excess >= 1 || random.getAsDouble() < excess)) {
+            admission.rejected().increment();
+            log.debug("Rejected {} priority request {}, estimated queueing delay {} ms", tag(priority),
+                    exchange.getRequest().getPath(), TimeUnit.NANOSECONDS.toMillis(delay));
+            return reject(exchange.getResponse(), delay);
+        }
+        admission.admitted().increment();
+        long start = nanoClock.getAsLong();
+        DeliberateDelay deliberateDelay = new DeliberateDelay();
+        return chain.filter(exchange)
+                .doFinally(signal -> {
+                    // a client that went away says nothing about how long the work takes, nor does a failed
+                    // request that skipped most of it or a response held back on purpose, e.g. a throttled login
+                    if (signal == SignalType.ON_COMPLETE && isSuccessful(exchange.getResponse())
+                            && !deliberateDelay.isMarked()) {
+                        estimators.get(endpoint).record(nanoClock.getAsLong() - start);
+                    }
+                })
+                .contextWrite(deliberateDelay::addTo);
+    }
+
+    /**
+     * The estimated queueing delay of the class, the largest of its own and of the classes above it, which take
+     * precedence.
+     */
+    private long delay(Priority priority) {
+        long delay = 0;
+        for (Priority other : Priority.values()) {
+            if (other.ordinal() <= priority.ordinal()) {
+                delay = Math.max(delay, ownDelay(other));
+            }
+        }
+        return delay;
+    }
+
+    /**
+     * The largest estimated queueing delay of the endpoints of the class.
+     */
+    private long ownDelay(Priority priority) {
+        long delay = 0;
+        for (Map.Entry<Endpoint, QueueingDelayEstimator> estimator : estimators.entrySet()) {
+            if (estimator.getKey().priority() == priority) {
+                delay = Math.max(delay, estimator.getValue().get());
+            }
+        }
+        return delay;
+    }
+
+    /**
+     * A response without a status set is sent as 200.
+     */
+    private static boolean isSuccessful(ServerHttpResponse response) {
+        HttpStatusCode status = response.getStatusCode();
+        return status == null || status.is2xxSuccessful();
+    }
+
+    private Mono<Void> reject(ServerHttpResponse response, long delayNanos) {
+        AppErrorAttributes.RenderedError error = errorAttributes.render(OVERLOADED);
+        long retryAfter = Math.max(properties.getMinRetryAfter().toSeconds(),
+                Math.min(properties.getMaxRetryAfter().toSeconds(), (delayNanos + 999_999_999) / 1_000_000_000));
+        response.setStatusCode(error.status());
+        HttpHeaders headers = response.getHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set(HttpHeaders.RETRY_AFTER, Long.toString(retryAfter));
+        return response.writeWith(Mono.fromSupplier(() -> response.bufferFactory().wrap(error.body())));
+    }
+
+    /**
+     * The guarded endpoint a request is for, null for any other request.
+     */
+    static Endpoint endpoint(ServerHttpRequest request) {
+        String path = request.getPath().pathWithinApplication().value();
+        HttpMethod method = request.getMethod();
+        if (HttpMethod.GET.equals(method) && UserRestControllerV1.REST_URL.equals(path)) {
+            return Endpoint.PROFILE;
+        }
+        if (!HttpMethod.POST.equals(method) || !path.startsWith(AuthRestControllerV1.REST_URL + "/")) {
+            return null;
+        }
+        return switch (path.substring(AuthRestControllerV1.REST_URL.length() + 1)) {
+            case "refresh-token" -> Endpoint.REFRESH_TOKEN;
+            case "login" -> Endpoint.LOGIN;
+            case "register" -> Endpoint.REGISTER;
+            default -> null;
+        };
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, Priority priority, String outcome) {
+        return Counter.builder("orchestrator.admission")
+                .tag("priority", tag(priority))
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private static String tag(Priority priority) {
+        return priority.name().toLowerCase(Locale.ROOT);
+    }
+
+    private record Admission(AdmissionControlProperties.Priority settings, Counter admitted, Counter rejected) {
+    }
+}
@@ -1,17 +1,24 @@
 package com.github.gluhov.orchestrator.rest;
 
 import com.github.gluhov.orchestrator.dto.AuthRequestDto;
+import com.github.gluhov.orchestrator.dto.AuthResponseDto;
 import com.github.gluhov.orchestrator.dto.RefreshTokenRequestDto;
+import com.github.gluhov.orchestrator.keycloak.KeycloakRealm;
+import com.github.gluhov.orchestrator.keycloak.KeycloakRealms;
 import com.github.gluhov.orchestrator.security.SecurityService;
 import com.github.gluhov.orchestrator.service.UserService;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Mono;
 
+import java.net.InetSocketAddress;
 import java.net.URI;
 
 import static com.github.gluhov.orchestrator.rest.AuthRestControllerV1.REST_URL;
@@ -19,26 +26,63 @@ import static com.github.gluhov.orchestrator.rest.AuthRestControllerV1.REST_URL;
 @RestController
 @RequestMapping(REST_URL)
 @RequiredArgsConstructor
+@Slf4j
 public class AuthRestControllerV1 {
     public static final String REST_URL = "/api/v1/auth";
     private final SecurityService securityService;
     private final UserService userService;
+    private final KeycloakRealms keycloakRealms;
 
+    /**
+     * Logs in to the realm named by the {@code X-Realm} header, {@code kc.realm} without one.
+     */
     @PostMapping("/login")
-    public Mono<?> login(@RequestBody AuthRequestDto authRequestDto) {
-        return securityService.authenticate(authRequestDto)
+    public Mono<?> login(@RequestBody AuthRequestDto authRequestDto, ServerHttpRequest request,
+                         @RequestHeader(name = KeycloakRealms.REALM_HEADER, required = false) String realm) {
+        // the peer address, set server.forward-headers-strategy when running behind a proxy
+        InetSocketAddress remoteAddress = request.getRemoteAddress();
+        String clientAddress = remoteAddress == null ? null : remoteAddress.getHostString();
+        return Mono.fromSupplier(() -> keycloakRealms.get(realm))
+                .flatMap(keycloakRealm -> securityService.authenticate(keycloakRealm, authRequestDto, clientAddress))
                 .map(authResponseDto -> ResponseEntity.ok().body(authResponseDto));
     }
 
+    /**
+     * Creates the user and logs it in within the same request, answering 201 with the tokens. When the login fails
+     * after the user was created the answer is still 201, without a body, and the client logs in on its own.
+     */
     @PostMapping("/register")
-    public Mono<ResponseEntity<Void>> register(@RequestBody AuthRequestDto registrationRequest) {
-        return userService.register(registrationRequest)
-                .map(userId -> ResponseEntity.created(URI.create("/users/" + userId)).build());
+    public Mono<ResponseEntity<AuthResponseDto>> register(@RequestBody AuthRequestDto registrationRequest,
+                                                          @RequestHeader(name = KeycloakRealms.REALM_HEADER, required = false) String realm) {
+        return Mono.fromSupplier(() -> keycloakRealms.get(realm))
+                .flatMap(keycloakRealm -> userService.register(keycloakRealm, registrationRequest)
+                        .flatMap(userId -> login(keycloakRealm, registrationRequest, userId)));
+    }
+
+    private Mono<ResponseEntity<AuthResponseDto>> login(KeycloakRealm realm, AuthRequestDto registrationRequest, String userId) {
+        URI location = URI.create("/users/" + userId);
+        return securityService.authenticate(realm, getLoginRequest(registrationRequest))
+                .map(authResponseDto -> ResponseEntity.created(location).body(authResponseDto))
+                .onErrorResume(e -> {
+                    log.warn("Registered user {} but failed to log it in: {}", userId, e.getMessage());
+                    return Mono.just(ResponseEntity.created(location).build());
+                });
+    }
+
+    private static AuthRequestDto getLoginRequest(AuthRequestDto registrationRequest) {
+        // the user is created without a username and the realm registers the email as username,
+        // so a username in the registration request is not the one to log in with
+        return AuthRequestDto.builder()
+                .username(registrationRequest.getEmail())
+                .password(registrationRequest.getPassword())
+                .build();
     }
 
     @PostMapping("/refresh-token")
-    public Mono<?> refreshToken(@RequestBody RefreshTokenRequestDto refreshTokenRequestDto) {
-        return securityService.refreshToken(refreshTokenRequestDto)
+    public Mono<?> refreshToken(@RequestBody RefreshTokenRequestDto refreshTokenRequestDto,
+                                @RequestHeader(name = KeycloakRealms.REALM_HEADER, required = false) String realm) {
+        return Mono.fromSupplier(() -> keycloakRealms.get(realm))
+                .flatMap(keycloakRealm -> securityService.refreshToken(keycloakRealm, refreshTokenRequestDto))
                 .map(authResponseDto -> ResponseEntity.ok().body(authResponseDto));
     }
 }
\ No newline at end of file
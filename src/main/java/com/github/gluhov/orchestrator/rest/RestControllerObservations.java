@@ -0,0 +1,59 @@
+package com.github.gluhov.orchestrator.rest;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+import reactor.core.observability.micrometer.Micrometer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Observes every handler method of the REST controllers as {@code orchestrator.rest} tagged by handler, e.g.
+ * {@code AuthRestControllerV1.login}. With tracing on, this is the span {@code auth-rest-controller-v1.login} between
+ * the security filter chain and the service and Keycloak calls of a request. The observation covers the subscription
+ * to the returned publisher, where the work of a reactive handler happens, and is handed down the Reactor context,
+ * so the spans of the calls made on the way are its children.
+ */
+@Aspect
+@Component
+public class RestControllerObservations {
+    private static final String NAME = "orchestrator.rest";
+
+    private final ObservationRegistry observationRegistry;
+
+    public RestControllerObservations(ObservationRegistry observationRegistry) {
+        this.observationRegistry = observationRegistry;
+    }
+
+    @Around("within(@org.springframework.web.bind.annotation.RestController *) && execution(public * *(..))")
+    public Object observe(ProceedingJoinPoint joinPoint) throws Throwable {
+        Object result = joinPoint.proceed();
+        String handler = joinPoint.getSignature().getDeclaringType().getSimpleName() + "." + joinPoint.getSignature().getName();
+        if (result instanceof Mono<?> mono) {
+            return observe(mono, handler);
+        }
+        if (result instanceof Flux<?> flux) {
+            return observe(flux, handler);
+        }
+        return result;
+    }
+
+    private <T> Mono<T> observe(Mono<T> mono, String handler) {
+        return mono.name(NAME)
+                .tag("handler", handler)
+                .tap(Micrometer.observation(observationRegistry, registry -> observation(registry, handler)));
+    }
+
+    private <T> Flux<T> observe(Flux<T> flux, String handler) {
+        return flux.name(NAME)
+                .tag("handler", handler)
+                .tap(Micrometer.observation(observationRegistry, registry -> observation(registry, handler)));
+    }
+
+    private static Observation observation(ObservationRegistry registry, String handler) {
+        return Observation.createNotStarted(NAME, registry).contextualName(handler);
+    }
+}
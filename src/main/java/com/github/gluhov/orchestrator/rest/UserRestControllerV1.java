@@ -3,6 +3,8 @@ package com.github.gluhov.orchestrator.rest;
 import com.github.gluhov.orchestrator.service.UserService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -19,8 +21,8 @@ public class UserRestControllerV1 {
     private final UserService userService;
 
     @GetMapping
-    public Mono<?> getInfo(@RequestHeader("Authorization") String authorizationHeader) {
-        return userService.getInfo(authorizationHeader)
+    public Mono<?> getInfo(@AuthenticationPrincipal Jwt jwt, @RequestHeader("Authorization") String authorizationHeader) {
+        return userService.getInfo(jwt, authorizationHeader)
                 .map(userInfoDto -> ResponseEntity.ok().body(userInfoDto));
     }
 }
\ No newline at end of file
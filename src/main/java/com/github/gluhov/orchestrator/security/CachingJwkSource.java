@@ -0,0 +1,176 @@
+package com.github.gluhov.orchestrator.security;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jwt.SignedJWT;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * JWK source for {@link org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder} that keeps the key set in
+ * memory. Keys are fetched when the application starts and refreshed on a schedule; a token with an unknown
+ * {@code kid} triggers at most one refetch per {@code kidMissMinInterval}, also while no key set was fetched yet.
+ * When Keycloak cannot be reached the last successfully fetched key set keeps being served.
+ */
+@Slf4j
+public class CachingJwkSource implements Function<SignedJWT, Flux<JWK>>, SmartLifecycle {
+    private final WebClient webClient;
+    private final String jwkSetUri;
+    private final Duration refreshInterval;
+    private final Duration kidMissMinInterval;
+    private final Duration prewarmTimeout;
+
+    private final AtomicReference<JWKSet> keys = new AtomicReference<>();
+    private final AtomicReference<Mono<JWKSet>> inFlightRefresh = new AtomicReference<>();
+    private final AtomicLong lastKidMissRefresh = new AtomicLong(System.nanoTime() - Long.MAX_VALUE / 2);
+    private final AtomicLong lastSuccessfulRefresh = new AtomicLong();
+    private volatile Disposable scheduledRefresh;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter refreshSuccesses;
+    private final Counter refreshFailures;
+
+    public CachingJwkSource(WebClient webClient, String realm, String jwkSetUri, Duration refreshInterval,
+                            Duration kidMissMinInterval, Duration prewarmTimeout, MeterRegistry meterRegistry) {
+        this.webClient = webClient;
+        this.jwkSetUri = jwkSetUri;
+        this.refreshInterval = refreshInterval;
+        this.kidMissMinInterval = kidMissMinInterval;
+        this.prewarmTimeout = prewarmTimeout;
+        this.hits = Counter.builder("orchestrator.jwks.lookups").tag("realm", realm).tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("orchestrator.jwks.lookups").tag("realm", realm).tag("result", "miss").register(meterRegistry);
+        this.refreshSuccesses = Counter.builder("orchestrator.jwks.refreshes").tag("realm", realm).tag("outcome", "success").register(meterRegistry);
+        this.refreshFailures = Counter.builder("orchestrator.jwks.refreshes").tag("realm", realm).tag("outcome", "failure").register(meterRegistry);
+        Gauge.builder("orchestrator.jwks.keys", keys, k -> k.get() == null ? 0 : k.get().size()).tag("realm", realm).register(meterRegistry);
+        Gauge.builder("orchestrator.jwks.age.seconds", lastSuccessfulRefresh,
+                        last -> last.get() == 0 ? Double.NaN : (System.nanoTime() - last.get()) / 1e9)
+                .tag("realm", realm)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Flux<JWK> apply(SignedJWT jwt) {
+        JWKSelector selector = new JWKSelector(JWKMatcher.forJWSHeader(jwt.getHeader()));
+        JWKSet current = keys.get();
+        if (current != null) {
+            List<JWK> matched = selector.select(current);
+            if (!matched.isEmpty()) {
+                hits.increment();
+                return Flux.fromIterable(matched);
+            }
+        }
+        misses.increment();
+        // rate limited also without cached keys, otherwise every forged kid forces a fetch until one succeeds
+        if (!tryAcquireKidMissRefresh()) {
+            Mono<JWKSet> inFlight = inFlightRefresh.get();
+            return inFlight == null ? Flux.empty() : inFlight.flatMapIterable(selector::select);
+        }
+        return refresh().flatMapIterable(selector::select);
+    }
+
+    /**
+     * Fetches the key set, sharing the call between concurrent callers. Fails only if no key set was fetched before.
+     */
+    public Mono<JWKSet> refresh() {
+        return Mono.defer(() -> {
+            Mono<JWKSet> existing = inFlightRefresh.get();
+            if (existing != null) {
+                return existing;
+            }
+            AtomicReference<Mono<JWKSet>> self = new AtomicReference<>();
+            self.set(fetch()
+                    .doOnNext(jwkSet -> {
+                        keys.set(jwkSet);
+                        lastSuccessfulRefresh.set(System.nanoTime());
+                        refreshSuccesses.increment();
+                    })
+                    .onErrorResume(e -> {
+                        refreshFailures.increment();
+                        JWKSet lastKnownGood = keys.get();
+                        if (lastKnownGood == null) {
+                            return Mono.error(e);
+                        }
+                        log.warn("Failed to refresh JWKS from {}, serving last known key set: {}", jwkSetUri, e.getMessage());
+                        return Mono.just(lastKnownGood);
+                    })
+                    .doOnTerminate(() -> inFlightRefresh.compareAndSet(self.get(), null))
+                    .doOnCancel(() -> inFlightRefresh.compareAndSet(self.get(), null))
+                    .share());
+            return inFlightRefresh.compareAndSet(null, self.get()) ? self.get() : refresh();
+        });
+    }
+
+    @Override
+    public void start() {
+        try {
+            refresh().timeout(prewarmTimeout).block();
+        } catch (RuntimeException e) {
+            log.warn("JWKS pre-warm from {} failed, keys will be fetched on demand: {}", jwkSetUri, e.getMessage());
+        }
+        startRefreshing();
+    }
+
+    /**
+     * Starts the scheduled refresh without the blocking pre-warm of {@link #start()}, the keys are fetched by the
+     * first token. Does nothing when the refresh is already running.
+     */
+    public synchronized void startRefreshing() {
+        if (scheduledRefresh != null) {
+            return;
+        }
+        scheduledRefresh = Flux.interval(refreshInterval, refreshInterval)
+                .concatMap(tick -> refresh().onErrorResume(e -> Mono.empty()))
+                .subscribe();
+    }
+
+    @Override
+    public synchronized void stop() {
+        Disposable refresh = scheduledRefresh;
+        if (refresh != null) {
+            refresh.dispose();
+        }
+        scheduledRefresh = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return scheduledRefresh != null;
+    }
+
+    private boolean tryAcquireKidMissRefresh() {
+        long last = lastKidMissRefresh.get();
+        long now = System.nanoTime();
+        return now - last >= kidMissMinInterval.toNanos() && lastKidMissRefresh.compareAndSet(last, now);
+    }
+
+    private Mono<JWKSet> fetch() {
+        return webClient.get()
+                .uri(jwkSetUri)
+                .retrieve()
+                .bodyToMono(String.class)
+                .handle((body, sink) -> {
+                    try {
+                        sink.next(JWKSet.parse(body));
+                    } catch (ParseException e) {
+                        sink.error(new IllegalStateException("Invalid JWKS received from " + jwkSetUri, e));
+                    }
+                });
+    }
+}
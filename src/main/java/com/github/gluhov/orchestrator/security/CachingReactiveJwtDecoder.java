@@ -0,0 +1,90 @@
+package com.github.gluhov.orchestrator.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.gluhov.orchestrator.util.Hashing;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Remembers tokens the delegate has already verified, keyed by the SHA-256 of the raw token, so a token presented
+ * again skips parsing and signature verification. Entries expire with the token or after {@code maxTtl},
+ * whichever comes first; tokens without {@code exp} are never cached.
+ */
+public class CachingReactiveJwtDecoder implements ReactiveJwtDecoder {
+    private final ReactiveJwtDecoder delegate;
+    private final Cache<String, Jwt> cache;
+    private final Duration maxTtl;
+    private final Clock clock;
+    private final Counter hits;
+    private final Counter misses;
+
+    public CachingReactiveJwtDecoder(ReactiveJwtDecoder delegate, long maxSize, Duration maxTtl, MeterRegistry meterRegistry) {
+        this(delegate, maxSize, maxTtl, meterRegistry, Clock.systemUTC());
+    }
+
+    CachingReactiveJwtDecoder(ReactiveJwtDecoder delegate, long maxSize, Duration maxTtl, MeterRegistry meterRegistry, Clock clock) {
+        this.delegate = delegate;
+        this.maxTtl = maxTtl;
+        this.clock = clock;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new TokenExpiry())
+                .build();
+        this.hits = Counter.builder("orchestrator.jwt.cache").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("orchestrator.jwt.cache").tag("result", "miss").register(meterRegistry);
+    }
+
+    @Override
+    public Mono<Jwt> decode(String token) throws JwtException {
+        return Mono.defer(() -> {
+            String key = Hashing.sha256(token);
+            Jwt cached = cache.getIfPresent(key);
+            if (cached != null && cached.getExpiresAt().isAfter(clock.instant())) {
+                hits.increment();
+                return Mono.just(cached);
+            }
+            misses.increment();
+            return delegate.decode(token)
+                    .doOnNext(jwt -> {
+                        if (jwt.getExpiresAt() != null && !timeToLive(jwt).isZero()) {
+                            cache.put(key, jwt);
+                        }
+                    });
+        });
+    }
+
+    private Duration timeToLive(Jwt jwt) {
+        Duration untilExpiry = Duration.between(clock.instant(), jwt.getExpiresAt());
+        if (untilExpiry.isNegative()) {
+            return Duration.ZERO;
+        }
+        return untilExpiry.compareTo(maxTtl) < 0 ? untilExpiry : maxTtl;
+    }
+
+    private class TokenExpiry implements Expiry<String, Jwt> {
+        @Override
+        public long expireAfterCreate(String key, Jwt jwt, long currentTime) {
+            return timeToLive(jwt).toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Jwt jwt, long currentTime, long currentDuration) {
+            return timeToLive(jwt).toNanos();
+        }
+
+        @Override
+        public long expireAfterRead(String key, Jwt jwt, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
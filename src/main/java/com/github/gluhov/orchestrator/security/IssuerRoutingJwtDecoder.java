@@ -0,0 +1,42 @@
+package com.github.gluhov.orchestrator.security;
+
+import com.github.gluhov.orchestrator.keycloak.KeycloakRealm;
+import com.github.gluhov.orchestrator.keycloak.KeycloakRealms;
+import com.nimbusds.jwt.JWTParser;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import reactor.core.publisher.Mono;
+
+import java.text.ParseException;
+
+/**
+ * Verifies a token with the decoder of the realm named by its, not yet verified, {@code iss} claim. The realm's
+ * decoder checks the signature against that realm's keys and the issuer again, so a token cannot borrow another
+ * realm's trust by naming it.
+ */
+public class IssuerRoutingJwtDecoder implements ReactiveJwtDecoder {
+    private final KeycloakRealms keycloakRealms;
+
+    public IssuerRoutingJwtDecoder(KeycloakRealms keycloakRealms) {
+        this.keycloakRealms = keycloakRealms;
+    }
+
+    @Override
+    public Mono<Jwt> decode(String token) throws JwtException {
+        return Mono.defer(() -> {
+            String issuer;
+            try {
+                issuer = JWTParser.parse(token).getJWTClaimsSet().getIssuer();
+            } catch (ParseException e) {
+                return Mono.error(new BadJwtException("Malformed token", e));
+            }
+            KeycloakRealm realm = keycloakRealms.findByIssuer(issuer);
+            if (realm == null) {
+                return Mono.error(new BadJwtException("Untrusted issuer " + issuer));
+            }
+            return realm.getJwtDecoder().decode(token);
+        });
+    }
+}
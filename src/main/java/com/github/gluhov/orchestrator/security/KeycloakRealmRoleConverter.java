@@ -0,0 +1,36 @@
+package com.github.gluhov.orchestrator.security;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Adds the Keycloak realm roles from the {@code realm_access.roles} claim as {@code ROLE_} authorities next to
+ * the {@code SCOPE_} authorities Spring Security derives by default.
+ */
+public class KeycloakRealmRoleConverter implements Converter<Jwt, Collection<GrantedAuthority>> {
+    private static final String REALM_ACCESS_CLAIM = "realm_access";
+    private static final String ROLES = "roles";
+    private static final String ROLE_PREFIX = "ROLE_";
+
+    private final JwtGrantedAuthoritiesConverter scopeConverter = new JwtGrantedAuthoritiesConverter();
+
+    @Override
+    public Collection<GrantedAuthority> convert(Jwt jwt) {
+        List<GrantedAuthority> authorities = new ArrayList<>(scopeConverter.convert(jwt));
+        Map<String, Object> realmAccess = jwt.getClaimAsMap(REALM_ACCESS_CLAIM);
+        if (realmAccess != null && realmAccess.get(ROLES) instanceof Collection<?> roles) {
+            for (Object role : roles) {
+                authorities.add(new SimpleGrantedAuthority(ROLE_PREFIX + role));
+            }
+        }
+        return authorities;
+    }
+}
@@ -0,0 +1,98 @@
+package com.github.gluhov.orchestrator.security;
+
+import com.github.gluhov.orchestrator.config.LoginThrottleProperties;
+import com.github.gluhov.orchestrator.exception.AuthException;
+import com.github.gluhov.orchestrator.exception.TooManyRequestsException;
+import com.github.gluhov.orchestrator.util.DeliberateDelay;
+import com.github.gluhov.orchestrator.util.SlidingWindowCounter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Slows down and then rejects password guessing per username and per client address, before the attempt costs
+ * Keycloak a password hash. An attempt is counted when it starts, so a burst of concurrent guesses is throttled too,
+ * and taken back when it succeeds or fails for a reason other than the credentials. Counts live in fixed-size
+ * {@link SlidingWindowCounter}s, so memory does not grow with the number of distinct usernames or addresses.
+ * Delayed and rejected attempts are marked as {@link DeliberateDelay}, they say nothing about how loaded we are.
+ */
+@Component
+@EnableConfigurationProperties(LoginThrottleProperties.class)
+public class LoginThrottle {
+    private final LoginThrottleProperties properties;
+    private final SlidingWindowCounter byUsername;
+    private final SlidingWindowCounter byClientAddress;
+    private final Counter allowed;
+    private final Counter delayed;
+    private final Counter rejected;
+
+    public LoginThrottle(LoginThrottleProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.byUsername = new SlidingWindowCounter(properties.getWindow(), properties.getSketchWidth());
+        this.byClientAddress = new SlidingWindowCounter(properties.getWindow(), properties.getSketchWidth());
+        this.allowed = Counter.builder("orchestrator.login.throttle").tag("outcome", "allowed").register(meterRegistry);
+        this.delayed = Counter.builder("orchestrator.login.throttle").tag("outcome", "delayed").register(meterRegistry);
+        this.rejected = Counter.builder("orchestrator.login.throttle").tag("outcome", "rejected").register(meterRegistry);
+    }
+
+    /**
+     * Subscribes to the attempt right away, after a delay, or not at all when the username or the client address
+     * is over its limit.
+     */
+    public <T> Mono<T> throttle(String username, String clientAddress, Supplier<Mono<T>> attempt) {
+        if (!properties.isEnabled()) {
+            return Mono.defer(attempt);
+        }
+        return Mono.defer(() -> {
+            String usernameKey = username == null ? null : username.trim().toLowerCase(Locale.ROOT);
+            double usernameAttempts = usernameKey == null ? 0 : byUsername.increment(usernameKey);
+            double clientAttempts = clientAddress == null ? 0 : byClientAddress.increment(clientAddress);
+            LoginThrottleProperties.Limits usernameLimits = properties.getUsername();
+            LoginThrottleProperties.Limits clientLimits = properties.getClientAddress();
+            Runnable refund = () -> {
+                if (usernameKey != null) {
+                    byUsername.decrement(usernameKey);
+                }
+                if (clientAddress != null) {
+                    byClientAddress.decrement(clientAddress);
+                }
+            };
+            if (usernameAttempts > usernameLimits.getMaxAttempts() || clientAttempts > clientLimits.getMaxAttempts()) {
+                // rejected attempts never reach Keycloak, so they do not extend the lockout
+                refund.run();
+                rejected.increment();
+                return DeliberateDelay.mark(Mono.error(
+                        new TooManyRequestsException("Too many login attempts, try again later", "O_TOO_MANY_LOGIN_ATTEMPTS")));
+            }
+            double excess = Math.max(usernameAttempts - usernameLimits.getFreeAttempts(), clientAttempts - clientLimits.getFreeAttempts());
+            Mono<T> counted = Mono.defer(attempt)
+                    .doOnSuccess(result -> refund.run())
+                    .doOnError(e -> {
+                        if (!(e instanceof AuthException)) {
+                            refund.run();
+                        }
+                    });
+            if (excess <= 0) {
+                allowed.increment();
+                return counted;
+            }
+            delayed.increment();
+            return DeliberateDelay.mark(Mono.delay(delay((int) Math.ceil(excess))).then(counted));
+        });
+    }
+
+    private Duration delay(int excess) {
+        Duration maxDelay = properties.getMaxDelay();
+        if (excess > 30) {
+            return maxDelay;
+        }
+        Duration delay = properties.getBaseDelay().multipliedBy(1L << (excess - 1));
+        return delay.compareTo(maxDelay) > 0 ? maxDelay : delay;
+    }
+}
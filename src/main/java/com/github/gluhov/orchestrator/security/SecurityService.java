@@ -1,17 +1,20 @@
 package com.github.gluhov.orchestrator.security;
 
+import com.github.gluhov.orchestrator.config.WebClientConfig;
 import com.github.gluhov.orchestrator.dto.AuthRequestDto;
 import com.github.gluhov.orchestrator.dto.AuthResponseDto;
 import com.github.gluhov.orchestrator.dto.RefreshTokenRequestDto;
 import com.github.gluhov.orchestrator.exception.AuthException;
+import com.github.gluhov.orchestrator.keycloak.KeycloakErrors;
+import com.github.gluhov.orchestrator.keycloak.KeycloakRealm;
+import com.github.gluhov.orchestrator.keycloak.KeycloakResilience;
+import com.github.gluhov.orchestrator.util.RequestCoalescer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.keycloak.OAuth2Constants;
-import org.keycloak.representations.AccessTokenResponse;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
@@ -19,62 +22,53 @@ import reactor.core.publisher.Mono;
 @RequiredArgsConstructor
 @Slf4j
 public class SecurityService {
+    @Qualifier(WebClientConfig.TOKEN_WEB_CLIENT)
     private final WebClient webClient;
-    @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri}")
-    private String keycloakIssuerUri;
-    @Value("${spring.security.oauth2.client.registration.keycloak.client-id}")
-    private String clientId;
-    @Value("${spring.security.oauth2.client.registration.keycloak.client-secret}")
-    private String clientSecret;
+    private final RequestCoalescer requestCoalescer;
+    private final KeycloakResilience keycloakResilience;
+    private final LoginThrottle loginThrottle;
 
-    public Mono<AuthResponseDto> authenticate(AuthRequestDto authRequestDto) {
-        log.debug("try to login {}", authRequestDto);
-        return webClient.post()
-                .uri(keycloakIssuerUri + "/protocol/openid-connect/token")
+    public Mono<AuthResponseDto> authenticate(KeycloakRealm realm, AuthRequestDto authRequestDto) {
+        return authenticate(realm, authRequestDto, null);
+    }
+
+    /**
+     * Exchanges the credentials for tokens, unless {@link LoginThrottle} holds back the username or the client address.
+     * Usernames are throttled per realm, the same name in another realm is another user.
+     */
+    public Mono<AuthResponseDto> authenticate(KeycloakRealm realm, AuthRequestDto authRequestDto, String clientAddress) {
+        log.debug("try to login {} to realm {}", authRequestDto, realm.getName());
+        String username = authRequestDto.getUsername() == null ? null : realm.getName() + "/" + authRequestDto.getUsername();
+        return loginThrottle.throttle(username, clientAddress, () -> doAuthenticate(realm, authRequestDto));
+    }
+
+    private Mono<AuthResponseDto> doAuthenticate(KeycloakRealm realm, AuthRequestDto authRequestDto) {
+        return keycloakResilience.execute(KeycloakResilience.AUTHENTICATE, () -> webClient.post()
+                .uri(realm.getTokenUrl())
                 .contentType(MediaType.APPLICATION_FORM_URLENCODED)
-                .body(BodyInserters.fromFormData("client_id", clientId)
-                        .with("client_secret", clientSecret)
-                        .with("grant_type", OAuth2Constants.PASSWORD)
-                        .with("scope", "openid profile")
-                        .with("username", authRequestDto.getUsername())
-                        .with("password", authRequestDto.getPassword()))
+                .bodyValue(realm.getPasswordGrant().with("username", authRequestDto.getUsername(),
+                        "password", authRequestDto.getPassword()))
                 .retrieve()
                 .onStatus(status -> status.is4xxClientError() || status.is5xxServerError(),
-                        clientResponse -> clientResponse.bodyToMono(String.class)
-                                .flatMap(errorBody -> {
-                                    log.error("Error from Keycloak: {}", errorBody);
-                                    return Mono.error(new AuthException("Error from Keycloak: " + errorBody, "O_AUTHENTICATE_ERROR"));
-                                }))
-                .bodyToMono(AccessTokenResponse.class)
-                .map(accessTokenResponse -> AuthResponseDto.builder()
-                        .accessToken(accessTokenResponse.getToken())
-                        .expiresIn(accessTokenResponse.getExpiresIn())
-                        .refreshToken(accessTokenResponse.getRefreshToken())
-                        .tokenType(accessTokenResponse.getTokenType())
-                        .build());
+                        KeycloakErrors.toException(AuthException::new, "O_AUTHENTICATE_ERROR"))
+                .bodyToFlux(DataBuffer.class)
+                .as(TokenResponseParser::parse));
+    }
+
+    public Mono<AuthResponseDto> refreshToken(KeycloakRealm realm, RefreshTokenRequestDto refreshTokenRequestDto) {
+        return requestCoalescer.coalesce("token.refresh", refreshTokenRequestDto.getRefreshToken(),
+                () -> keycloakResilience.execute(KeycloakResilience.REFRESH_TOKEN, () -> doRefreshToken(realm, refreshTokenRequestDto)));
     }
 
-    public Mono<AuthResponseDto> refreshToken(RefreshTokenRequestDto refreshTokenRequestDto) {
+    private Mono<AuthResponseDto> doRefreshToken(KeycloakRealm realm, RefreshTokenRequestDto refreshTokenRequestDto) {
         return webClient.post()
-                .uri(keycloakIssuerUri + "/protocol/openid-connect/token")
+                .uri(realm.getTokenUrl())
                 .contentType(MediaType.APPLICATION_FORM_URLENCODED)
-                .body(BodyInserters.fromFormData("client_id", clientId)
-                        .with("client_secret", clientSecret)
-                        .with("grant_type", OAuth2Constants.REFRESH_TOKEN)
-                        .with("refresh_token", refreshTokenRequestDto.getRefreshToken()))
+                .bodyValue(realm.getRefreshTokenGrant().with("refresh_token", refreshTokenRequestDto.getRefreshToken()))
                 .retrieve()
                 .onStatus(status -> status.is4xxClientError() || status.is5xxServerError(),
-                        clientResponse -> clientResponse.bodyToMono(String.class)
-                                .flatMap(errorBody -> {
-                                    log.error("Error from Keycloak: {}", errorBody);
-                                    return Mono.error(new AuthException("Error from Keycloak: " + errorBody, "O_REFRESH_TOKEN_ERROR"));
-                                }))
-                .bodyToMono(AccessTokenResponse.class)
-                .map(accessTokenResponse -> AuthResponseDto.builder()
-                        .accessToken(accessTokenResponse.getToken())
-                        .expiresIn(accessTokenResponse.getExpiresIn())
-                        .refreshToken(accessTokenResponse.getRefreshToken())
-                        .tokenType(accessTokenResponse.getTokenType())
-                        .build());
+                        KeycloakErrors.toException(AuthException::new, "O_REFRESH_TOKEN_ERROR"))
+                .bodyToFlux(DataBuffer.class)
+                .as(TokenResponseParser::parse);
     }
 }
\ No newline at end of file
@@ -0,0 +1,54 @@
+package com.github.gluhov.orchestrator.security;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@code application/x-www-form-urlencoded} body of a token endpoint call. The client credentials, grant type and
+ * scope are the same on every call of a realm, so they are encoded once and a call only encodes its own parameters
+ * behind them.
+ */
+public class TokenRequestForm {
+    private final byte[] constant;
+
+    /**
+     * @param constantParameters names and values, a parameter with a null value is left out, as in every call
+     */
+    public TokenRequestForm(String... constantParameters) {
+        this.constant = encode(constantParameters).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * The constant parameters followed by these names and values, null values are left out.
+     */
+    public byte[] with(String... parameters) {
+        byte[] variable = encode(parameters).getBytes(StandardCharsets.US_ASCII);
+        int separator = constant.length > 0 && variable.length > 0 ? 1 : 0;
+        byte[] body = new byte[constant.length + separator + variable.length];
+        System.arraycopy(constant, 0, body, 0, constant.length);
+        if (separator > 0) {
+            body[constant.length] = '&';
+        }
+        System.arraycopy(variable, 0, body, constant.length + separator, variable.length);
+        return body;
+    }
+
+    private static String encode(String... parameters) {
+        if (parameters.length % 2 != 0) {
+            throw new IllegalArgumentException("Form parameters are expected as name, value pairs");
+        }
+        StringBuilder form = new StringBuilder();
+        for (int i = 0; i < parameters.length; i += 2) {
+            if (parameters[i + 1] == null) {
+                continue;
+            }
+            if (!form.isEmpty()) {
+                form.append('&');
+            }
+            form.append(URLEncoder.encode(parameters[i], StandardCharsets.UTF_8))
+                    .append('=')
+                    .append(URLEncoder.encode(parameters[i + 1], StandardCharsets.UTF_8));
+        }
+        return form.toString();
+    }
+}
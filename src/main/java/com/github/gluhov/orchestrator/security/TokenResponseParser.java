@@ -0,0 +1,119 @@
+package com.github.gluhov.orchestrator.security;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
+import com.github.gluhov.orchestrator.dto.AuthResponseDto;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+
+/**
+ * Reads the four fields returned to the client from a token endpoint response as its buffers arrive, with Jackson's
+ * non-blocking parser. The id token, session state, scope and any other member are skipped without being
+ * materialised, and the body is never aggregated into one buffer or bound to {@code AccessTokenResponse}.
+ */
+public final class TokenResponseParser {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final JsonParser parser;
+    private final ByteBufferFeeder feeder;
+    private final AuthResponseDto.AuthResponseDtoBuilder response = AuthResponseDto.builder();
+    private int depth;
+    private String field;
+    private boolean started;
+    private boolean complete;
+
+    private TokenResponseParser() {
+        try {
+            this.parser = JSON_FACTORY.createNonBlockingByteBufferParser();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot create a non-blocking JSON parser", e);
+        }
+        this.feeder = (ByteBufferFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    /**
+     * The token response of the body, empty for an empty body. Every buffer is released once parsed.
+     */
+    public static Mono<AuthResponseDto> parse(Flux<DataBuffer> body) {
+        // reduce hands every buffer to feed, which releases it; ignoring elements instead would discard them and
+        // the web client's discard hook would release them a second time
+        return body.reduceWith(TokenResponseParser::new, TokenResponseParser::feed)
+                .mapNotNull(TokenResponseParser::finish);
+    }
+
+    private TokenResponseParser feed(DataBuffer buffer) {
+        try (DataBuffer.ByteBufferIterator byteBuffers = buffer.readableByteBuffers()) {
+            while (byteBuffers.hasNext()) {
+                feeder.feedInput(byteBuffers.next());
+                // parsed up to NOT_AVAILABLE the parser holds no reference to the buffer any more
+                advance();
+            }
+        } catch (IOException e) {
+            throw new DecodingException("Malformed token response: " + e.getMessage(), e);
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+        return this;
+    }
+
+    private AuthResponseDto finish() {
+        try {
+            feeder.endOfInput();
+            advance();
+        } catch (IOException e) {
+            throw new DecodingException("Malformed token response: " + e.getMessage(), e);
+        }
+        if (started && !complete) {
+            throw new DecodingException("Incomplete token response");
+        }
+        return started ? response.build() : null;
+    }
+
+    private void advance() throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            switch (token) {
+                case START_OBJECT, START_ARRAY -> {
+                    started = true;
+                    depth++;
+                }
+                case END_OBJECT, END_ARRAY -> {
+                    if (--depth == 0) {
+                        complete = true;
+                    }
+                }
+                case FIELD_NAME -> {
+                    if (depth == 1) {
+                        field = parser.currentName();
+                    }
+                }
+                case VALUE_NULL -> {
+                }
+                default -> {
+                    // members of nested objects and arrays are skipped as they stream by
+                    if (depth == 1 && field != null) {
+                        value();
+                    }
+                }
+            }
+        }
+    }
+
+    private void value() throws IOException {
+        switch (field) {
+            case "access_token" -> response.accessToken(parser.getText());
+            case "expires_in" -> response.expiresIn(parser.getValueAsLong());
+            case "refresh_token" -> response.refreshToken(parser.getText());
+            case "token_type" -> response.tokenType(parser.getText());
+            default -> {
+            }
+        }
+    }
+}
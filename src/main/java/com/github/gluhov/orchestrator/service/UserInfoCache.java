@@ -0,0 +1,81 @@
+package com.github.gluhov.orchestrator.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.gluhov.orchestrator.dto.UserInfoDto;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.Supplier;
+
+/**
+ * Bounded per-subject cache of profiles loaded from Keycloak. An entry never lives longer than the access token
+ * it was loaded with.
+ */
+@Component
+public class UserInfoCache {
+    private final Cache<String, Entry> cache;
+    private final Duration ttl;
+    private final Clock clock;
+
+    @Autowired
+    public UserInfoCache(@Value("${kc.profile.cache.max-size:10000}") long maxSize,
+                         @Value("${kc.profile.cache.ttl:5m}") Duration ttl) {
+        this(maxSize, ttl, Clock.systemUTC());
+    }
+
+    UserInfoCache(long maxSize, Duration ttl, Clock clock) {
+        this.ttl = ttl;
+        this.clock = clock;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new EntryExpiry())
+                .build();
+    }
+
+    public Mono<UserInfoDto> get(String subject, Instant tokenExpiresAt, Supplier<Mono<UserInfoDto>> loader) {
+        return Mono.defer(() -> {
+            Entry cached = cache.getIfPresent(subject);
+            if (cached != null) {
+                return Mono.just(cached.userInfo());
+            }
+            return loader.get().doOnNext(userInfo -> put(subject, tokenExpiresAt, userInfo));
+        });
+    }
+
+    private void put(String subject, Instant tokenExpiresAt, UserInfoDto userInfo) {
+        Instant expiresAt = clock.instant().plus(ttl);
+        if (tokenExpiresAt != null && tokenExpiresAt.isBefore(expiresAt)) {
+            expiresAt = tokenExpiresAt;
+        }
+        if (expiresAt.isAfter(clock.instant())) {
+            cache.put(subject, new Entry(userInfo, expiresAt));
+        }
+    }
+
+    private record Entry(UserInfoDto userInfo, Instant expiresAt) {
+    }
+
+    private class EntryExpiry implements Expiry<String, Entry> {
+        @Override
+        public long expireAfterCreate(String key, Entry entry, long currentTime) {
+            return Math.max(0, Duration.between(clock.instant(), entry.expiresAt()).toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Entry entry, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, entry, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Entry entry, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.github.gluhov.orchestrator.service;
+
+import com.github.gluhov.orchestrator.entity.UserEntity;
+import com.github.gluhov.orchestrator.keycloak.KeycloakAdminClient;
+import com.github.gluhov.orchestrator.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.keycloak.representations.idm.AdminEventRepresentation;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Postgres copy of the realm's users that profile and admin lookups are served from instead of Keycloak.
+ * <p>
+ * A full sync pages through all users and drops the rows it did not see; it runs on start and then every
+ * {@code kc.read-model.full-sync-interval}. In between, the Keycloak admin events on users are polled every
+ * {@code kc.read-model.poll-interval} and every user they mention is read again, a user that is gone is removed.
+ * Changes that leave no admin event, e.g. edits in the account console, are only picked up by the next full sync.
+ * <p>
+ * Lookups complete empty, so callers fall back to Keycloak, while the model is disabled, before the first sync,
+ * whenever the last successful sync is older than {@code kc.read-model.staleness}, and for a user last read from
+ * Keycloak longer ago than {@code kc.read-model.max-age}. The latter bounds how stale changes without an admin event
+ * can be served, it should exceed the full sync interval.
+ */
+@Component
+@Slf4j
+public class UserReadModel implements SmartLifecycle {
+    private static final int REFRESH_CONCURRENCY = 4;
+    private static final String USERS_PATH = "users/";
+
+    private final KeycloakAdminClient keycloakAdminClient;
+    private final UserRepository userRepository;
+    private final boolean enabled;
+    private final Duration staleness;
+    private final Duration maxAge;
+    private final Duration pollInterval;
+    private final Duration fullSyncInterval;
+    private final int pageSize;
+    private final Clock clock;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter staleReads;
+    private final Counter syncFailures;
+
+    private volatile Instant lastSync;
+    private volatile Instant lastFullSync;
+    private volatile long lastEventTime;
+    private volatile Disposable scheduledSync;
+
+    @Autowired
+    public UserReadModel(KeycloakAdminClient keycloakAdminClient, UserRepository userRepository, MeterRegistry meterRegistry,
+                         @Value("${kc.read-model.enabled:false}") boolean enabled,
+                         @Value("${kc.read-model.staleness:1m}") Duration staleness,
+                         @Value("${kc.read-model.max-age:15m}") Duration maxAge,
+                         @Value("${kc.read-model.poll-interval:10s}") Duration pollInterval,
+                         @Value("${kc.read-model.full-sync-interval:10m}") Duration fullSyncInterval,
+                         @Value("${kc.read-model.page-size:500}") int pageSize) {
+        this(keycloakAdminClient, userRepository, meterRegistry, enabled, staleness, maxAge, pollInterval, fullSyncInterval,
+                pageSize, Clock.systemUTC());
+    }
+
+    UserReadModel(KeycloakAdminClient keycloakAdminClient, UserRepository userRepository, MeterRegistry meterRegistry,
+                  boolean enabled, Duration staleness, Duration maxAge, Duration pollInterval, Duration fullSyncInterval,
+                  int pageSize, Clock clock) {
+        this.keycloakAdminClient = keycloakAdminClient;
+        this.userRepository = userRepository;
+        this.enabled = enabled;
+        this.staleness = staleness;
+        this.maxAge = maxAge;
+        this.pollInterval = pollInterval;
+        this.fullSyncInterval = fullSyncInterval;
+        this.pageSize = pageSize;
+        this.clock = clock;
+        this.hits = Counter.builder("orchestrator.read_model.lookups").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("orchestrator.read_model.lookups").tag("result", "miss").register(meterRegistry);
+        this.staleReads = Counter.builder("orchestrator.read_model.lookups").tag("result", "stale").register(meterRegistry);
+        this.syncFailures = Counter.builder("orchestrator.read_model.sync.failures").register(meterRegistry);
+        Gauge.builder("orchestrator.read_model.lag.seconds", this,
+                        model -> model.lastSync == null ? Double.NaN : Duration.between(model.lastSync, clock.instant()).toMillis() / 1e3)
+                .register(meterRegistry);
+        if (enabled && maxAge.compareTo(fullSyncInterval) <= 0) {
+            log.warn("kc.read-model.max-age {} does not exceed full-sync-interval {}, users without admin events "
+                    + "will be read from Keycloak until the next full sync", maxAge, fullSyncInterval);
+        }
+    }
+
+    /**
+     * Completes with the stored user, or empty when the user is unknown or the model cannot be trusted to be fresh.
+     */
+    public Mono<UserEntity> findById(String id) {
+        if (!enabled || id == null) {
+            return Mono.empty();
+        }
+        if (!isFresh()) {
+            staleReads.increment();
+            return Mono.empty();
+        }
+        return userRepository.findById(id)
+                .switchIfEmpty(Mono.fromRunnable(misses::increment))
+                .<UserEntity>handle((user, sink) -> {
+                    if (isOutdated(user)) {
+                        staleReads.increment();
+                        return;
+                    }
+                    hits.increment();
+                    sink.next(user);
+                })
+                .onErrorResume(e -> {
+                    log.warn("Failed to read user {} from the read model: {}", id, e.getMessage());
+                    misses.increment();
+                    return Mono.empty();
+                });
+    }
+
+    private boolean isOutdated(UserEntity user) {
+        return user.getSyncedAt() == null || user.getSyncedAt().plus(maxAge).isBefore(clock.instant());
+    }
+
+    public boolean isFresh() {
+        Instant synced = lastSync;
+        return synced != null && !synced.plus(staleness).isBefore(clock.instant());
+    }
+
+    /**
+     * Runs a full sync when one is due, otherwise applies the admin events since the previous sync.
+     */
+    public Mono<Void> sync() {
+        return Mono.defer(() -> {
+            Instant lastFull = lastFullSync;
+            boolean fullSyncDue = lastFull == null || !lastFull.plus(fullSyncInterval).isAfter(clock.instant());
+            return fullSyncDue ? fullSync() : applyEvents();
+        });
+    }
+
+    Mono<Void> fullSync() {
+        return Mono.defer(() -> {
+            Instant syncStart = clock.instant();
+            // events newer than this one are applied by the next poll, even if the full sync already saw them
+            return latestEventTime()
+                    .flatMap(watermark -> fetchUserPage(0)
+                            .expand(page -> page.size() < pageSize ? Mono.empty() : fetchUserPage(page.first() + page.size()))
+                            .concatMap(page -> userRepository.upsertAll(toEntities(page.users(), syncStart)))
+                            .reduce(0L, Long::sum)
+                            .flatMap(synced -> userRepository.deleteSyncedBefore(syncStart)
+                                    .doOnNext(deleted -> log.info("Read model full sync stored {} users and removed {}", synced, deleted)))
+                            .doOnSuccess(deleted -> {
+                                lastEventTime = watermark;
+                                lastFullSync = syncStart;
+                                lastSync = syncStart;
+                            }))
+                    .then();
+        });
+    }
+
+    Mono<Void> applyEvents() {
+        return Mono.defer(() -> {
+            Instant pollStart = clock.instant();
+            long since = lastEventTime;
+            return fetchEventPage(0)
+                    .expand(page -> page.isLast(pageSize, since) ? Mono.empty() : fetchEventPage(page.first() + page.events().size()))
+                    .flatMapIterable(EventPage::events)
+                    .filter(event -> event.getTime() > since)
+                    .collectList()
+                    .flatMap(events -> {
+                        Set<String> userIds = new LinkedHashSet<>();
+                        for (AdminEventRepresentation event : events) {
+                            String userId = getUserId(event);
+                            if (userId != null) {
+                                userIds.add(userId);
+                            }
+                        }
+                        return refresh(userIds, pollStart)
+                                .doOnSuccess(ignored -> {
+                                    // events are listed newest first
+                                    if (!events.isEmpty()) {
+                                        lastEventTime = events.get(0).getTime();
+                                    }
+                                    lastSync = pollStart;
+                                });
+                    });
+        });
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        scheduledSync = Flux.interval(Duration.ZERO, pollInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> sync().onErrorResume(e -> {
+                    syncFailures.increment();
+                    log.warn("Read model sync failed, lookups fall back to Keycloak once it is {} behind: {}", staleness, e.getMessage());
+                    return Mono.empty();
+                }))
+                .subscribe();
+    }
+
+    @Override
+    public void stop() {
+        Disposable sync = scheduledSync;
+        if (sync != null) {
+            sync.dispose();
+        }
+        scheduledSync = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return scheduledSync != null;
+    }
+
+    /**
+     * Reads the users again rather than trusting the event operation, a user that is gone is removed.
+     */
+    private Mono<Void> refresh(Set<String> userIds, Instant syncedAt) {
+        List<String> deleted = new ArrayList<>();
+        return Flux.fromIterable(userIds)
+                .flatMap(userId -> keycloakAdminClient.getUser(userId)
+                        .map(user -> toEntity(user, syncedAt))
+                        .switchIfEmpty(Mono.fromRunnable(() -> {
+                            synchronized (deleted) {
+                                deleted.add(userId);
+                            }
+                        })), REFRESH_CONCURRENCY)
+                .collectList()
+                .flatMap(userRepository::upsertAll)
+                .then(Mono.defer(() -> userRepository.deleteAllById(deleted)))
+                .then();
+    }
+
+    private Mono<Long> latestEventTime() {
+        return keycloakAdminClient.listUserEvents(0, 1)
+                .map(events -> events.isEmpty() ? 0L : events.get(0).getTime());
+    }
+
+    private record UserPage(long first, List<UserRepresentation> users) {
+        int size() {
+            return users.size();
+        }
+    }
+
+    private Mono<UserPage> fetchUserPage(long first) {
+        return keycloakAdminClient.listUsers(first, pageSize)
+                .map(users -> new UserPage(first, users));
+    }
+
+    private record EventPage(int first, List<AdminEventRepresentation> events) {
+        boolean isLast(int pageSize, long since) {
+            return events.size() < pageSize || events.get(events.size() - 1).getTime() <= since;
+        }
+    }
+
+    private Mono<EventPage> fetchEventPage(int first) {
+        return keycloakAdminClient.listUserEvents(first, pageSize)
+                .map(events -> new EventPage(first, events));
+    }
+
+    private static String getUserId(AdminEventRepresentation event) {
+        String path = event.getResourcePath();
+        if (path == null || !path.startsWith(USERS_PATH)) {
+            return null;
+        }
+        int end = path.indexOf('/', USERS_PATH.length());
+        String userId = end < 0 ? path.substring(USERS_PATH.length()) : path.substring(USERS_PATH.length(), end);
+        return userId.isEmpty() ? null : userId;
+    }
+
+    private static List<UserEntity> toEntities(List<UserRepresentation> users, Instant syncedAt) {
+        List<UserEntity> entities = new ArrayList<>(users.size());
+        for (UserRepresentation user : users) {
+            entities.add(toEntity(user, syncedAt));
+        }
+        return entities;
+    }
+
+    private static UserEntity toEntity(UserRepresentation user, Instant syncedAt) {
+        return UserEntity.builder()
+                .id(user.getId())
+                .username(user.getUsername())
+                .email(user.getEmail())
+                .firstName(user.getFirstName())
+                .lastName(user.getLastName())
+                .enabled(Boolean.TRUE.equals(user.isEnabled()))
+                .emailVerified(Boolean.TRUE.equals(user.isEmailVerified()))
+                .createdTimestamp(user.getCreatedTimestamp())
+                .syncedAt(syncedAt)
+                .build();
+    }
+}
@@ -1,73 +1,221 @@
 package com.github.gluhov.orchestrator.service;
 
+import com.github.gluhov.orchestrator.config.WebClientConfig;
 import com.github.gluhov.orchestrator.dto.AuthRequestDto;
+import com.github.gluhov.orchestrator.dto.BulkRegistrationResultDto;
+import com.github.gluhov.orchestrator.dto.UserDto;
+import com.github.gluhov.orchestrator.dto.UserExportDto;
+import com.github.gluhov.orchestrator.dto.UserImportResultDto;
 import com.github.gluhov.orchestrator.dto.UserInfoDto;
+import com.github.gluhov.orchestrator.entity.UserEntity;
 import com.github.gluhov.orchestrator.exception.ApiException;
 import com.github.gluhov.orchestrator.exception.AuthException;
-import jakarta.ws.rs.core.Response;
+import com.github.gluhov.orchestrator.exception.ServiceUnavailableException;
+import com.github.gluhov.orchestrator.keycloak.KeycloakErrors;
+import com.github.gluhov.orchestrator.keycloak.KeycloakRealm;
+import com.github.gluhov.orchestrator.keycloak.KeycloakRealms;
+import com.github.gluhov.orchestrator.keycloak.KeycloakResilience;
+import com.github.gluhov.orchestrator.keycloak.KeycloakUserImporter;
+import com.github.gluhov.orchestrator.util.RequestCoalescer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.keycloak.admin.client.resource.RealmResource;
 import org.keycloak.representations.UserInfo;
 import org.keycloak.representations.idm.CredentialRepresentation;
+import org.keycloak.representations.idm.PartialImportRepresentation;
 import org.keycloak.representations.idm.UserRepresentation;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.oauth2.core.oidc.StandardClaimNames;
+import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class UserService {
-    private final RealmResource realmResource;
+    private static final String PROFILE_SOURCE_CLAIMS = "claims";
+    private final KeycloakRealms keycloakRealms;
+    @Qualifier(WebClientConfig.USERINFO_WEB_CLIENT)
     private final WebClient webClient;
-    @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri}")
-    private String keycloakIssuerUri;
+    private final UserInfoCache userInfoCache;
+    private final RequestCoalescer requestCoalescer;
+    private final KeycloakResilience keycloakResilience;
+    private final KeycloakUserImporter keycloakUserImporter;
+    private final UserReadModel userReadModel;
+    @Value("${kc.profile.source:userinfo}")
+    private String profileSource;
+    @Value("${kc.bulk.parallelism:16}")
+    private int bulkParallelism;
+    @Value("${kc.import.chunk-size:500}")
+    private int importChunkSize;
+    @Value("${kc.import.parallelism:2}")
+    private int importParallelism;
+    @Value("${kc.export.page-size:500}")
+    private int exportPageSize;
 
-    public Mono<String> register(AuthRequestDto authRequestDto) {
-        log.debug("try to register {}", authRequestDto);
+    public Mono<String> register(KeycloakRealm realm, AuthRequestDto authRequestDto) {
+        log.debug("try to register {} in realm {}", authRequestDto, realm.getName());
         UserRepresentation userRepresentation = getUser(authRequestDto);
 
-        return Mono.fromCallable(() -> {
-                    String locationHeader;
-                    try {
-                        Response response = realmResource.users().create(userRepresentation);
-                        if (response.getStatus() != 201) {
-                            throw new AuthException("Failed to create user", "O_REGISTER_USER_ERROR");
-                        }
-                        locationHeader = response.getHeaderString("Location");
-                        if (locationHeader == null || locationHeader.isEmpty()) {
-                            throw new AuthException("Missing location header after user registration", "O_REGISTER_USER_ERROR");
-                        }
-
-                    } catch (Exception e) {
-                        log.error("Error while registering new user: {}", e.getMessage());
-                        throw new RuntimeException(e);
-                    }
-
-                    return locationHeader.substring(locationHeader.lastIndexOf('/') + 1);
-                })
+        return keycloakResilience.execute(KeycloakResilience.REGISTER, () -> realm.getAdminClient().createUser(userRepresentation))
                 .doOnSuccess(userId -> log.info("Registration success for user: {}", userId))
-                .onErrorResume(e -> {
+                .onErrorResume(e -> !(e instanceof ServiceUnavailableException), e -> {
                     log.error("Failed to register user {}", authRequestDto, e);
                     return Mono.error(new AuthException("Failed to register user", "O_REGISTER_USER_ERROR"));
                 });
     }
 
-    public Mono<UserInfoDto> getInfo(String authorizationHeader) {
+    /**
+     * Registers the users as they arrive with at most {@code kc.bulk.parallelism} registrations in flight, so only
+     * that many requests are read ahead of Keycloak. Results are emitted in completion order and a failed user is
+     * reported in its result instead of ending the stream.
+     */
+    public Flux<BulkRegistrationResultDto> registerAll(KeycloakRealm realm, Flux<AuthRequestDto> authRequestDtos) {
+        return authRequestDtos.index()
+                .flatMap(indexed -> register(realm, indexed.getT2())
+                        .map(userId -> BulkRegistrationResultDto.builder()
+                                .index(indexed.getT1())
+                                .email(indexed.getT2().getEmail())
+                                .userId(userId)
+                                .build())
+                        .onErrorResume(e -> Mono.just(BulkRegistrationResultDto.builder()
+                                .index(indexed.getT1())
+                                .email(indexed.getT2().getEmail())
+                                .errorCode(e instanceof ApiException apiException ? apiException.getErrorCode() : "INTERNAL_ERROR")
+                                .errorMessage(e.getMessage())
+                                .build())), bulkParallelism, 1);
+    }
+
+    /**
+     * Imports the users in chunks of {@code kc.import.chunk-size} through the realm partial import, with at most
+     * {@code kc.import.parallelism} chunks in flight. Emits one result per chunk in input order, a failed chunk is
+     * reported instead of ending the stream.
+     */
+    public Flux<UserImportResultDto> importAll(KeycloakRealm realm, Flux<AuthRequestDto> authRequestDtos,
+                                               PartialImportRepresentation.Policy policy) {
+        return authRequestDtos.map(UserService::getImportedUser)
+                .buffer(importChunkSize)
+                .index()
+                .flatMapSequential(chunk -> {
+                    UserImportResultDto.UserImportResultDtoBuilder result = UserImportResultDto.builder()
+                            .chunk(chunk.getT1())
+                            .firstIndex(chunk.getT1() * importChunkSize)
+                            .size(chunk.getT2().size());
+                    return keycloakUserImporter.importUsers(realm.getRealmResource(), chunk.getT2(), policy)
+                            .map(summary -> result
+                                    .added(summary.added())
+                                    .skipped(summary.skipped())
+                                    .overwritten(summary.overwritten())
+                                    .build())
+                            .onErrorResume(e -> {
+                                log.error("Failed to import chunk {}", chunk.getT1(), e);
+                                return Mono.just(result
+                                        .errorCode(e instanceof ApiException apiException ? apiException.getErrorCode() : "O_IMPORT_USERS_ERROR")
+                                        .errorMessage(e.getMessage())
+                                        .build());
+                            });
+                }, importParallelism, 1);
+    }
+
+    /**
+     * Streams the realm users starting at offset {@code cursor}, reading {@code kc.export.page-size} users per admin
+     * call. The next page is requested while the current one is written and no further, so at most two pages are
+     * held regardless of realm size. The cursor is an offset into Keycloak's listing order, users created or
+     * deleted during an interrupted export may shift it.
+     */
+    public Flux<UserExportDto> exportAll(KeycloakRealm realm, long cursor) {
+        return fetchExportPage(realm, cursor)
+                .expand(page -> page.users().size() < exportPageSize
+                        ? Mono.empty()
+                        : fetchExportPage(realm, page.first() + page.users().size()))
+                .flatMapIterable(page -> {
+                    List<UserExportDto> users = new ArrayList<>(page.users().size());
+                    for (int i = 0; i < page.users().size(); i++) {
+                        users.add(getExportedUser(page.first() + i + 1, page.users().get(i)));
+                    }
+                    return users;
+                }, 1);
+    }
+
+    private record ExportPage(long first, List<UserRepresentation> users) {
+    }
+
+    private Mono<ExportPage> fetchExportPage(KeycloakRealm realm, long first) {
+        return realm.getAdminClient().listUsers(first, exportPageSize)
+                .map(users -> new ExportPage(first, users));
+    }
+
+    private static UserExportDto getExportedUser(long cursor, UserRepresentation user) {
+        return UserExportDto.builder()
+                .cursor(cursor)
+                .id(user.getId())
+                .username(user.getUsername())
+                .email(user.getEmail())
+                .firstName(user.getFirstName())
+                .lastName(user.getLastName())
+                .enabled(user.isEnabled())
+                .emailVerified(user.isEmailVerified())
+                .createdTimestamp(user.getCreatedTimestamp())
+                .build();
+    }
+
+    /**
+     * Reads the user from the read model and falls back to Keycloak when the model has no fresh copy.
+     */
+    public Mono<UserDto> getUserById(KeycloakRealm realm, String id) {
+        return findStored(realm, id)
+                .map(UserService::getUserDto)
+                .switchIfEmpty(Mono.defer(() -> realm.getAdminClient().getUser(id)).map(UserService::getUserDto));
+    }
+
+    /**
+     * In {@code claims} mode the profile is built from the already verified access token. Otherwise, and when the
+     * token lacks some of the profile claims, it is read from the read model and only then asked from Keycloak,
+     * through {@link UserInfoCache} in {@code claims} mode. Keycloak is asked in the realm that issued the token. The
+     * username is the {@code name} claim from whichever source, as userinfo fills it in.
+     */
+    public Mono<UserInfoDto> getInfo(Jwt jwt, String authorizationHeader) {
+        KeycloakRealm realm = keycloakRealms.forToken(jwt);
+        if (jwt == null) {
+            return getInfo(realm, authorizationHeader);
+        }
+        if (!PROFILE_SOURCE_CLAIMS.equalsIgnoreCase(profileSource)) {
+            return getStoredInfo(realm, jwt).switchIfEmpty(Mono.defer(() -> getInfo(realm, authorizationHeader)));
+        }
+        UserInfoDto fromClaims = UserInfoDto.builder()
+                .email(jwt.getClaimAsString(StandardClaimNames.EMAIL))
+                .firstName(jwt.getClaimAsString(StandardClaimNames.GIVEN_NAME))
+                .lastName(jwt.getClaimAsString(StandardClaimNames.FAMILY_NAME))
+                .username(jwt.getClaimAsString(StandardClaimNames.NAME))
+                .build();
+        if (isComplete(fromClaims)) {
+            return Mono.just(fromClaims);
+        }
+        return getStoredInfo(realm, jwt).switchIfEmpty(Mono.defer(
+                () -> userInfoCache.get(jwt.getSubject(), jwt.getExpiresAt(), () -> getInfo(realm, authorizationHeader))));
+    }
+
+    public Mono<UserInfoDto> getInfo(KeycloakRealm realm, String authorizationHeader) {
+        return requestCoalescer.coalesce("userinfo", authorizationHeader,
+                () -> keycloakResilience.execute(KeycloakResilience.USERINFO, () -> doGetInfo(realm, authorizationHeader)));
+    }
+
+    private Mono<UserInfoDto> doGetInfo(KeycloakRealm realm, String authorizationHeader) {
         return webClient.get()
-                .uri(keycloakIssuerUri + "/protocol/openid-connect/userinfo")
+                .uri(realm.getUserinfoUrl())
                 .header("Authorization", authorizationHeader)
                 .retrieve()
                 .onStatus(status -> status.is4xxClientError() || status.is5xxServerError(),
-                        clientResponse -> clientResponse.bodyToMono(String.class)
-                                .flatMap(errorBody -> {
-                                    log.error("Error from Keycloak: {}", errorBody);
-                                    return Mono.error(new ApiException("Error from Keycloak: " + errorBody, "O_GET_INFO_ERROR"));
-                                }))
+                        KeycloakErrors.toException(ApiException::new, "O_GET_INFO_ERROR"))
                 .bodyToMono(UserInfo.class)
                 .map(userInfo -> UserInfoDto.builder()
                         .email(userInfo.getEmail())
@@ -77,7 +225,77 @@ public class UserService {
                         .build());
     }
 
-    private UserRepresentation getUser(AuthRequestDto registrationRequest) {
+    /**
+     * Maps the stored user the way Keycloak fills in userinfo, the profile username is the {@code name} claim.
+     */
+    private Mono<UserInfoDto> getStoredInfo(KeycloakRealm realm, Jwt jwt) {
+        return findStored(realm, jwt.getSubject())
+                .map(user -> UserInfoDto.builder()
+                        .email(user.getEmail())
+                        .firstName(user.getFirstName())
+                        .lastName(user.getLastName())
+                        .username(getFullName(user))
+                        .build());
+    }
+
+    /**
+     * The {@code name} claim of Keycloak's full name mapper: first and last name, whichever are set.
+     */
+    private static String getFullName(UserEntity user) {
+        String name = Stream.of(user.getFirstName(), user.getLastName())
+                .filter(part -> part != null && !part.isEmpty())
+                .collect(Collectors.joining(" "));
+        return name.isEmpty() ? null : name;
+    }
+
+    /**
+     * The read model only mirrors {@code kc.realm}.
+     */
+    private Mono<UserEntity> findStored(KeycloakRealm realm, String id) {
+        return realm.isDefaultRealm() ? userReadModel.findById(id) : Mono.empty();
+    }
+
+    private boolean isComplete(UserInfoDto userInfoDto) {
+        return userInfoDto.getEmail() != null
+                && userInfoDto.getFirstName() != null
+                && userInfoDto.getLastName() != null
+                && userInfoDto.getUsername() != null;
+    }
+
+    private static UserDto getUserDto(UserEntity user) {
+        return UserDto.builder()
+                .id(user.getId())
+                .username(user.getUsername())
+                .email(user.getEmail())
+                .firstName(user.getFirstName())
+                .lastName(user.getLastName())
+                .enabled(user.isEnabled())
+                .emailVerified(user.isEmailVerified())
+                .createdTimestamp(user.getCreatedTimestamp())
+                .build();
+    }
+
+    private static UserDto getUserDto(UserRepresentation user) {
+        return UserDto.builder()
+                .id(user.getId())
+                .username(user.getUsername())
+                .email(user.getEmail())
+                .firstName(user.getFirstName())
+                .lastName(user.getLastName())
+                .enabled(user.isEnabled())
+                .emailVerified(user.isEmailVerified())
+                .createdTimestamp(user.getCreatedTimestamp())
+                .build();
+    }
+
+    private static UserRepresentation getImportedUser(AuthRequestDto registrationRequest) {
+        // unlike the users endpoint, partial import does not fall back to the email as username
+        UserRepresentation user = getUser(registrationRequest);
+        user.setUsername(registrationRequest.getUsername() != null ? registrationRequest.getUsername() : registrationRequest.getEmail());
+        return user;
+    }
+
+    private static UserRepresentation getUser(AuthRequestDto registrationRequest) {
         UserRepresentation user = new UserRepresentation();
         user.setEmail(registrationRequest.getEmail());
         user.setEmailVerified(true);
@@ -0,0 +1,103 @@
+package com.github.gluhov.orchestrator.util;
+
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * AIMD concurrency limit: the limit grows by one while calls are fast and the limit is actually used, and is
+ * multiplied by {@code backoffRatio} whenever a call is slow or fails with a "drop" error (timeout, connection
+ * failure). Calls above the current limit are rejected immediately.
+ */
+public class AdaptiveConcurrencyLimit {
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long slowCallThresholdNanos;
+    private final Predicate<Throwable> isDrop;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double limit;
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double backoffRatio,
+                                    long slowCallThresholdNanos, Predicate<Throwable> isDrop) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.slowCallThresholdNanos = slowCallThresholdNanos;
+        this.isDrop = isDrop;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    public <T> Mono<T> limit(Mono<T> source, Supplier<? extends RuntimeException> rejection) {
+        return Mono.defer(() -> {
+            if (!tryAcquire()) {
+                return Mono.error(rejection.get());
+            }
+            long start = System.nanoTime();
+            AtomicBoolean released = new AtomicBoolean();
+            return source
+                    .doOnSuccess(value -> {
+                        if (released.compareAndSet(false, true)) {
+                            onSuccess(System.nanoTime() - start);
+                        }
+                    })
+                    .doOnError(error -> {
+                        if (released.compareAndSet(false, true)) {
+                            onError(error);
+                        }
+                    })
+                    .doOnCancel(() -> {
+                        if (released.compareAndSet(false, true)) {
+                            inFlight.decrementAndGet();
+                        }
+                    });
+        });
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private boolean tryAcquire() {
+        for (;;) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void onSuccess(long latencyNanos) {
+        int current = inFlight.getAndDecrement();
+        if (latencyNanos > slowCallThresholdNanos) {
+            decrease();
+        } else if (current * 2 >= (int) limit) {
+            increase();
+        }
+    }
+
+    private void onError(Throwable error) {
+        inFlight.decrementAndGet();
+        if (isDrop.test(error)) {
+            decrease();
+        }
+    }
+
+    private synchronized void increase() {
+        limit = Math.min(maxLimit, limit + 1);
+    }
+
+    private synchronized void decrease() {
+        limit = Math.max(minLimit, limit * backoffRatio);
+    }
+}
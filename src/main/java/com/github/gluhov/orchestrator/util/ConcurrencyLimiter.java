@@ -0,0 +1,139 @@
+package com.github.gluhov.orchestrator.util;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking concurrency cap for reactive calls. At most {@code maxConcurrency} sources are subscribed at
+ * the same time, the rest wait in a FIFO queue without holding a thread. When the queue already holds
+ * {@code maxPending} waiters new calls fail fast with the configured rejection.
+ */
+public class ConcurrencyLimiter {
+    private final int maxConcurrency;
+    private final int maxPending;
+    private final Supplier<? extends RuntimeException> rejection;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final Queue<Waiter> pending = new ConcurrentLinkedQueue<>();
+
+    public ConcurrencyLimiter(int maxConcurrency, int maxPending, Supplier<? extends RuntimeException> rejection) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be positive");
+        }
+        this.maxConcurrency = maxConcurrency;
+        this.maxPending = Math.max(0, maxPending);
+        this.rejection = rejection;
+    }
+
+    public <T> Mono<T> limit(Mono<T> source) {
+        return Mono.usingWhen(acquire(), permit -> source, permit -> Mono.fromRunnable(permit::release));
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public int getPending() {
+        return pendingCount.get();
+    }
+
+    private Mono<Permit> acquire() {
+        return Mono.create(sink -> {
+            if (tryAcquire()) {
+                sink.success(new Permit());
+                return;
+            }
+            if (pendingCount.incrementAndGet() > maxPending) {
+                pendingCount.decrementAndGet();
+                sink.error(rejection.get());
+                return;
+            }
+            Waiter waiter = new Waiter(sink);
+            sink.onCancel(waiter::cancel);
+            pending.offer(waiter);
+            // a permit may have been released between tryAcquire and offer
+            drain();
+        });
+    }
+
+    private boolean tryAcquire() {
+        for (;;) {
+            int current = inFlight.get();
+            if (current >= maxConcurrency) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void drain() {
+        while (!pending.isEmpty() && tryAcquire()) {
+            Waiter waiter = pending.poll();
+            if (waiter == null) {
+                inFlight.decrementAndGet();
+                return;
+            }
+            pendingCount.decrementAndGet();
+            if (!waiter.grant()) {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    private final class Permit {
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                inFlight.decrementAndGet();
+                drain();
+            }
+        }
+    }
+
+    private final class Waiter {
+        private static final int WAITING = 0;
+        private static final int GRANTED = 1;
+        private static final int CANCELLED = 2;
+
+        private final MonoSink<Permit> sink;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        private volatile Permit permit;
+
+        Waiter(MonoSink<Permit> sink) {
+            this.sink = sink;
+        }
+
+        boolean grant() {
+            Permit granted = new Permit();
+            permit = granted;
+            if (!state.compareAndSet(WAITING, GRANTED)) {
+                return false;
+            }
+            sink.success(granted);
+            return true;
+        }
+
+        void cancel() {
+            if (state.compareAndSet(WAITING, CANCELLED)) {
+                if (pending.remove(this)) {
+                    pendingCount.decrementAndGet();
+                }
+                return;
+            }
+            // cancelled while the permit was being handed over, release is idempotent
+            Permit granted = permit;
+            if (granted != null) {
+                granted.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.github.gluhov.orchestrator.util;
+
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+/**
+ * Marks a request whose response time was set on purpose, such as a login held back or refused by the throttle, so
+ * that it is kept out of response time based load estimates. The measuring side puts a fresh instance into the
+ * subscriber context, the side that delays or refuses marks it through {@link #mark(Mono)}.
+ */
+public final class DeliberateDelay {
+    private static final Class<DeliberateDelay> CONTEXT_KEY = DeliberateDelay.class;
+
+    private volatile boolean marked;
+
+    public Context addTo(Context context) {
+        return context.put(CONTEXT_KEY, this);
+    }
+
+    public boolean isMarked() {
+        return marked;
+    }
+
+    /**
+     * Marks the request the source is subscribed for, when it is measured at all.
+     */
+    public static <T> Mono<T> mark(Mono<T> source) {
+        return Mono.deferContextual(context -> {
+            context.getOrEmpty(CONTEXT_KEY).ifPresent(delay -> ((DeliberateDelay) delay).marked = true);
+            return source;
+        });
+    }
+}
@@ -0,0 +1,83 @@
+package com.github.gluhov.orchestrator.util;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Estimates how long requests currently wait in front of the work they came for, from their response times alone.
+ * <p>
+ * The queueing delay is a time-weighted average of recent response times over {@code decay} minus the baseline,
+ * the fastest response seen within the current and the previous {@code baselineWindow}, i.e. what the work costs when
+ * nothing is queued. The average starts as the mean of the first {@code minResponses} and nothing is estimated
+ * before, so a few slow first responses of a cold JVM are not taken for queueing. Without new responses the estimate
+ * fades out over {@code decay}, so requests that were turned away because of it are let through again to probe
+ * whether the delay is gone.
+ */
+public class QueueingDelayEstimator {
+    private final long decayNanos;
+    private final int minResponses;
+    private final long baselineWindowNanos;
+    private final LongSupplier nanoClock;
+    private long count;
+    private double averageNanos;
+    private long updatedAt;
+    private long windowStart;
+    private long currentMin = Long.MAX_VALUE;
+    private long previousMin = Long.MAX_VALUE;
+
+    public QueueingDelayEstimator(Duration decay, int minResponses, Duration baselineWindow, LongSupplier nanoClock) {
+        if (decay.isNegative() || decay.isZero() || baselineWindow.isNegative() || baselineWindow.isZero()) {
+            throw new IllegalArgumentException("decay and baselineWindow must be positive");
+        }
+        if (minResponses < 1) {
+            throw new IllegalArgumentException("minResponses must be positive");
+        }
+        this.decayNanos = decay.toNanos();
+        this.minResponses = minResponses;
+        this.baselineWindowNanos = baselineWindow.toNanos();
+        this.nanoClock = nanoClock;
+        this.updatedAt = nanoClock.getAsLong();
+        this.windowStart = updatedAt;
+    }
+
+    public synchronized void record(long responseNanos) {
+        long now = nanoClock.getAsLong();
+        rotate(now);
+        currentMin = Math.min(currentMin, responseNanos);
+        count++;
+        if (count <= minResponses) {
+            averageNanos += (responseNanos - averageNanos) / count;
+        } else {
+            double weight = fade(now);
+            averageNanos = averageNanos * weight + responseNanos * (1 - weight);
+        }
+        updatedAt = now;
+    }
+
+    /**
+     * The estimated queueing delay in nanoseconds, 0 before {@code minResponses} responses were recorded.
+     */
+    public synchronized long get() {
+        long now = nanoClock.getAsLong();
+        rotate(now);
+        long baseline = Math.min(currentMin, previousMin);
+        if (count < minResponses || baseline == Long.MAX_VALUE) {
+            return 0;
+        }
+        return (long) (Math.max(0, averageNanos - baseline) * fade(now));
+    }
+
+    private double fade(long now) {
+        return Math.exp(-(double) (now - updatedAt) / decayNanos);
+    }
+
+    private void rotate(long now) {
+        long elapsed = now - windowStart;
+        if (elapsed < baselineWindowNanos) {
+            return;
+        }
+        previousMin = elapsed < 2 * baselineWindowNanos ? currentMin : Long.MAX_VALUE;
+        currentMin = Long.MAX_VALUE;
+        windowStart = now - elapsed % baselineWindowNanos;
+    }
+}
@@ -0,0 +1,62 @@
+package com.github.gluhov.orchestrator.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight for upstream calls: concurrent subscribers asking for the same endpoint with the same credential
+ * share one upstream call and receive its result or error. Credentials are only kept as SHA-256 hashes.
+ * <p>
+ * Coalescing ratio per endpoint is {@code orchestrator.coalescer.coalesced / orchestrator.coalescer.requests}.
+ */
+@Component
+public class RequestCoalescer {
+    private final Map<Key, Mono<?>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Counter> requestCounters = new ConcurrentHashMap<>();
+    private final Map<String, Counter> coalescedCounters = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+
+    public RequestCoalescer(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        meterRegistry.gauge("orchestrator.coalescer.in.flight", inFlight, Map::size);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> Mono<T> coalesce(String endpoint, String credential, Supplier<Mono<T>> call) {
+        return Mono.defer(() -> {
+            Key key = new Key(endpoint, Hashing.sha256(credential));
+            requestCounters.computeIfAbsent(endpoint, e -> counter("orchestrator.coalescer.requests", e)).increment();
+            boolean[] leader = new boolean[1];
+            Mono<?> shared = inFlight.computeIfAbsent(key, k -> {
+                leader[0] = true;
+                Mono<?>[] self = new Mono<?>[1];
+                // leave the map before the result is delivered, so callers reacting to it start a fresh call
+                Runnable remove = () -> inFlight.remove(k, self[0]);
+                self[0] = call.get()
+                        .doOnTerminate(remove)
+                        .doOnCancel(remove)
+                        .share();
+                return self[0];
+            });
+            if (!leader[0]) {
+                coalescedCounters.computeIfAbsent(endpoint, e -> counter("orchestrator.coalescer.coalesced", e)).increment();
+            }
+            return (Mono<T>) shared;
+        });
+    }
+
+    private Counter counter(String name, String endpoint) {
+        return Counter.builder(name)
+                .tag("endpoint", endpoint)
+                .register(meterRegistry);
+    }
+
+    private record Key(String endpoint, String credentialHash) {
+    }
+}
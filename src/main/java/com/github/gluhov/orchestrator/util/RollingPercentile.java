@@ -0,0 +1,45 @@
+package com.github.gluhov.orchestrator.util;
+
+import java.util.Arrays;
+
+/**
+ * Percentile of the last {@code size} recorded values. The percentile is recomputed from a sorted copy every
+ * {@code size / 8} records and read without locking in between, so it trails the latest values slightly.
+ */
+public class RollingPercentile {
+    private final double percentile;
+    private final long[] values;
+    private final int recomputeEvery;
+    private int next;
+    private int count;
+    private int sinceRecompute;
+    private volatile long current = -1;
+
+    public RollingPercentile(double percentile, int size) {
+        if (percentile <= 0 || percentile > 1) {
+            throw new IllegalArgumentException("percentile must be in (0, 1]");
+        }
+        this.percentile = percentile;
+        this.values = new long[Math.max(8, size)];
+        this.recomputeEvery = Math.max(1, values.length / 8);
+    }
+
+    public synchronized void record(long value) {
+        values[next] = value;
+        next = (next + 1) % values.length;
+        count = Math.min(values.length, count + 1);
+        if (++sinceRecompute >= recomputeEvery) {
+            sinceRecompute = 0;
+            long[] sorted = Arrays.copyOf(values, count);
+            Arrays.sort(sorted);
+            current = sorted[Math.min(count - 1, (int) Math.ceil(percentile * count) - 1)];
+        }
+    }
+
+    /**
+     * The percentile, or -1 until enough values were recorded to compute it.
+     */
+    public long get() {
+        return current;
+    }
+}
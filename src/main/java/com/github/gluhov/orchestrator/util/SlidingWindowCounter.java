@@ -0,0 +1,102 @@
+package com.github.gluhov.orchestrator.util;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Approximate per-key event counts over a sliding window in constant memory, however many distinct keys are seen.
+ * <p>
+ * Keys are hashed into {@value #DEPTH} rows of {@code width} cells (a count-min sketch) and the count of a key is
+ * the smallest of its cells, so two keys only share a count when they collide in every row, and a collision can only
+ * overestimate. The hash is seeded per instance, so collisions cannot be precomputed to lock out a chosen key.
+ * <p>
+ * Each cell keeps the counts of the current and the previous fixed window; the sliding count weights the previous
+ * one by the part of it that is still inside the window. Cells are guarded by a fixed set of lock stripes.
+ */
+public class SlidingWindowCounter {
+    private static final int DEPTH = 2;
+    private static final int LOCK_STRIPES = 256;
+
+    private final long windowNanos;
+    private final int width;
+    private final long[] windows;
+    private final int[] current;
+    private final int[] previous;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final long seed = new SecureRandom().nextLong();
+    private final LongSupplier nanoClock;
+
+    public SlidingWindowCounter(Duration window, int width) {
+        this(window, width, System::nanoTime);
+    }
+
+    SlidingWindowCounter(Duration window, int width, LongSupplier nanoClock) {
+        if (window.isNegative() || window.isZero()) {
+            throw new IllegalArgumentException("window must be positive");
+        }
+        this.windowNanos = window.toNanos();
+        this.width = Integer.highestOneBit(Math.max(LOCK_STRIPES, width) - 1) << 1;
+        this.windows = new long[DEPTH * this.width];
+        this.current = new int[DEPTH * this.width];
+        this.previous = new int[DEPTH * this.width];
+        this.nanoClock = nanoClock;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Counts one event for the key and returns the sliding count, this event included.
+     */
+    public double increment(String key) {
+        return update(key, 1);
+    }
+
+    /**
+     * Takes back an event counted in the current window.
+     */
+    public void decrement(String key) {
+        update(key, -1);
+    }
+
+    public double get(String key) {
+        return update(key, 0);
+    }
+
+    private double update(String key, int delta) {
+        long now = nanoClock.getAsLong();
+        long window = Math.floorDiv(now, windowNanos);
+        double previousWeight = 1.0 - (double) Math.floorMod(now, windowNanos) / windowNanos;
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        double count = Double.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            int cell = row * width + ((h1 + row * h2) & (width - 1));
+            synchronized (locks[cell & (LOCK_STRIPES - 1)]) {
+                long elapsed = window - windows[cell];
+                if (elapsed != 0) {
+                    previous[cell] = elapsed == 1 ? current[cell] : 0;
+                    current[cell] = 0;
+                    windows[cell] = window;
+                }
+                current[cell] = Math.max(0, current[cell] + delta);
+                count = Math.min(count, previous[cell] * previousWeight + current[cell]);
+            }
+        }
+        return count;
+    }
+
+    private long hash(String key) {
+        long hash = seed;
+        for (int i = 0; i < key.length(); i++) {
+            hash = (hash ^ key.charAt(i)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+}
@@ -1 +1,16 @@
-CREATE DATABASE keycloak;
\ No newline at end of file
+CREATE DATABASE keycloak;
+
+-- read model of the realm's users, kept in sync from Keycloak by UserReadModel
+CREATE TABLE users (
+    id                VARCHAR(36) PRIMARY KEY,
+    username          VARCHAR(255) NOT NULL,
+    email             VARCHAR(255),
+    first_name        VARCHAR(255),
+    last_name         VARCHAR(255),
+    enabled           BOOLEAN NOT NULL,
+    email_verified    BOOLEAN NOT NULL,
+    created_timestamp BIGINT,
+    synced_at         TIMESTAMP WITH TIME ZONE NOT NULL
+);
+
+CREATE INDEX users_synced_at_idx ON users (synced_at);
@@ -0,0 +1,74 @@
+package com.github.gluhov.orchestrator.config;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.blockhound.BlockingMethod;
+import reactor.blockhound.BlockingOperationError;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.lang.reflect.Modifier;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class BlockingCallReporterTest {
+    private static final BlockingMethod SLEEP = new BlockingMethod("java.lang.Thread", "sleep", Modifier.STATIC);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @AfterEach
+    void removeRegistry() {
+        Metrics.globalRegistry.remove(meterRegistry);
+    }
+
+    @Test
+    @DisplayName("Test blocking calls on non-blocking threads fail every test")
+    void failsBlockingCallsInTests() {
+        StepVerifier.create(Mono.fromCallable(() -> {
+                            Thread.sleep(1);
+                            return "slept";
+                        })
+                        .subscribeOn(Schedulers.parallel()))
+                .verifyError(BlockingOperationError.class);
+    }
+
+    private static void block(BlockingCallReporter reporter) {
+        reporter.report(SLEEP);
+    }
+
+    @Test
+    @DisplayName("Test blocking calls are counted by method and call site and fail only when asked to")
+    void reportsBlockingCalls() {
+        Metrics.globalRegistry.add(meterRegistry);
+        BlockingCallReporter reporter = new BlockingCallReporter(false);
+
+        assertDoesNotThrow(() -> block(reporter));
+        assertDoesNotThrow(() -> block(reporter));
+        reporter.setFail(true);
+        assertThrows(BlockingOperationError.class, () -> block(reporter));
+
+        assertEquals(3, meterRegistry.get("orchestrator.blocking.calls")
+                .tag("method", "java.lang.Thread.sleep")
+                .tag("call_site", BlockingCallReporterTest.class.getName() + ".block")
+                .counter().count());
+    }
+
+    @Test
+    @DisplayName("Test the call site is the first frame of the orchestrator's own code")
+    void findsCallSite() {
+        StackTraceElement[] stackTrace = {
+                new StackTraceElement("java.lang.Thread", "sleep", null, -1),
+                new StackTraceElement("reactor.core.publisher.MonoCallable", "call", null, -1),
+                new StackTraceElement("com.github.gluhov.orchestrator.service.UserService", "register", null, -1),
+        };
+        assertEquals("com.github.gluhov.orchestrator.service.UserService.register", BlockingCallReporter.callSite(stackTrace));
+        assertEquals("reactor.core.publisher.MonoCallable.call", BlockingCallReporter.callSite(
+                new StackTraceElement[]{stackTrace[0], stackTrace[1]}));
+    }
+}
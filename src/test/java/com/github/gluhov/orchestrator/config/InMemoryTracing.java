@@ -0,0 +1,75 @@
+package com.github.gluhov.orchestrator.config;
+
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.tracing.Tracer;
+import io.micrometer.tracing.handler.DefaultTracingObservationHandler;
+import io.micrometer.tracing.handler.PropagatingReceiverTracingObservationHandler;
+import io.micrometer.tracing.handler.PropagatingSenderTracingObservationHandler;
+import io.micrometer.tracing.otel.bridge.OtelCurrentTraceContext;
+import io.micrometer.tracing.otel.bridge.OtelPropagator;
+import io.micrometer.tracing.otel.bridge.OtelTracer;
+import io.micrometer.tracing.propagation.Propagator;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.propagation.ContextPropagators;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * OpenTelemetry tracing wired up as Spring Boot does it, with every span sampled and exported to memory as soon as
+ * it ends, for tests that check spans and the trace headers of outgoing requests.
+ */
+public class InMemoryTracing {
+    private final InMemorySpanExporter exporter = InMemorySpanExporter.create();
+    private final Tracer tracer;
+    private final Propagator propagator;
+    private final ObservationRegistry observationRegistry = ObservationRegistry.create();
+
+    public InMemoryTracing() {
+        OpenTelemetrySdk openTelemetry = OpenTelemetrySdk.builder()
+                .setTracerProvider(SdkTracerProvider.builder()
+                        .setSampler(Sampler.alwaysOn())
+                        .addSpanProcessor(SimpleSpanProcessor.create(exporter))
+                        .build())
+                .setPropagators(ContextPropagators.create(W3CTraceContextPropagator.getInstance()))
+                .build();
+        io.opentelemetry.api.trace.Tracer otelTracer = openTelemetry.getTracer("test");
+        this.tracer = new OtelTracer(otelTracer, new OtelCurrentTraceContext(), event -> {
+        });
+        this.propagator = new OtelPropagator(openTelemetry.getPropagators(), otelTracer);
+        observationRegistry.observationConfig().observationHandler(new ObservationHandler.FirstMatchingCompositeObservationHandler(
+                new PropagatingSenderTracingObservationHandler<>(tracer, propagator),
+                new PropagatingReceiverTracingObservationHandler<>(tracer, propagator),
+                new DefaultTracingObservationHandler(tracer)));
+    }
+
+    public Tracer getTracer() {
+        return tracer;
+    }
+
+    public Propagator getPropagator() {
+        return propagator;
+    }
+
+    public ObservationRegistry getObservationRegistry() {
+        return observationRegistry;
+    }
+
+    public List<SpanData> getSpans() {
+        return exporter.getFinishedSpanItems();
+    }
+
+    public SpanData getSpan(String name) {
+        return getSpans().stream()
+                .filter(span -> span.getName().equals(name))
+                .findFirst()
+                .orElseThrow(() -> new NoSuchElementException("No span " + name + " in " + getSpans()));
+    }
+}
@@ -0,0 +1,45 @@
+package com.github.gluhov.orchestrator.config;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.reactive.context.ReactiveWebServerApplicationContext;
+import org.springframework.boot.web.reactive.context.ReactiveWebServerInitializedEvent;
+import org.springframework.boot.web.server.WebServer;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+
+import java.net.InetSocketAddress;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ManagementPortTest {
+    private final ManagementPort managementPort = new ManagementPort();
+
+    private void started(String namespace, int port) {
+        WebServer webServer = mock(WebServer.class);
+        when(webServer.getPort()).thenReturn(port);
+        ReactiveWebServerApplicationContext context = mock(ReactiveWebServerApplicationContext.class);
+        when(context.getServerNamespace()).thenReturn(namespace);
+        managementPort.onApplicationEvent(new ReactiveWebServerInitializedEvent(webServer, context));
+    }
+
+    private static MockServerHttpRequest on(int port) {
+        return MockServerHttpRequest.get("/actuator/prometheus")
+                .localAddress(new InetSocketAddress("127.0.0.1", port))
+                .build();
+    }
+
+    @Test
+    @DisplayName("Test only requests on the separate management port match")
+    void matchesManagementPort() {
+        started(null, 8083);
+        assertFalse(managementPort.matches(on(8083)));
+
+        started("management", 8084);
+        assertTrue(managementPort.matches(on(8084)));
+        assertFalse(managementPort.matches(on(8083)));
+        assertFalse(managementPort.matches(MockServerHttpRequest.get("/actuator/prometheus").build()));
+    }
+}
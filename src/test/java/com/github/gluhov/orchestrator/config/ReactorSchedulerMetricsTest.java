@@ -0,0 +1,81 @@
+package com.github.gluhov.orchestrator.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ReactorSchedulerMetricsTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ReactorSchedulerMetrics metrics = new ReactorSchedulerMetrics(meterRegistry);
+
+    @AfterEach
+    void destroy() {
+        metrics.destroy();
+    }
+
+    private Set<String> executorNames() {
+        return meterRegistry.find("reactor.scheduler.executor.completed").functionCounters().stream()
+                .map(counter -> counter.getId().getTag("name"))
+                .collect(Collectors.toSet());
+    }
+
+    @Test
+    @DisplayName("Test every executor of a scheduler is published under its own name")
+    void tagsEveryExecutor() {
+        Scheduler scheduler = Schedulers.newParallel("metrics-test", 3);
+        try {
+            scheduler.init();
+            assertEquals(Set.of("parallel-0", "parallel-1", "parallel-2"), executorNames());
+        } finally {
+            scheduler.dispose();
+        }
+    }
+
+    @Test
+    @DisplayName("Test schedulers created after the context closed are not instrumented")
+    void removesDecoratorOnDestroy() {
+        metrics.destroy();
+        Scheduler scheduler = Schedulers.newParallel("metrics-test", 2);
+        try {
+            scheduler.init();
+            assertTrue(executorNames().isEmpty());
+        } finally {
+            scheduler.dispose();
+        }
+    }
+
+    @Test
+    @DisplayName("Test a new executor reuses the name and meters of one that was shut down")
+    void reusesNamesOfShutDownExecutors() {
+        // executors are handed to the decorator directly, keep the scheduler's own out of it
+        metrics.destroy();
+        Scheduler scheduler = Schedulers.newParallel("metrics-test", 1);
+        ScheduledExecutorService first = new ScheduledThreadPoolExecutor(1);
+        ScheduledExecutorService second = new ScheduledThreadPoolExecutor(1);
+        ScheduledExecutorService third = new ScheduledThreadPoolExecutor(1);
+        try {
+            metrics.decorate(scheduler, first);
+            metrics.decorate(scheduler, second);
+            first.shutdown();
+            metrics.decorate(scheduler, third);
+
+            assertEquals(Set.of("parallel-0", "parallel-1"), executorNames());
+            assertEquals(2, meterRegistry.find("reactor.scheduler.executor.completed").functionCounters().size());
+        } finally {
+            second.shutdown();
+            third.shutdown();
+            scheduler.dispose();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.github.gluhov.orchestrator.errorhandling;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.gluhov.orchestrator.exception.ApiException;
+import com.github.gluhov.orchestrator.exception.AuthException;
+import com.github.gluhov.orchestrator.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class AppErrorAttributesTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AppErrorAttributes errorAttributes = new AppErrorAttributes(meterRegistry, new ObjectMapper());
+
+    @Test
+    @DisplayName("Test errors are mapped to status and body by type")
+    void rendersByType() {
+        assertRendered(new AuthException("Invalid credentials", "O_AUTHENTICATE_ERROR"), HttpStatus.UNAUTHORIZED,
+                "{\"errors\":[{\"code\":\"O_AUTHENTICATE_ERROR\",\"message\":\"Invalid credentials\"}]}");
+        assertRendered(new ServiceUnavailableException("Keycloak circuit breaker is open", "O_KEYCLOAK_CIRCUIT_OPEN"), HttpStatus.SERVICE_UNAVAILABLE,
+                "{\"errors\":[{\"code\":\"O_KEYCLOAK_CIRCUIT_OPEN\",\"message\":\"Keycloak circuit breaker is open\"}]}");
+        assertRendered(new ApiException("Error from Keycloak", "O_GET_INFO_ERROR"), HttpStatus.BAD_REQUEST,
+                "{\"errors\":[{\"code\":\"O_GET_INFO_ERROR\",\"message\":\"Error from Keycloak\"}]}");
+        assertRendered(new IllegalStateException(), HttpStatus.INTERNAL_SERVER_ERROR,
+                "{\"errors\":[{\"code\":\"INTERNAL_ERROR\",\"message\":\"java.lang.IllegalStateException\"}]}");
+    }
+
+    @Test
+    @DisplayName("Test repeated errors reuse the serialized body and are still counted")
+    void reusesSerializedBody() {
+        var first = errorAttributes.render(new AuthException("Invalid credentials", "O_AUTHENTICATE_ERROR"));
+        var second = errorAttributes.render(new AuthException("Invalid credentials", "O_AUTHENTICATE_ERROR"));
+
+        assertSame(first.body(), second.body());
+        assertEquals(2, meterRegistry.get("orchestrator.errors")
+                .tag("code", "O_AUTHENTICATE_ERROR")
+                .tag("status", "401")
+                .counter().count());
+    }
+
+    @Test
+    @DisplayName("Test concurrent failures of different kinds keep their own status")
+    void concurrentRendering() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Callable<HttpStatus>> tasks = List.of(
+                    () -> errorAttributes.render(new AuthException("Invalid credentials", "O_AUTHENTICATE_ERROR")).status(),
+                    () -> errorAttributes.render(new ServiceUnavailableException("Busy", "O_KEYCLOAK_BULKHEAD_FULL")).status(),
+                    () -> errorAttributes.render(new ApiException("Bad", "O_GET_INFO_ERROR")).status(),
+                    () -> errorAttributes.render(new RuntimeException("Boom")).status());
+            List<HttpStatus> expected = List.of(HttpStatus.UNAUTHORIZED, HttpStatus.SERVICE_UNAVAILABLE,
+                    HttpStatus.BAD_REQUEST, HttpStatus.INTERNAL_SERVER_ERROR);
+            for (int round = 0; round < 1000; round++) {
+                List<Future<HttpStatus>> results = executor.invokeAll(tasks);
+                for (int i = 0; i < results.size(); i++) {
+                    assertEquals(expected.get(i), results.get(i).get());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Test expected failures carry no stack trace")
+    void apiExceptionIsStackless() {
+        assertEquals(0, new AuthException("Invalid credentials", "O_AUTHENTICATE_ERROR").getStackTrace().length);
+    }
+
+    private void assertRendered(Throwable error, HttpStatus status, String body) {
+        var rendered = errorAttributes.render(error);
+        assertEquals(status, rendered.status());
+        assertEquals(body, new String(rendered.body(), StandardCharsets.UTF_8));
+    }
+}
@@ -113,7 +113,11 @@ public class ItAuthRestControllerV1Test extends AbstractRestControllerTest{
                 .exchange();
 
         result.expectStatus().isCreated()
-                .expectHeader().exists("location");
+                .expectHeader().exists("location")
+                .expectBody()
+                .jsonPath("$.access_token").isNotEmpty()
+                .jsonPath("$.refresh_token").isNotEmpty()
+                .jsonPath("$.expires_in").isNumber();
     }
 
     @Test
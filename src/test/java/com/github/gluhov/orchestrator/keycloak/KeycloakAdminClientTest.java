@@ -0,0 +1,154 @@
+package com.github.gluhov.orchestrator.keycloak;
+
+import com.github.gluhov.orchestrator.exception.AuthException;
+import com.github.gluhov.orchestrator.exception.ServiceUnavailableException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class KeycloakAdminClientTest {
+    private static final String TOKEN_RESPONSE = "{\"access_token\":\"admin-token\",\"expires_in\":300,\"token_type\":\"Bearer\"}";
+
+    private final List<ClientRequest> requests = new CopyOnWriteArrayList<>();
+
+    private KeycloakAdminClient client(Function<ClientRequest, ClientResponse> usersEndpoint) {
+        return client(4, 10, request -> Mono.just(usersEndpoint.apply(request)));
+    }
+
+    private KeycloakAdminClient client(int maxConcurrency, int maxPending,
+                                       Function<ClientRequest, Mono<ClientResponse>> usersEndpoint) {
+        WebClient webClient = WebClient.builder()
+                .exchangeFunction(request -> {
+                    requests.add(request);
+                    if (request.url().getPath().endsWith("/token")) {
+                        return Mono.just(ClientResponse.create(HttpStatus.OK)
+                                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                                .body(TOKEN_RESPONSE)
+                                .build());
+                    }
+                    return usersEndpoint.apply(request);
+                })
+                .build();
+        return new KeycloakAdminClient(webClient, "http://localhost:8088", "test-realm",
+                "test-client-id", "test-client-secret", maxConcurrency, maxPending);
+    }
+
+    @Test
+    @DisplayName("Test create user returns id from location header")
+    void createUserSuccess() {
+        KeycloakAdminClient client = client(request -> ClientResponse.create(HttpStatus.CREATED)
+                .header(HttpHeaders.LOCATION, "http://localhost:8088/admin/realms/test-realm/users/12345")
+                .build());
+
+        StepVerifier.create(client.createUser(new UserRepresentation()))
+                .expectNext("12345")
+                .verifyComplete();
+
+        ClientRequest create = requests.get(1);
+        assertEquals("/admin/realms/test-realm/users", create.url().getPath());
+        assertEquals("Bearer admin-token", create.headers().getFirst(HttpHeaders.AUTHORIZATION));
+    }
+
+    @Test
+    @DisplayName("Test service account token is reused between calls")
+    void createUserReusesToken() {
+        KeycloakAdminClient client = client(request -> ClientResponse.create(HttpStatus.CREATED)
+                .header(HttpHeaders.LOCATION, "http://localhost:8088/admin/realms/test-realm/users/12345")
+                .build());
+
+        StepVerifier.create(client.createUser(new UserRepresentation()).then(client.createUser(new UserRepresentation())))
+                .expectNext("12345")
+                .verifyComplete();
+
+        assertEquals(1, requests.stream().filter(r -> r.url().getPath().endsWith("/token")).count());
+    }
+
+    @Test
+    @DisplayName("Test create user with error from keycloak")
+    void createUserConflict() {
+        KeycloakAdminClient client = client(request -> ClientResponse.create(HttpStatus.CONFLICT)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body("{\"errorMessage\":\"User exists with same email\"}")
+                .build());
+
+        StepVerifier.create(client.createUser(new UserRepresentation()))
+                .expectErrorSatisfies(error -> {
+                    assertTrue(error instanceof AuthException);
+                    assertEquals("O_REGISTER_USER_ERROR", ((AuthException) error).getErrorCode());
+                })
+                .verify();
+    }
+
+    @Test
+    @DisplayName("Test create user without location header")
+    void createUserMissingLocation() {
+        KeycloakAdminClient client = client(request -> ClientResponse.create(HttpStatus.CREATED).build());
+
+        StepVerifier.create(client.createUser(new UserRepresentation()))
+                .expectErrorSatisfies(error -> {
+                    assertTrue(error instanceof AuthException);
+                    assertEquals("Missing location header after user registration", error.getMessage());
+                })
+                .verify();
+    }
+
+    @Test
+    @DisplayName("Test admin calls over the concurrency limit are rejected as service unavailable")
+    void rejectsWhenBusy() {
+        Sinks.One<ClientResponse> created = Sinks.one();
+        KeycloakAdminClient client = client(1, 0, request -> created.asMono());
+
+        StepVerifier.create(client.createUser(new UserRepresentation()))
+                .then(() -> StepVerifier.create(client.createUser(new UserRepresentation()))
+                        .expectErrorSatisfies(error -> {
+                            assertTrue(error instanceof ServiceUnavailableException);
+                            assertEquals("O_ADMIN_BUSY", ((ServiceUnavailableException) error).getErrorCode());
+                        })
+                        .verify())
+                .then(() -> created.tryEmitValue(ClientResponse.create(HttpStatus.CREATED)
+                        .header(HttpHeaders.LOCATION, "http://localhost:8088/admin/realms/test-realm/users/12345")
+                        .build()))
+                .expectNext("12345")
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Test list users reads a page with the service account token")
+    void listUsers() {
+        KeycloakAdminClient client = client(request -> ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body("[{\"id\":\"1\",\"username\":\"john\"},{\"id\":\"2\",\"username\":\"jane\"}]")
+                .build());
+
+        StepVerifier.create(client.listUsers(500, 2))
+                .assertNext(users -> {
+                    assertEquals(2, users.size());
+                    assertEquals("john", users.get(0).getUsername());
+                    assertEquals("2", users.get(1).getId());
+                })
+                .verifyComplete();
+
+        ClientRequest list = requests.get(1);
+        assertEquals(HttpMethod.GET, list.method());
+        assertEquals("/admin/realms/test-realm/users", list.url().getPath());
+        assertEquals("briefRepresentation=true&first=500&max=2", list.url().getQuery());
+        assertEquals("Bearer admin-token", list.headers().getFirst(HttpHeaders.AUTHORIZATION));
+    }
+}
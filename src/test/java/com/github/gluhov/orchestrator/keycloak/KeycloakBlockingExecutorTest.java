@@ -0,0 +1,114 @@
+package com.github.gluhov.orchestrator.keycloak;
+
+import com.github.gluhov.orchestrator.config.InMemoryTracing;
+import com.github.gluhov.orchestrator.config.KeycloakBlockingProperties;
+import com.github.gluhov.orchestrator.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.tracing.Tracer;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import jakarta.ws.rs.client.ClientRequestContext;
+import jakarta.ws.rs.core.MultivaluedHashMap;
+import jakarta.ws.rs.core.MultivaluedMap;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.observability.micrometer.Micrometer;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class KeycloakBlockingExecutorTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private KeycloakBlockingExecutor executor(KeycloakBlockingProperties.Mode mode, int maxConcurrency, int maxPending) {
+        KeycloakBlockingProperties properties = new KeycloakBlockingProperties();
+        properties.setMode(mode);
+        properties.setMaxConcurrency(maxConcurrency);
+        properties.setMaxPending(maxPending);
+        return new KeycloakBlockingExecutor(properties, meterRegistry, Tracer.NOOP);
+    }
+
+    @Test
+    @DisplayName("Test calls run on virtual threads and are timed")
+    void runsOnVirtualThreads() {
+        KeycloakBlockingExecutor executor = executor(KeycloakBlockingProperties.Mode.VIRTUAL, 4, 10);
+
+        StepVerifier.create(executor.execute("test", () -> Thread.currentThread().isVirtual()))
+                .expectNext(true)
+                .verifyComplete();
+
+        assertEquals(1, meterRegistry.get("orchestrator.keycloak.blocking.wait").timer().count());
+        assertEquals(1, meterRegistry.get("orchestrator.keycloak.blocking.calls")
+                .tag("operation", "test")
+                .tag("outcome", "success")
+                .timer().count());
+    }
+
+    @Test
+    @DisplayName("Test a call is traced as a child of the caller and its admin client requests carry the trace")
+    void tracesCalls() throws Exception {
+        InMemoryTracing tracing = new InMemoryTracing();
+        KeycloakBlockingProperties properties = new KeycloakBlockingProperties();
+        KeycloakBlockingExecutor executor = new KeycloakBlockingExecutor(properties, meterRegistry, tracing.getTracer());
+        KeycloakTracePropagationFilter filter = new KeycloakTracePropagationFilter(tracing.getTracer(), tracing.getPropagator());
+        MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+        ClientRequestContext request = mock(ClientRequestContext.class);
+        when(request.getHeaders()).thenReturn(headers);
+
+        StepVerifier.create(executor.execute("partial-import", () -> {
+                            filter.filter(request);
+                            return "imported";
+                        })
+                        .tap(Micrometer.observation(tracing.getObservationRegistry(),
+                                registry -> Observation.createNotStarted("import", registry).contextualName("import"))))
+                .expectNext("imported")
+                .verifyComplete();
+
+        SpanData caller = tracing.getSpan("import");
+        SpanData call = tracing.getSpan("partial-import");
+        assertEquals(caller.getSpanContext().getSpanId(), call.getParentSpanId());
+        assertEquals("00-" + call.getTraceId() + "-" + call.getSpanId() + "-01", headers.getFirst("traceparent"));
+    }
+
+    @Test
+    @DisplayName("Test bounded elastic mode runs calls on platform threads")
+    void runsOnBoundedElastic() {
+        KeycloakBlockingExecutor executor = executor(KeycloakBlockingProperties.Mode.BOUNDED_ELASTIC, 4, 10);
+
+        StepVerifier.create(executor.execute("test", () -> Thread.currentThread().isVirtual()))
+                .expectNext(false)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Test calls over the cap wait and calls over the queue are rejected")
+    void capsConcurrency() throws Exception {
+        KeycloakBlockingExecutor executor = executor(KeycloakBlockingProperties.Mode.VIRTUAL, 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch secondStarted = new CountDownLatch(1);
+
+        executor.execute("test", () -> {
+            started.countDown();
+            return release.await(5, TimeUnit.SECONDS);
+        }).subscribe();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.execute("test", () -> {
+            secondStarted.countDown();
+            return true;
+        }).subscribe();
+
+        StepVerifier.create(executor.execute("test", () -> true))
+                .verifyError(ServiceUnavailableException.class);
+        assertFalse(secondStarted.await(100, TimeUnit.MILLISECONDS));
+        release.countDown();
+        assertTrue(secondStarted.await(5, TimeUnit.SECONDS));
+    }
+}
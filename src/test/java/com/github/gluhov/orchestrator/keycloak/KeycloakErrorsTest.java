@@ -0,0 +1,68 @@
+package com.github.gluhov.orchestrator.keycloak;
+
+import com.github.gluhov.orchestrator.exception.AuthException;
+import com.github.gluhov.orchestrator.exception.ServiceUnavailableException;
+import com.github.gluhov.orchestrator.exception.UpstreamException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class KeycloakErrorsTest {
+
+    private static Throwable map(HttpStatus status) {
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        StepVerifier.create(KeycloakErrors.toException(AuthException::new, "O_AUTHENTICATE_ERROR")
+                        .apply(ClientResponse.create(status).body("{\"error\":\"" + status.value() + "\"}").build()))
+                .expectErrorSatisfies(error::set)
+                .verify();
+        return error.get();
+    }
+
+    @Test
+    @DisplayName("Test keycloak client errors keep the caller's exception")
+    void clientErrors() {
+        for (HttpStatus status : new HttpStatus[]{HttpStatus.BAD_REQUEST, HttpStatus.UNAUTHORIZED, HttpStatus.CONFLICT}) {
+            Throwable error = map(status);
+            assertTrue(error instanceof AuthException, status.toString());
+            assertEquals("O_AUTHENTICATE_ERROR", ((AuthException) error).getErrorCode());
+            assertTrue(KeycloakErrors.isClientError(error));
+        }
+    }
+
+    @Test
+    @DisplayName("Test keycloak server errors and 429 are upstream failures")
+    void upstreamFailures() {
+        for (HttpStatus status : new HttpStatus[]{HttpStatus.INTERNAL_SERVER_ERROR, HttpStatus.SERVICE_UNAVAILABLE,
+                HttpStatus.TOO_MANY_REQUESTS}) {
+            Throwable error = map(status);
+            assertTrue(error instanceof UpstreamException, status.toString());
+            assertEquals("O_AUTHENTICATE_ERROR", ((UpstreamException) error).getErrorCode());
+            assertFalse(KeycloakErrors.isClientError(error));
+        }
+    }
+
+    @Test
+    @DisplayName("Test empty error body still fails the call")
+    void emptyBody() {
+        StepVerifier.create(KeycloakErrors.toException(AuthException::new, "O_REFRESH_TOKEN_ERROR")
+                        .apply(ClientResponse.create(HttpStatus.BAD_GATEWAY).build()))
+                .expectError(UpstreamException.class)
+                .verify();
+    }
+
+    @Test
+    @DisplayName("Test our own rejections are client errors and connection failures are not")
+    void ownRejections() {
+        assertTrue(KeycloakErrors.isClientError(new ServiceUnavailableException("Busy", "O_ADMIN_BUSY")));
+        assertFalse(KeycloakErrors.isClientError(new IOException("Connection refused")));
+    }
+}
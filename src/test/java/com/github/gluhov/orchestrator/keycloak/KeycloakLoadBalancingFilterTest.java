@@ -0,0 +1,154 @@
+package com.github.gluhov.orchestrator.keycloak;
+
+import com.github.gluhov.orchestrator.config.KeycloakBalancingProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class KeycloakLoadBalancingFilterTest {
+    private static final String BASE_URL = "http://keycloak:8080";
+    private static final String USERINFO = BASE_URL + "/realms/test/protocol/openid-connect/userinfo";
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<URI> sent = new CopyOnWriteArrayList<>();
+
+    @Test
+    @DisplayName("Test calls to the base URL are sent to a node and other calls are left alone")
+    void routesBaseUrlOnly() {
+        KeycloakLoadBalancingFilter filter = filter(properties(0.1), false);
+        ExchangeFunction ok = request -> respond(request, Mono.empty());
+
+        StepVerifier.create(filter.filter(get(USERINFO), ok)).expectNextCount(1).verifyComplete();
+        StepVerifier.create(filter.filter(get("http://keycloak:80801/realms"), ok)).expectNextCount(1).verifyComplete();
+        StepVerifier.create(filter.filter(get("http://elsewhere/realms"), ok)).expectNextCount(1).verifyComplete();
+
+        assertTrue(sent.get(0).toString().matches("http://node-[ab]/realms/test/protocol/openid-connect/userinfo"));
+        assertEquals(URI.create("http://keycloak:80801/realms"), sent.get(1));
+        assertEquals(URI.create("http://elsewhere/realms"), sent.get(2));
+    }
+
+    @Test
+    @DisplayName("Test the node with the lower latency times outstanding calls is preferred")
+    void prefersFasterNode() {
+        KeycloakNodeBalancer balancer = balancer(properties(0.1));
+        KeycloakNodeBalancer.Node slow = balancer.choose(null);
+        KeycloakNodeBalancer.Node fast = balancer.choose(slow);
+        slow.start();
+        slow.end(Duration.ofMillis(500).toNanos(), false);
+        fast.start();
+        fast.end(Duration.ofMillis(5).toNanos(), false);
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals(fast, balancer.choose(null));
+        }
+        fast.start();
+        fast.start();
+        assertEquals(fast, balancer.choose(null));
+        assertEquals(slow, balancer.choose(fast));
+    }
+
+    @Test
+    @DisplayName("Test a slow read is hedged to another node and the stalled call is cancelled")
+    void hedgesSlowRead() {
+        KeycloakLoadBalancingFilter filter = filter(properties(0.1), true);
+        AtomicBoolean stall = new AtomicBoolean();
+        AtomicBoolean cancelled = new AtomicBoolean();
+        ExchangeFunction exchange = request -> stall.getAndSet(false)
+                ? respond(request, Mono.never()).doOnCancel(() -> cancelled.set(true))
+                : respond(request, Mono.empty());
+        warmUp(filter, exchange);
+
+        stall.set(true);
+        sent.clear();
+        StepVerifier.create(filter.filter(get(USERINFO), exchange))
+                .expectNextCount(1)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+
+        assertEquals(2, sent.size());
+        assertNotEquals(sent.get(0).getHost(), sent.get(1).getHost());
+        assertTrue(cancelled.get());
+        assertEquals(1, meterRegistry.get("orchestrator.keycloak.hedges").tag("outcome", "won").counter().count());
+    }
+
+    @Test
+    @DisplayName("Test no hedge is sent once the budget is spent")
+    void hedgeBudget() {
+        KeycloakLoadBalancingFilter filter = filter(properties(0), true);
+        ExchangeFunction exchange = request -> respond(request, Mono.empty());
+        warmUp(filter, exchange);
+
+        sent.clear();
+        ExchangeFunction slow = request -> respond(request, Mono.delay(Duration.ofMillis(50)).then());
+        StepVerifier.create(filter.filter(get(USERINFO), slow)).expectNextCount(1).verifyComplete();
+
+        assertEquals(1, sent.size());
+        assertEquals(1, meterRegistry.get("orchestrator.keycloak.hedges").tag("outcome", "over_budget").counter().count());
+    }
+
+    @Test
+    @DisplayName("Test the first error is reported when the call and its hedge both fail")
+    void bothFail() {
+        KeycloakLoadBalancingFilter filter = filter(properties(0.1), true);
+        AtomicBoolean fail = new AtomicBoolean();
+        ExchangeFunction exchange = request -> fail.get()
+                ? respond(request, Mono.delay(Duration.ofMillis(20)).then(Mono.error(new IOException("connection reset"))))
+                : respond(request, Mono.empty());
+        warmUp(filter, exchange);
+
+        fail.set(true);
+        StepVerifier.create(filter.filter(get(USERINFO), exchange))
+                .expectErrorMatches(e -> e instanceof IOException && e.getMessage().equals("connection reset"))
+                .verify(Duration.ofSeconds(5));
+    }
+
+    private void warmUp(KeycloakLoadBalancingFilter filter, ExchangeFunction exchange) {
+        for (int i = 0; i < 64; i++) {
+            filter.filter(get(USERINFO), exchange).block();
+        }
+    }
+
+    private Mono<ClientResponse> respond(ClientRequest request, Mono<Void> before) {
+        sent.add(request.url());
+        return before.then(Mono.fromSupplier(() -> ClientResponse.create(HttpStatus.OK).build()));
+    }
+
+    private KeycloakLoadBalancingFilter filter(KeycloakBalancingProperties properties, boolean hedged) {
+        return new KeycloakLoadBalancingFilter(balancer(properties), "keycloak-userinfo", hedged, meterRegistry);
+    }
+
+    private KeycloakNodeBalancer balancer(KeycloakBalancingProperties properties) {
+        return new KeycloakNodeBalancer(BASE_URL + "/", properties, meterRegistry);
+    }
+
+    private static KeycloakBalancingProperties properties(double budget) {
+        KeycloakBalancingProperties properties = new KeycloakBalancingProperties();
+        properties.setNodes(List.of("http://node-a", "http://node-b/"));
+        properties.getHedging().setBudget(budget);
+        properties.getHedging().setWindow(64);
+        return properties;
+    }
+
+    private static ClientRequest get(String url) {
+        return ClientRequest.create(HttpMethod.GET, URI.create(url)).build();
+    }
+}
@@ -0,0 +1,86 @@
+package com.github.gluhov.orchestrator.keycloak;
+
+import com.github.gluhov.orchestrator.config.KeycloakTenancyProperties;
+import com.github.gluhov.orchestrator.exception.ApiException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class KeycloakRealmsTest {
+    private static final String BASE_URL = "http://localhost:8080/realms/";
+
+    private final KeycloakRealmFactory factory = mock(KeycloakRealmFactory.class);
+    private KeycloakRealms keycloakRealms;
+
+    @BeforeEach
+    void setUp() {
+        when(factory.getDefaultRealm()).thenReturn("orchestrator");
+        when(factory.issuer(anyString())).thenAnswer(invocation -> BASE_URL + invocation.getArgument(0));
+        when(factory.create(anyString())).thenAnswer(invocation -> KeycloakRealm.builder()
+                .name(invocation.getArgument(0))
+                .defaultRealm("orchestrator".equals(invocation.getArgument(0)))
+                .issuer(BASE_URL + invocation.getArgument(0))
+                .build());
+        KeycloakTenancyProperties properties = new KeycloakTenancyProperties();
+        properties.setRealms(List.of("tenant-a", " tenant-b "));
+        keycloakRealms = new KeycloakRealms(factory, properties);
+    }
+
+    @Test
+    @DisplayName("Test realm is built on first use and reused afterwards")
+    void buildsRealmOnce() {
+        verify(factory, never()).create(anyString());
+
+        KeycloakRealm realm = keycloakRealms.get("tenant-a");
+
+        assertEquals("tenant-a", realm.getName());
+        assertSame(realm, keycloakRealms.get("tenant-a"));
+        assertSame(realm, keycloakRealms.findByIssuer(BASE_URL + "tenant-a"));
+        verify(factory, times(1)).create("tenant-a");
+    }
+
+    @Test
+    @DisplayName("Test missing realm name falls back to the default realm")
+    void defaultsToConfiguredRealm() {
+        assertEquals("orchestrator", keycloakRealms.get(null).getName());
+        assertEquals("orchestrator", keycloakRealms.get(" ").getName());
+        assertEquals("tenant-b", keycloakRealms.get("tenant-b").getName());
+    }
+
+    @Test
+    @DisplayName("Test unknown realm is rejected without building it")
+    void rejectsUnknownRealm() {
+        ApiException e = assertThrows(ApiException.class, () -> keycloakRealms.get("master"));
+
+        assertEquals("O_UNKNOWN_REALM", e.getErrorCode());
+        assertNull(keycloakRealms.findByIssuer(BASE_URL + "master"));
+        verify(factory, never()).create("master");
+    }
+
+    @Test
+    @DisplayName("Test token is served in the realm that issued it")
+    void resolvesRealmOfToken() {
+        Jwt jwt = Jwt.withTokenValue("token")
+                .header("alg", "RS256")
+                .issuer(BASE_URL + "tenant-b")
+                .subject("subject-id")
+                .build();
+
+        assertEquals("tenant-b", keycloakRealms.forToken(jwt).getName());
+        assertEquals("orchestrator", keycloakRealms.forToken(null).getName());
+    }
+}
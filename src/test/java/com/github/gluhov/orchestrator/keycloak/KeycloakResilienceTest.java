@@ -0,0 +1,130 @@
+package com.github.gluhov.orchestrator.keycloak;
+
+import com.github.gluhov.orchestrator.config.KeycloakResilienceProperties;
+import com.github.gluhov.orchestrator.exception.AuthException;
+import com.github.gluhov.orchestrator.exception.ServiceUnavailableException;
+import com.github.gluhov.orchestrator.exception.UpstreamException;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class KeycloakResilienceTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private KeycloakResilience resilience(int maxConcurrentCalls) {
+        CircuitBreakerConfig circuitBreakerConfig = CircuitBreakerConfig.custom()
+                .slidingWindowSize(4)
+                .minimumNumberOfCalls(4)
+                .ignoreException(new KeycloakClientErrorPredicate())
+                .build();
+        BulkheadConfig bulkheadConfig = BulkheadConfig.custom()
+                .maxConcurrentCalls(maxConcurrentCalls)
+                .maxWaitDuration(Duration.ZERO)
+                .build();
+        KeycloakResilienceProperties properties = new KeycloakResilienceProperties();
+        properties.setTimeout(Duration.ofMillis(200));
+        return new KeycloakResilience(CircuitBreakerRegistry.of(circuitBreakerConfig), BulkheadRegistry.of(bulkheadConfig),
+                meterRegistry, ObservationRegistry.NOOP, properties);
+    }
+
+    private static void assertRejected(Throwable error, String errorCode) {
+        assertTrue(error instanceof ServiceUnavailableException);
+        assertEquals(errorCode, ((ServiceUnavailableException) error).getErrorCode());
+    }
+
+    @Test
+    @DisplayName("Test open circuit rejects calls without reaching keycloak")
+    void circuitOpensAfterFailures() {
+        KeycloakResilience resilience = resilience(10);
+        AtomicInteger calls = new AtomicInteger();
+
+        for (int i = 0; i < 4; i++) {
+            StepVerifier.create(resilience.execute(KeycloakResilience.USERINFO, () -> {
+                calls.incrementAndGet();
+                return Mono.error(new IOException("Connection refused"));
+            })).expectError(IOException.class).verify();
+        }
+        StepVerifier.create(resilience.execute(KeycloakResilience.USERINFO, () -> {
+            calls.incrementAndGet();
+            return Mono.just("info");
+        })).expectErrorSatisfies(error -> assertRejected(error, "O_KEYCLOAK_CIRCUIT_OPEN")).verify();
+
+        assertEquals(4, calls.get());
+        assertEquals(1, meterRegistry.get("orchestrator.keycloak.circuit.transitions").tag("to", "OPEN").counter().count());
+    }
+
+    @Test
+    @DisplayName("Test keycloak client errors do not open the circuit")
+    void clientErrorsAreIgnored() {
+        KeycloakResilience resilience = resilience(10);
+
+        for (int i = 0; i < 5; i++) {
+            StepVerifier.create(resilience.execute(KeycloakResilience.AUTHENTICATE,
+                            () -> Mono.error(new AuthException("Error from Keycloak", "O_AUTHENTICATE_ERROR"))))
+                    .expectError(AuthException.class)
+                    .verify();
+        }
+        StepVerifier.create(resilience.execute(KeycloakResilience.AUTHENTICATE, () -> Mono.just("token")))
+                .expectNext("token")
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Test keycloak server errors open the circuit and lower the concurrency limit")
+    void upstreamFailuresAreRecorded() {
+        KeycloakResilience resilience = resilience(10);
+
+        for (int i = 0; i < 4; i++) {
+            StepVerifier.create(resilience.execute(KeycloakResilience.AUTHENTICATE,
+                            () -> Mono.error(new UpstreamException("Error from Keycloak", "O_AUTHENTICATE_ERROR"))))
+                    .expectError(UpstreamException.class)
+                    .verify();
+        }
+        StepVerifier.create(resilience.execute(KeycloakResilience.AUTHENTICATE, () -> Mono.just("token")))
+                .expectErrorSatisfies(error -> assertRejected(error, "O_KEYCLOAK_CIRCUIT_OPEN"))
+                .verify();
+
+        assertTrue(meterRegistry.get("orchestrator.keycloak.concurrency.limit")
+                .tag("operation", KeycloakResilience.AUTHENTICATE).gauge().value() < 20);
+    }
+
+    @Test
+    @DisplayName("Test full bulkhead rejects immediately")
+    void bulkheadRejects() {
+        KeycloakResilience resilience = resilience(1);
+        Sinks.One<String> first = Sinks.one();
+
+        StepVerifier.create(resilience.execute(KeycloakResilience.REGISTER, first::asMono))
+                .then(() -> StepVerifier.create(resilience.execute(KeycloakResilience.REGISTER, () -> Mono.just("second")))
+                        .expectErrorSatisfies(error -> assertRejected(error, "O_KEYCLOAK_BULKHEAD_FULL"))
+                        .verify())
+                .then(() -> first.tryEmitValue("first"))
+                .expectNext("first")
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Test slow keycloak call times out")
+    void timesOut() {
+        KeycloakResilience resilience = resilience(10);
+
+        StepVerifier.create(resilience.execute(KeycloakResilience.REFRESH_TOKEN, Mono::never))
+                .expectErrorSatisfies(error -> assertRejected(error, "O_KEYCLOAK_TIMEOUT"))
+                .verify(Duration.ofSeconds(5));
+    }
+}
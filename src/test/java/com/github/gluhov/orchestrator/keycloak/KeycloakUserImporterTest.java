@@ -0,0 +1,92 @@
+package com.github.gluhov.orchestrator.keycloak;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.gluhov.orchestrator.config.KeycloakBlockingProperties;
+import com.github.gluhov.orchestrator.exception.ApiException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.tracing.Tracer;
+import jakarta.ws.rs.core.Response;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.keycloak.admin.client.resource.RealmResource;
+import org.keycloak.representations.idm.PartialImportRepresentation;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.mockito.ArgumentCaptor;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class KeycloakUserImporterTest {
+    private final RealmResource realmResource = mock(RealmResource.class);
+    private final KeycloakUserImporter importer = new KeycloakUserImporter(new ObjectMapper(),
+            new KeycloakBlockingExecutor(new KeycloakBlockingProperties(), new SimpleMeterRegistry(), Tracer.NOOP));
+
+    private Response response(Response.Status status, String body) {
+        Response response = mock(Response.class);
+        when(response.getStatusInfo()).thenReturn(status);
+        when(response.hasEntity()).thenReturn(true);
+        when(response.readEntity(String.class)).thenReturn(body);
+        return response;
+    }
+
+    @Test
+    @DisplayName("Test import submits the users with the policy and returns the summary")
+    void importUsersSuccess() {
+        Response response = response(Response.Status.OK,
+                "{\"overwritten\":0,\"added\":2,\"skipped\":1,\"results\":[{\"action\":\"ADDED\",\"resourceType\":\"USER\"}]}");
+        when(realmResource.partialImport(any())).thenReturn(response);
+
+        StepVerifier.create(importer.importUsers(() -> realmResource, List.of(new UserRepresentation(), new UserRepresentation(), new UserRepresentation()),
+                        PartialImportRepresentation.Policy.SKIP))
+                .expectNext(new KeycloakUserImporter.ImportSummary(2, 1, 0))
+                .verifyComplete();
+
+        ArgumentCaptor<PartialImportRepresentation> partialImport = ArgumentCaptor.forClass(PartialImportRepresentation.class);
+        verify(realmResource).partialImport(partialImport.capture());
+        assertEquals(3, partialImport.getValue().getUsers().size());
+        assertEquals("SKIP", partialImport.getValue().getIfResourceExists());
+        verify(response).close();
+    }
+
+    @Test
+    @DisplayName("Test rejected import fails with the Keycloak error")
+    void importUsersRejected() {
+        Response response = response(Response.Status.CONFLICT, "{\"errorMessage\":\"User exists with same username\"}");
+        when(realmResource.partialImport(any())).thenReturn(response);
+
+        StepVerifier.create(importer.importUsers(() -> realmResource, List.of(new UserRepresentation()), PartialImportRepresentation.Policy.FAIL))
+                .expectErrorSatisfies(error -> {
+                    assertTrue(error instanceof ApiException);
+                    assertEquals("O_IMPORT_USERS_ERROR", ((ApiException) error).getErrorCode());
+                    assertTrue(error.getMessage().contains("User exists with same username"));
+                })
+                .verify();
+    }
+
+    @Test
+    @DisplayName("Test the admin client is resolved on the executor, not on the subscribing thread")
+    void resolvesRealmResourceOffCaller() {
+        Response response = response(Response.Status.OK, "{\"overwritten\":0,\"added\":1,\"skipped\":0}");
+        when(realmResource.partialImport(any())).thenReturn(response);
+        Thread caller = Thread.currentThread();
+        AtomicReference<Thread> resolvedOn = new AtomicReference<>();
+
+        StepVerifier.create(importer.importUsers(() -> {
+                    resolvedOn.set(Thread.currentThread());
+                    return realmResource;
+                }, List.of(new UserRepresentation()), PartialImportRepresentation.Policy.SKIP))
+                .expectNext(new KeycloakUserImporter.ImportSummary(1, 0, 0))
+                .verifyComplete();
+
+        assertNotSame(caller, resolvedOn.get());
+    }
+}
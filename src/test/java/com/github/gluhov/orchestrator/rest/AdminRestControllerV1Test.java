@@ -0,0 +1,98 @@
+package com.github.gluhov.orchestrator.rest;
+
+import com.github.gluhov.orchestrator.dto.AuthRequestDto;
+import com.github.gluhov.orchestrator.dto.BulkRegistrationResultDto;
+import com.github.gluhov.orchestrator.dto.UserDto;
+import com.github.gluhov.orchestrator.dto.UserExportDto;
+import com.github.gluhov.orchestrator.dto.UserImportResultDto;
+import com.github.gluhov.orchestrator.keycloak.KeycloakRealm;
+import com.github.gluhov.orchestrator.keycloak.KeycloakRealms;
+import com.github.gluhov.orchestrator.service.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.keycloak.representations.idm.PartialImportRepresentation;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(SpringExtension.class)
+public class AdminRestControllerV1Test {
+    @InjectMocks
+    private AdminRestControllerV1 adminRestControllerV1;
+    @Mock
+    private UserService userService;
+    @Mock
+    private KeycloakRealms keycloakRealms;
+    private final KeycloakRealm realm = KeycloakRealm.builder().name("orchestrator").defaultRealm(true).build();
+
+    @BeforeEach
+    public void setUp() {
+        when(keycloakRealms.forToken(any())).thenReturn(realm);
+    }
+
+    @Test
+    @DisplayName("Test bulk registration streams a result per user")
+    public void testRegisterAll() {
+        Flux<AuthRequestDto> requests = Flux.just(
+                AuthRequestDto.builder().email("a@example.com").password("password").build(),
+                AuthRequestDto.builder().email("b@example.com").password("password").build());
+
+        when(userService.registerAll(eq(realm), any())).thenReturn(Flux.just(
+                BulkRegistrationResultDto.builder().index(0).email("a@example.com").userId("1").build(),
+                BulkRegistrationResultDto.builder().index(1).email("b@example.com").errorCode("O_REGISTER_USER_ERROR").build()));
+
+        StepVerifier.create(adminRestControllerV1.registerAll(null, requests))
+                .assertNext(result -> assertEquals("1", result.getUserId()))
+                .assertNext(result -> assertEquals("O_REGISTER_USER_ERROR", result.getErrorCode()))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Test import streams a result per chunk")
+    public void testImportAll() {
+        Flux<AuthRequestDto> requests = Flux.just(AuthRequestDto.builder().email("a@example.com").password("password").build());
+
+        when(userService.importAll(eq(realm), any(), eq(PartialImportRepresentation.Policy.OVERWRITE))).thenReturn(Flux.just(
+                UserImportResultDto.builder().chunk(0).firstIndex(0).size(1).overwritten(1).build()));
+
+        StepVerifier.create(adminRestControllerV1.importAll(null, requests, PartialImportRepresentation.Policy.OVERWRITE))
+                .assertNext(result -> assertEquals(1, result.getOverwritten()))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Test export streams users from the cursor")
+    public void testExportAll() {
+        when(userService.exportAll(realm, 500)).thenReturn(Flux.just(
+                UserExportDto.builder().cursor(501).id("1").username("john").build()));
+
+        StepVerifier.create(adminRestControllerV1.exportAll(null, 500))
+                .assertNext(user -> assertEquals(501, user.getCursor()))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Test user lookup answers 404 for an unknown user")
+    public void testGetUser() {
+        when(userService.getUserById(realm, "1")).thenReturn(Mono.just(UserDto.builder().id("1").username("john").build()));
+        when(userService.getUserById(realm, "2")).thenReturn(Mono.empty());
+
+        StepVerifier.create(adminRestControllerV1.getUser(null, "1"))
+                .assertNext(response -> assertEquals("john", response.getBody().getUsername()))
+                .verifyComplete();
+        StepVerifier.create(adminRestControllerV1.getUser(null, "2"))
+                .assertNext(response -> assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode()))
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,201 @@
+package com.github.gluhov.orchestrator.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.gluhov.orchestrator.config.AdmissionControlProperties;
+import com.github.gluhov.orchestrator.errorhandling.AppErrorAttributes;
+import com.github.gluhov.orchestrator.util.DeliberateDelay;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AdmissionControlWebFilterTest {
+    private static final long MILLIS = Duration.ofMillis(1).toNanos();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AdmissionControlProperties properties = new AdmissionControlProperties();
+    private final AtomicLong now = new AtomicLong(1_000_000 * MILLIS);
+    private final AtomicInteger handled = new AtomicInteger();
+    private final AdmissionControlWebFilter filter = new AdmissionControlWebFilter(properties,
+            new AppErrorAttributes(meterRegistry, new ObjectMapper()), meterRegistry, now::get, () -> 0.5);
+
+    private MockServerWebExchange exchange(MockServerHttpRequest.BaseBuilder<?> request) {
+        return MockServerWebExchange.from(request.build());
+    }
+
+    private MockServerWebExchange login() {
+        return exchange(MockServerHttpRequest.post(AuthRestControllerV1.REST_URL + "/login"));
+    }
+
+    private MockServerWebExchange register() {
+        return exchange(MockServerHttpRequest.post(AuthRestControllerV1.REST_URL + "/register"));
+    }
+
+    private MockServerWebExchange refresh() {
+        return exchange(MockServerHttpRequest.post(AuthRestControllerV1.REST_URL + "/refresh-token"));
+    }
+
+    /**
+     * Passes the request through a handler that takes this long.
+     */
+    private MockServerWebExchange send(MockServerWebExchange exchange, long millis) {
+        return send(exchange, millis, false);
+    }
+
+    /**
+     * Passes the request through a handler that takes this long, on purpose when {@code deliberate}.
+     */
+    private MockServerWebExchange send(MockServerWebExchange exchange, long millis, boolean deliberate) {
+        return send(exchange, millis, deliberate, null);
+    }
+
+    /**
+     * Passes the request through a handler that takes this long and answers with this status.
+     */
+    private MockServerWebExchange send(MockServerWebExchange exchange, long millis, HttpStatus status) {
+        return send(exchange, millis, false, status);
+    }
+
+    private MockServerWebExchange send(MockServerWebExchange exchange, long millis, boolean deliberate, HttpStatus status) {
+        Mono<Void> handler = Mono.fromRunnable(() -> {
+            handled.incrementAndGet();
+            now.addAndGet(millis * MILLIS);
+            if (status != null) {
+                exchange.getResponse().setStatusCode(status);
+            }
+        });
+        WebFilterChain chain = e -> deliberate ? DeliberateDelay.mark(handler) : handler;
+        StepVerifier.create(filter.filter(exchange, chain)).verifyComplete();
+        return exchange;
+    }
+
+    private double count(String priority, String outcome) {
+        return meterRegistry.get("orchestrator.admission").tag("priority", priority).tag("outcome", outcome)
+                .counter().count();
+    }
+
+    @Test
+    @DisplayName("Test requests are classified by endpoint")
+    void classifiesRequests() {
+        assertEquals(AdmissionControlWebFilter.Endpoint.LOGIN, AdmissionControlWebFilter.endpoint(login().getRequest()));
+        assertEquals(AdmissionControlWebFilter.Endpoint.REGISTER, AdmissionControlWebFilter.endpoint(register().getRequest()));
+        assertEquals(AdmissionControlWebFilter.Endpoint.REFRESH_TOKEN, AdmissionControlWebFilter.endpoint(refresh().getRequest()));
+        assertEquals(AdmissionControlWebFilter.Endpoint.PROFILE, AdmissionControlWebFilter.endpoint(
+                MockServerHttpRequest.get(UserRestControllerV1.REST_URL).build()));
+        assertEquals(AdmissionControlWebFilter.Priority.LOW, AdmissionControlWebFilter.Endpoint.REGISTER.priority());
+        assertEquals(AdmissionControlWebFilter.Priority.HIGH, AdmissionControlWebFilter.Endpoint.PROFILE.priority());
+        assertNull(AdmissionControlWebFilter.endpoint(MockServerHttpRequest.get("/api/v1/admin/users").build()));
+        assertNull(AdmissionControlWebFilter.endpoint(MockServerHttpRequest.get(AuthRestControllerV1.REST_URL + "/login").build()));
+    }
+
+    @Test
+    @DisplayName("Test logins are shed with a 503 and Retry-After while token refreshes are still admitted")
+    void shedsLowPriorityFirst() {
+        for (int i = 0; i < 20; i++) {
+            send(refresh(), 20);
+        }
+        for (int i = 0; i < 20; i++) {
+            send(refresh(), 1520);
+        }
+        int before = handled.get();
+
+        MockServerWebExchange rejected = send(login(), 100);
+        assertEquals(before, handled.get());
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, rejected.getResponse().getStatusCode());
+        assertEquals("2", rejected.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        StepVerifier.create(rejected.getResponse().getBodyAsString())
+                .assertNext(body -> assertTrue(body.contains("O_OVERLOADED")))
+                .verifyComplete();
+
+        MockServerWebExchange admitted = send(refresh(), 100);
+        assertEquals(before + 1, handled.get());
+        assertNull(admitted.getResponse().getStatusCode());
+        assertEquals(1, count("low", "rejected"));
+        assertEquals(41, count("high", "admitted"));
+    }
+
+    @Test
+    @DisplayName("Test requests are shed with a growing chance between the target delay and twice that")
+    void shedsGradually() {
+        properties.getLow().setTargetDelay(Duration.ofMillis(400));
+        for (int i = 0; i < 20; i++) {
+            send(login(), 100);
+        }
+        for (int i = 0; i < 50; i++) {
+            send(login(), 700);
+        }
+        // 600 ms of queueing is half way between 400 and 800, a random draw of 0.5 is let through
+        send(login(), 700);
+        assertEquals(0, count("low", "rejected"));
+
+        // queueing of token refreshes counts against logins as well
+        for (int i = 0; i < 20; i++) {
+            send(refresh(), 20);
+        }
+        for (int i = 0; i < 50; i++) {
+            send(refresh(), 720);
+        }
+        send(login(), 700);
+        assertEquals(1, count("low", "rejected"));
+    }
+
+    @Test
+    @DisplayName("Test logins held back by the login throttle are not taken for queueing")
+    void ignoresDeliberateDelays() {
+        for (int i = 0; i < 20; i++) {
+            send(login(), 20);
+        }
+        for (int i = 0; i < 100; i++) {
+            send(login(), 4000, true);
+        }
+
+        send(login(), 20);
+        assertEquals(0, count("low", "rejected"));
+        assertEquals(0, meterRegistry.get("orchestrator.admission.queueing.delay").tag("priority", "low").gauge().value());
+    }
+
+    @Test
+    @DisplayName("Test fast failures and slow registrations are not taken for queueing of logins")
+    void ignoresFailuresAndSeparatesEndpoints() {
+        for (int i = 0; i < 30; i++) {
+            send(login(), 1, HttpStatus.BAD_REQUEST);
+            send(login(), 2, HttpStatus.UNAUTHORIZED);
+            send(login(), 400);
+            send(register(), 1500, HttpStatus.CREATED);
+        }
+
+        send(login(), 400);
+        send(register(), 1500);
+        assertEquals(0, count("low", "rejected"));
+        assertEquals(122, handled.get());
+        assertEquals(0, meterRegistry.get("orchestrator.admission.queueing.delay").tag("priority", "low").gauge().value());
+    }
+
+    @Test
+    @DisplayName("Test nothing is shed when admission control is off")
+    void disabled() {
+        properties.setEnabled(false);
+        for (int i = 0; i < 20; i++) {
+            send(refresh(), 20);
+        }
+        for (int i = 0; i < 20; i++) {
+            send(refresh(), 5000);
+        }
+        send(login(), 100);
+        assertEquals(41, handled.get());
+    }
+}
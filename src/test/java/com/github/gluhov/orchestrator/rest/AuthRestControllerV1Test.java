@@ -3,21 +3,32 @@ package com.github.gluhov.orchestrator.rest;
 import com.github.gluhov.orchestrator.dto.AuthRequestDto;
 import com.github.gluhov.orchestrator.dto.AuthResponseDto;
 import com.github.gluhov.orchestrator.dto.RefreshTokenRequestDto;
+import com.github.gluhov.orchestrator.exception.ServiceUnavailableException;
+import com.github.gluhov.orchestrator.keycloak.KeycloakRealm;
+import com.github.gluhov.orchestrator.keycloak.KeycloakRealms;
 import com.github.gluhov.orchestrator.security.SecurityService;
 import com.github.gluhov.orchestrator.service.UserService;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.net.InetSocketAddress;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(SpringExtension.class)
@@ -28,6 +39,14 @@ public class AuthRestControllerV1Test {
     private SecurityService securityService;
     @Mock
     private UserService userService;
+    @Mock
+    private KeycloakRealms keycloakRealms;
+    private final KeycloakRealm realm = KeycloakRealm.builder().name("orchestrator").defaultRealm(true).build();
+
+    @BeforeEach
+    public void setUp() {
+        when(keycloakRealms.get(any())).thenReturn(realm);
+    }
 
     @Test
     @DisplayName("Test login with valid credentials")
@@ -43,9 +62,12 @@ public class AuthRestControllerV1Test {
                 .tokenType("bearer")
                 .build();
 
-        when(securityService.authenticate(any(AuthRequestDto.class))).thenReturn(Mono.just(authResponse));
+        when(securityService.authenticate(eq(realm), any(AuthRequestDto.class), eq("10.0.0.1"))).thenReturn(Mono.just(authResponse));
 
-        Mono<ResponseEntity<AuthResponseDto>> result = (Mono<ResponseEntity<AuthResponseDto>>) authRestControllerV1.login(authRequest);
+        MockServerHttpRequest request = MockServerHttpRequest.post(AuthRestControllerV1.REST_URL + "/login")
+                .remoteAddress(new InetSocketAddress("10.0.0.1", 40000))
+                .build();
+        Mono<ResponseEntity<AuthResponseDto>> result = (Mono<ResponseEntity<AuthResponseDto>>) authRestControllerV1.login(authRequest, request, null);
         StepVerifier.create(result)
                         .assertNext(r -> {
                             assertNotNull(r);
@@ -63,13 +85,61 @@ public class AuthRestControllerV1Test {
                 .password("password")
                 .build();
 
-        when(userService.register(any(AuthRequestDto.class))).thenReturn(Mono.just("12345"));
+        when(userService.register(eq(realm), any(AuthRequestDto.class))).thenReturn(Mono.just("12345"));
+        when(securityService.authenticate(eq(realm), argThat(login -> "user@test.com".equals(login.getUsername())
+                && "password".equals(login.getPassword()))))
+                .thenReturn(Mono.just(AuthResponseDto.builder().accessToken("accessToken").build()));
 
-        Mono<ResponseEntity<Void>> result = authRestControllerV1.register(registerRequest);
+        Mono<ResponseEntity<AuthResponseDto>> result = authRestControllerV1.register(registerRequest, null);
         StepVerifier.create(result)
                 .assertNext(r -> {
                     assertNotNull(r);
+                    assertEquals(HttpStatus.CREATED, r.getStatusCode());
+                    assertEquals("/users/12345", r.getHeaders().getLocation().toString());
+                    assertEquals("accessToken", r.getBody().getAccessToken());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Test register logs in with the email also when the request has a username")
+    public void testRegisterWithUsername() {
+        AuthRequestDto registerRequest = AuthRequestDto.builder()
+                .username("johndoe")
+                .email("user@test.com")
+                .password("password")
+                .build();
+
+        when(userService.register(eq(realm), any(AuthRequestDto.class))).thenReturn(Mono.just("12345"));
+        when(securityService.authenticate(eq(realm), argThat(login -> "user@test.com".equals(login.getUsername())
+                && "password".equals(login.getPassword()))))
+                .thenReturn(Mono.just(AuthResponseDto.builder().accessToken("accessToken").build()));
+
+        StepVerifier.create(authRestControllerV1.register(registerRequest, null))
+                .assertNext(r -> {
+                    assertEquals(HttpStatus.CREATED, r.getStatusCode());
+                    assertEquals("accessToken", r.getBody().getAccessToken());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Test register still answers 201 when the login after it fails")
+    public void testRegisterLoginFails() {
+        AuthRequestDto registerRequest = AuthRequestDto.builder()
+                .email("user@test.com")
+                .password("password")
+                .build();
+
+        when(userService.register(eq(realm), any(AuthRequestDto.class))).thenReturn(Mono.just("12345"));
+        when(securityService.authenticate(eq(realm), any(AuthRequestDto.class)))
+                .thenReturn(Mono.error(new ServiceUnavailableException("Keycloak circuit breaker is open", "O_KEYCLOAK_CIRCUIT_OPEN")));
+
+        StepVerifier.create(authRestControllerV1.register(registerRequest, null))
+                .assertNext(r -> {
+                    assertEquals(HttpStatus.CREATED, r.getStatusCode());
                     assertEquals("/users/12345", r.getHeaders().getLocation().toString());
+                    assertNull(r.getBody());
                 })
                 .verifyComplete();
     }
@@ -87,9 +157,9 @@ public class AuthRestControllerV1Test {
                 .tokenType("bearer")
                 .build();
 
-        when(securityService.refreshToken(any(RefreshTokenRequestDto.class))).thenReturn(Mono.just(authResponse));
+        when(securityService.refreshToken(eq(realm), any(RefreshTokenRequestDto.class))).thenReturn(Mono.just(authResponse));
 
-        Mono<ResponseEntity<AuthResponseDto>> result = (Mono<ResponseEntity<AuthResponseDto>>) authRestControllerV1.refreshToken(refreshTokenRequest);
+        Mono<ResponseEntity<AuthResponseDto>> result = (Mono<ResponseEntity<AuthResponseDto>>) authRestControllerV1.refreshToken(refreshTokenRequest, null);
         StepVerifier.create(result)
                 .assertNext(r -> {
                     assertNotNull(r);
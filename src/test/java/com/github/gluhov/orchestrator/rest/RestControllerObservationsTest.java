@@ -0,0 +1,65 @@
+package com.github.gluhov.orchestrator.rest;
+
+import com.github.gluhov.orchestrator.config.InMemoryTracing;
+import com.github.gluhov.orchestrator.dto.UserInfoDto;
+import com.github.gluhov.orchestrator.service.UserService;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.nullable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RestControllerObservationsTest {
+    private final InMemoryTracing tracing = new InMemoryTracing();
+    private final AtomicReference<ClientRequest> sent = new AtomicReference<>();
+    private final WebClient webClient = WebClient.builder()
+            .exchangeFunction(request -> {
+                sent.set(request);
+                return Mono.just(ClientResponse.create(HttpStatus.OK).body("{}").build());
+            })
+            .observationRegistry(tracing.getObservationRegistry())
+            .build();
+
+    private UserRestControllerV1 observed(UserService userService) {
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(new UserRestControllerV1(userService));
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAspect(new RestControllerObservations(tracing.getObservationRegistry()));
+        return proxyFactory.getProxy();
+    }
+
+    @Test
+    @DisplayName("Test a handler is traced as the parent of the Keycloak calls it makes, which carry its trace")
+    void tracesHandlerAndPropagates() {
+        UserService userService = mock(UserService.class);
+        when(userService.getInfo(nullable(Jwt.class), anyString())).thenReturn(webClient.get()
+                .uri("http://keycloak/realms/orchestrator/protocol/openid-connect/userinfo")
+                .retrieve()
+                .bodyToMono(String.class)
+                .map(body -> UserInfoDto.builder().username("john.doe").build()));
+
+        StepVerifier.create(observed(userService).getInfo(null, "Bearer accessToken"))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        SpanData handler = tracing.getSpan("user-rest-controller-v1.get-info");
+        SpanData call = tracing.getSpan("http get");
+        assertEquals(handler.getSpanContext().getSpanId(), call.getParentSpanId());
+        assertEquals(handler.getTraceId(), call.getTraceId());
+        assertEquals("00-" + call.getTraceId() + "-" + call.getSpanId() + "-01",
+                sent.get().headers().getFirst("traceparent"));
+    }
+}
@@ -8,6 +8,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
@@ -15,6 +16,7 @@ import reactor.test.StepVerifier;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.nullable;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(SpringExtension.class)
@@ -34,9 +36,9 @@ public class UserRestControllerV1Test {
                 .username("john.doe")
                 .build();
 
-        when(userService.getInfo(anyString())).thenReturn(Mono.just(userInfo));
+        when(userService.getInfo(nullable(Jwt.class), anyString())).thenReturn(Mono.just(userInfo));
 
-        Mono<ResponseEntity<UserInfoDto>> result = (Mono<ResponseEntity<UserInfoDto>>) userRestControllerV1.getInfo("Bearer accessToken");
+        Mono<ResponseEntity<UserInfoDto>> result = (Mono<ResponseEntity<UserInfoDto>>) userRestControllerV1.getInfo(null, "Bearer accessToken");
         StepVerifier.create(result)
                 .assertNext(r -> {
                     assertNotNull(r);
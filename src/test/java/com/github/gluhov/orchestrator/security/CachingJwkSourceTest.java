@@ -0,0 +1,121 @@
+package com.github.gluhov.orchestrator.security;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class CachingJwkSourceTest {
+    private final AtomicInteger fetches = new AtomicInteger();
+    private final AtomicBoolean keycloakDown = new AtomicBoolean();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private RSAKey key;
+    private CachingJwkSource jwkSource;
+
+    @BeforeEach
+    void setUp() throws JOSEException {
+        key = new RSAKeyGenerator(2048).keyID("key-1").generate();
+        WebClient webClient = WebClient.builder()
+                .exchangeFunction(request -> {
+                    fetches.incrementAndGet();
+                    if (keycloakDown.get()) {
+                        return Mono.just(ClientResponse.create(HttpStatus.SERVICE_UNAVAILABLE).build());
+                    }
+                    return Mono.just(ClientResponse.create(HttpStatus.OK)
+                            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                            .body(new JWKSet(key.toPublicJWK()).toString())
+                            .build());
+                })
+                .build();
+        jwkSource = new CachingJwkSource(webClient, "test-realm", "http://localhost:8088/realms/test-realm/protocol/openid-connect/certs",
+                Duration.ofMinutes(5), Duration.ofMinutes(1), Duration.ofSeconds(5), meterRegistry);
+    }
+
+    private SignedJWT jwt(String kid) {
+        return new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(kid).build(), new JWTClaimsSet.Builder().build());
+    }
+
+    @Test
+    @DisplayName("Test keys are pre-fetched on start and served from memory")
+    void prewarmAndHit() {
+        jwkSource.start();
+
+        StepVerifier.create(jwkSource.apply(jwt("key-1")).then(jwkSource.apply(jwt("key-1")).next()))
+                .assertNext(jwk -> assertEquals("key-1", jwk.getKeyID()))
+                .verifyComplete();
+
+        jwkSource.stop();
+        assertEquals(1, fetches.get());
+        assertEquals(2, meterRegistry.get("orchestrator.jwks.lookups").tag("result", "hit").counter().count());
+    }
+
+    @Test
+    @DisplayName("Test unknown kid refetches keys at most once per interval")
+    void kidMissIsRateLimited() {
+        StepVerifier.create(jwkSource.refresh()).expectNextCount(1).verifyComplete();
+
+        StepVerifier.create(jwkSource.apply(jwt("unknown"))).verifyComplete();
+        StepVerifier.create(jwkSource.apply(jwt("unknown"))).verifyComplete();
+
+        assertEquals(2, fetches.get());
+        assertEquals(2, meterRegistry.get("orchestrator.jwks.lookups").tag("result", "miss").counter().count());
+    }
+
+    @Test
+    @DisplayName("Test last known keys are served while keycloak is unavailable")
+    void staleWhileKeycloakDown() {
+        StepVerifier.create(jwkSource.refresh()).expectNextCount(1).verifyComplete();
+        keycloakDown.set(true);
+
+        StepVerifier.create(jwkSource.refresh())
+                .assertNext(jwkSet -> assertEquals("key-1", jwkSet.getKeys().get(0).getKeyID()))
+                .verifyComplete();
+        StepVerifier.create(jwkSource.apply(jwt("key-1")))
+                .expectNextCount(1)
+                .verifyComplete();
+        assertEquals(1, meterRegistry.get("orchestrator.jwks.refreshes").tag("outcome", "failure").counter().count());
+    }
+
+    @Test
+    @DisplayName("Test first fetch error is reported when no keys were cached")
+    void errorWithoutCachedKeys() {
+        keycloakDown.set(true);
+
+        StepVerifier.create(jwkSource.apply(jwt("key-1")))
+                .expectError()
+                .verify();
+    }
+
+    @Test
+    @DisplayName("Test unknown kids are rate limited also while no keys are cached")
+    void kidMissWithoutCachedKeysIsRateLimited() {
+        keycloakDown.set(true);
+
+        StepVerifier.create(jwkSource.apply(jwt("forged-1"))).expectError().verify();
+        StepVerifier.create(jwkSource.apply(jwt("forged-2"))).verifyComplete();
+        StepVerifier.create(jwkSource.apply(jwt("forged-3"))).verifyComplete();
+
+        assertEquals(1, fetches.get());
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.gluhov.orchestrator.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class CachingReactiveJwtDecoderTest {
+    private final AtomicInteger verifications = new AtomicInteger();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ReactiveJwtDecoder delegate(Instant expiresAt) {
+        return token -> Mono.fromCallable(() -> {
+            verifications.incrementAndGet();
+            if (token.startsWith("bad")) {
+                throw new BadJwtException("Invalid signature");
+            }
+            return Jwt.withTokenValue(token)
+                    .header("alg", "RS256")
+                    .subject("subject-id")
+                    .expiresAt(expiresAt)
+                    .build();
+        });
+    }
+
+    @Test
+    @DisplayName("Test verified token is served from cache")
+    void cachesVerifiedToken() {
+        CachingReactiveJwtDecoder decoder = new CachingReactiveJwtDecoder(
+                delegate(Instant.now().plusSeconds(300)), 100, Duration.ofMinutes(5), meterRegistry);
+
+        StepVerifier.create(decoder.decode("token").then(decoder.decode("token")))
+                .assertNext(jwt -> assertEquals("subject-id", jwt.getSubject()))
+                .verifyComplete();
+
+        assertEquals(1, verifications.get());
+        assertEquals(1, meterRegistry.get("orchestrator.jwt.cache").tag("result", "hit").counter().count());
+    }
+
+    @Test
+    @DisplayName("Test rejected token is verified every time")
+    void doesNotCacheFailures() {
+        CachingReactiveJwtDecoder decoder = new CachingReactiveJwtDecoder(
+                delegate(Instant.now().plusSeconds(300)), 100, Duration.ofMinutes(5), meterRegistry);
+
+        StepVerifier.create(decoder.decode("bad-token")).expectError(BadJwtException.class).verify();
+        StepVerifier.create(decoder.decode("bad-token")).expectError(BadJwtException.class).verify();
+
+        assertEquals(2, verifications.get());
+    }
+
+    @Test
+    @DisplayName("Test expired token is not cached")
+    void doesNotCacheExpiredToken() {
+        CachingReactiveJwtDecoder decoder = new CachingReactiveJwtDecoder(
+                delegate(Instant.now().minusSeconds(1)), 100, Duration.ofMinutes(5), meterRegistry);
+
+        StepVerifier.create(decoder.decode("token").then(decoder.decode("token")))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        assertEquals(2, verifications.get());
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.gluhov.orchestrator.security;
+
+import com.github.gluhov.orchestrator.keycloak.KeycloakRealm;
+import com.github.gluhov.orchestrator.keycloak.KeycloakRealms;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.PlainJWT;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class IssuerRoutingJwtDecoderTest {
+    private static final String ISSUER = "http://localhost:8080/realms/tenant-a";
+
+    private final KeycloakRealms keycloakRealms = mock(KeycloakRealms.class);
+    private final IssuerRoutingJwtDecoder decoder = new IssuerRoutingJwtDecoder(keycloakRealms);
+
+    private static String token(String issuer) {
+        return new PlainJWT(new JWTClaimsSet.Builder().issuer(issuer).subject("subject-id").build()).serialize();
+    }
+
+    @Test
+    @DisplayName("Test token is verified by the decoder of its issuer's realm")
+    void routesByIssuer() {
+        KeycloakRealm realm = KeycloakRealm.builder()
+                .name("tenant-a")
+                .issuer(ISSUER)
+                .jwtDecoder(token -> Mono.just(Jwt.withTokenValue(token)
+                        .header("alg", "RS256")
+                        .issuer(ISSUER)
+                        .subject("subject-id")
+                        .build()))
+                .build();
+        when(keycloakRealms.findByIssuer(ISSUER)).thenReturn(realm);
+
+        StepVerifier.create(decoder.decode(token(ISSUER)))
+                .assertNext(jwt -> assertEquals(ISSUER, jwt.getIssuer().toString()))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Test token of an issuer that is not served is rejected")
+    void rejectsUntrustedIssuer() {
+        when(keycloakRealms.findByIssuer(anyString())).thenReturn(null);
+
+        StepVerifier.create(decoder.decode(token("http://evil.example.com/realms/tenant-a")))
+                .expectError(BadJwtException.class)
+                .verify();
+    }
+
+    @Test
+    @DisplayName("Test malformed token is rejected")
+    void rejectsMalformedToken() {
+        StepVerifier.create(decoder.decode("not-a-token"))
+                .expectError(BadJwtException.class)
+                .verify();
+    }
+}
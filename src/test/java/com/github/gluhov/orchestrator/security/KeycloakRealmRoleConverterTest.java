@@ -0,0 +1,44 @@
+package com.github.gluhov.orchestrator.security;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class KeycloakRealmRoleConverterTest {
+    private final KeycloakRealmRoleConverter converter = new KeycloakRealmRoleConverter();
+
+    @Test
+    @DisplayName("Test realm roles become ROLE_ authorities next to the scopes")
+    void convertsRealmRoles() {
+        Jwt jwt = Jwt.withTokenValue("token")
+                .header("alg", "RS256")
+                .claim("scope", "openid profile")
+                .claim("realm_access", Map.of("roles", List.of("orchestrator-admin", "offline_access")))
+                .build();
+
+        Set<String> authorities = converter.convert(jwt).stream()
+                .map(GrantedAuthority::getAuthority)
+                .collect(Collectors.toSet());
+
+        assertEquals(Set.of("SCOPE_openid", "SCOPE_profile", "ROLE_orchestrator-admin", "ROLE_offline_access"), authorities);
+    }
+
+    @Test
+    @DisplayName("Test token without realm roles keeps only the scopes")
+    void withoutRealmAccess() {
+        Jwt jwt = Jwt.withTokenValue("token")
+                .header("alg", "RS256")
+                .claim("scope", "openid")
+                .build();
+
+        assertEquals(List.of("SCOPE_openid"), converter.convert(jwt).stream().map(GrantedAuthority::getAuthority).toList());
+    }
+}
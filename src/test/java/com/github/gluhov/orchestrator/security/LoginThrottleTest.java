@@ -0,0 +1,118 @@
+package com.github.gluhov.orchestrator.security;
+
+import com.github.gluhov.orchestrator.config.LoginThrottleProperties;
+import com.github.gluhov.orchestrator.exception.AuthException;
+import com.github.gluhov.orchestrator.exception.TooManyRequestsException;
+import com.github.gluhov.orchestrator.util.DeliberateDelay;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LoginThrottleTest {
+    private final LoginThrottleProperties properties = new LoginThrottleProperties();
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private LoginThrottle throttle() {
+        properties.setUsername(new LoginThrottleProperties.Limits(2, 4));
+        properties.setClientAddress(new LoginThrottleProperties.Limits(100, 100));
+        properties.setBaseDelay(Duration.ofSeconds(1));
+        properties.setMaxDelay(Duration.ofSeconds(10));
+        return new LoginThrottle(properties, new SimpleMeterRegistry());
+    }
+
+    private Mono<String> failedLogin() {
+        return Mono.defer(() -> {
+            calls.incrementAndGet();
+            return Mono.error(new AuthException("Invalid credentials", "O_AUTHENTICATE_ERROR"));
+        });
+    }
+
+    @Test
+    @DisplayName("Test failed attempts past the free ones are delayed and then rejected without calling Keycloak")
+    void delaysThenRejects() {
+        LoginThrottle throttle = throttle();
+        for (int i = 0; i < 2; i++) {
+            StepVerifier.create(throttle.throttle("John", "10.0.0.1", this::failedLogin))
+                    .verifyError(AuthException.class);
+        }
+        StepVerifier.withVirtualTime(() -> throttle.throttle("john", "10.0.0.1", this::failedLogin))
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(999))
+                .thenAwait(Duration.ofMillis(1))
+                .verifyError(AuthException.class);
+        StepVerifier.withVirtualTime(() -> throttle.throttle("john ", "10.0.0.1", this::failedLogin))
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(1999))
+                .thenAwait(Duration.ofMillis(1))
+                .verifyError(AuthException.class);
+        StepVerifier.create(throttle.throttle("john", "10.0.0.2", this::failedLogin))
+                .verifyError(TooManyRequestsException.class);
+
+        assertEquals(4, calls.get());
+        StepVerifier.create(throttle.throttle("jane", "10.0.0.1", () -> Mono.just("ok")))
+                .expectNext("ok")
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Test successful logins are not counted")
+    void successIsRefunded() {
+        LoginThrottle throttle = throttle();
+        for (int i = 0; i < 10; i++) {
+            StepVerifier.create(throttle.throttle("john", "10.0.0.1", () -> Mono.just("ok")))
+                    .expectNext("ok")
+                    .verifyComplete();
+        }
+    }
+
+    @Test
+    @DisplayName("Test the client address limit applies across usernames")
+    void limitsClientAddress() {
+        properties.setClientAddress(new LoginThrottleProperties.Limits(0, 3));
+        properties.setUsername(new LoginThrottleProperties.Limits(100, 100));
+        properties.setBaseDelay(Duration.ZERO);
+        LoginThrottle throttle = new LoginThrottle(properties, new SimpleMeterRegistry());
+        for (int i = 0; i < 3; i++) {
+            StepVerifier.create(throttle.throttle("user-" + i, "10.0.0.1", this::failedLogin))
+                    .verifyError(AuthException.class);
+        }
+        StepVerifier.create(throttle.throttle("user-3", "10.0.0.1", this::failedLogin))
+                .verifyError(TooManyRequestsException.class);
+    }
+
+    @Test
+    @DisplayName("Test delayed and rejected attempts are marked as deliberately delayed")
+    void marksDeliberateDelays() {
+        LoginThrottle throttle = throttle();
+        DeliberateDelay allowed = new DeliberateDelay();
+        DeliberateDelay delayed = new DeliberateDelay();
+        DeliberateDelay rejected = new DeliberateDelay();
+        for (int i = 0; i < 2; i++) {
+            StepVerifier.create(throttle.throttle("john", "10.0.0.1", this::failedLogin).contextWrite(allowed::addTo))
+                    .verifyError(AuthException.class);
+        }
+        StepVerifier.withVirtualTime(() -> throttle.throttle("john", "10.0.0.1", this::failedLogin).contextWrite(delayed::addTo))
+                .expectSubscription()
+                .thenAwait(Duration.ofSeconds(1))
+                .verifyError(AuthException.class);
+        StepVerifier.withVirtualTime(() -> throttle.throttle("john", "10.0.0.1", this::failedLogin))
+                .expectSubscription()
+                .thenAwait(Duration.ofSeconds(2))
+                .verifyError(AuthException.class);
+        StepVerifier.create(throttle.throttle("john", "10.0.0.1", this::failedLogin).contextWrite(rejected::addTo))
+                .verifyError(TooManyRequestsException.class);
+
+        assertFalse(allowed.isMarked());
+        assertTrue(delayed.isMarked());
+        assertTrue(rejected.isMarked());
+    }
+}
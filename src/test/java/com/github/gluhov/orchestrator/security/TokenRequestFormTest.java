@@ -0,0 +1,33 @@
+package com.github.gluhov.orchestrator.security;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TokenRequestFormTest {
+
+    @Test
+    @DisplayName("Test call parameters are encoded behind the constant ones")
+    void encodesParameters() {
+        TokenRequestForm form = new TokenRequestForm("client_id", "orchestrator", "client_secret", "s&cret=1",
+                "grant_type", "password", "scope", "openid profile");
+
+        byte[] body = form.with("username", "jöhn@example.com", "password", "p+ss word");
+
+        assertEquals("client_id=orchestrator&client_secret=s%26cret%3D1&grant_type=password&scope=openid+profile"
+                + "&username=j%C3%B6hn%40example.com&password=p%2Bss+word", new String(body, StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    @DisplayName("Test parameters without a value are left out")
+    void skipsNullValues() {
+        TokenRequestForm form = new TokenRequestForm("client_id", "orchestrator", "client_secret", null);
+
+        assertEquals("client_id=orchestrator", new String(form.with("username", null), StandardCharsets.US_ASCII));
+        assertEquals("client_id=orchestrator&refresh_token=abc",
+                new String(form.with("refresh_token", "abc"), StandardCharsets.US_ASCII));
+    }
+}
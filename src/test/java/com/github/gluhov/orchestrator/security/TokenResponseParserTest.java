@@ -0,0 +1,88 @@
+package com.github.gluhov.orchestrator.security;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class TokenResponseParserTest {
+    private static final String TOKEN_RESPONSE = "{\"access_token\":\"access.token.value\",\"expires_in\":300,"
+            + "\"refresh_expires_in\":1800,\"refresh_token\":\"refresh.token.value\",\"token_type\":\"Bearer\","
+            + "\"id_token\":\"id.token.value\",\"not-before-policy\":0,\"session_state\":\"a1b2c3d4\","
+            + "\"other\":{\"access_token\":\"nested\",\"list\":[1,{\"token_type\":\"nested\"}]},"
+            + "\"scope\":\"openid profile email\"}";
+
+    private final NettyDataBufferFactory bufferFactory = new NettyDataBufferFactory(Unpooled.buffer().alloc());
+    private final List<ByteBuf> allocated = new ArrayList<>();
+
+    private Flux<DataBuffer> body(String json, int chunkSize) {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        return Flux.range(0, (bytes.length + chunkSize - 1) / chunkSize)
+                .map(i -> {
+                    ByteBuf byteBuf = Unpooled.buffer(chunkSize);
+                    byteBuf.writeBytes(bytes, i * chunkSize, Math.min(chunkSize, bytes.length - i * chunkSize));
+                    allocated.add(byteBuf);
+                    return bufferFactory.wrap(byteBuf);
+                });
+    }
+
+    private void assertReleased() {
+        allocated.forEach(byteBuf -> assertEquals(0, byteBuf.refCnt()));
+    }
+
+    @Test
+    @DisplayName("Test fields are read from a response split at every byte")
+    void parsesSplitResponse() {
+        StepVerifier.create(TokenResponseParser.parse(body(TOKEN_RESPONSE, 1)))
+                .assertNext(response -> {
+                    assertEquals("access.token.value", response.getAccessToken());
+                    assertEquals(300, response.getExpiresIn());
+                    assertEquals("refresh.token.value", response.getRefreshToken());
+                    assertEquals("Bearer", response.getTokenType());
+                })
+                .verifyComplete();
+        assertReleased();
+    }
+
+    @Test
+    @DisplayName("Test missing and null fields stay unset")
+    void leavesMissingFieldsUnset() {
+        StepVerifier.create(TokenResponseParser.parse(body("{\"access_token\":\"token\",\"refresh_token\":null}", 8)))
+                .assertNext(response -> {
+                    assertEquals("token", response.getAccessToken());
+                    assertNull(response.getRefreshToken());
+                    assertEquals(0, response.getExpiresIn());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Test empty body gives no response")
+    void emptyBody() {
+        StepVerifier.create(TokenResponseParser.parse(Flux.empty())).verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Test truncated and malformed bodies are decoding errors")
+    void rejectsBrokenBody() {
+        StepVerifier.create(TokenResponseParser.parse(body(TOKEN_RESPONSE.substring(0, 40), 16)))
+                .expectError(DecodingException.class)
+                .verify();
+        StepVerifier.create(TokenResponseParser.parse(body("{\"access_token\":}", 64)))
+                .expectError(DecodingException.class)
+                .verify();
+        assertReleased();
+    }
+}
@@ -5,28 +5,58 @@ import com.github.gluhov.orchestrator.dto.AuthResponseDto;
 import com.github.gluhov.orchestrator.dto.RefreshTokenRequestDto;
 import com.github.gluhov.orchestrator.exception.ApiException;
 import com.github.gluhov.orchestrator.exception.AuthException;
+import com.github.gluhov.orchestrator.security.LoginThrottle;
 import com.github.gluhov.orchestrator.security.SecurityService;
+import com.github.gluhov.orchestrator.security.TokenRequestForm;
+import com.github.gluhov.orchestrator.util.RequestCoalescer;
+import com.github.gluhov.orchestrator.keycloak.KeycloakRealm;
+import com.github.gluhov.orchestrator.keycloak.KeycloakResilience;
+import com.github.gluhov.orchestrator.config.KeycloakResilienceProperties;
+import com.github.gluhov.orchestrator.config.LoginThrottleProperties;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
-import org.keycloak.representations.AccessTokenResponse;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.MockitoAnnotations;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.http.MediaType;
-import org.springframework.test.util.ReflectionTestUtils;
-import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class SecurityServiceTest {
+    private static final KeycloakRealm REALM = KeycloakRealm.builder()
+            .name("test-realm")
+            .defaultRealm(true)
+            .tokenUrl("http://localhost:8088/realms/test-realm/protocol/openid-connect/token")
+            .clientId("test-client-id")
+            .clientSecret("test-client-secret")
+            .passwordGrant(new TokenRequestForm("client_id", "test-client-id", "client_secret", "test-client-secret",
+                    "grant_type", "password", "scope", "openid profile"))
+            .refreshTokenGrant(new TokenRequestForm("client_id", "test-client-id", "client_secret", "test-client-secret",
+                    "grant_type", "refresh_token"))
+            .build();
+    private static final String TOKEN_RESPONSE = "{\"access_token\":\"token\",\"expires_in\":3600,\"refresh_expires_in\":1800,"
+            + "\"refresh_token\":\"refreshToken\",\"token_type\":\"Bearer\",\"not-before-policy\":0,"
+            + "\"session_state\":\"a1b2c3d4\",\"scope\":\"openid profile email\"}";
 
     @Mock
     private WebClient webClient;
@@ -43,15 +73,32 @@ class SecurityServiceTest {
     @Mock
     private WebClient.ResponseSpec responseSpec;
 
+    @Spy
+    private RequestCoalescer requestCoalescer = new RequestCoalescer(new SimpleMeterRegistry());
+
+    @Spy
+    private KeycloakResilience keycloakResilience = new KeycloakResilience(CircuitBreakerRegistry.ofDefaults(),
+            BulkheadRegistry.ofDefaults(), new SimpleMeterRegistry(), ObservationRegistry.NOOP, new KeycloakResilienceProperties());
+
+    @Spy
+    private LoginThrottle loginThrottle = new LoginThrottle(new LoginThrottleProperties(), new SimpleMeterRegistry());
+
     @InjectMocks
     private SecurityService securityService;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        ReflectionTestUtils.setField(securityService, "clientId", "test-client-id");
-        ReflectionTestUtils.setField(securityService, "clientSecret", "test-client-secret");
-        ReflectionTestUtils.setField(securityService, "keycloakIssuerUri", "http://localhost:8088/realms/test-realm/");
+    }
+
+    /**
+     * The token response split into small buffers, as it may arrive from the network.
+     */
+    private static Flux<DataBuffer> tokenResponse() {
+        byte[] json = TOKEN_RESPONSE.getBytes(StandardCharsets.UTF_8);
+        return Flux.range(0, (json.length + 6) / 7)
+                .map(i -> DefaultDataBufferFactory.sharedInstance.wrap(
+                        Arrays.copyOfRange(json, i * 7, Math.min(json.length, i * 7 + 7))));
     }
 
     @Test
@@ -61,21 +108,16 @@ class SecurityServiceTest {
                 .username("test@ya.ru")
                 .password("password")
                 .build();
-        AccessTokenResponse accessTokenResponse = new AccessTokenResponse();
-        accessTokenResponse.setToken("token");
-        accessTokenResponse.setExpiresIn(3600);
-        accessTokenResponse.setRefreshToken("refreshToken");
-        accessTokenResponse.setTokenType("Bearer");
 
         when(webClient.post()).thenReturn(requestBodyUriSpec);
-        when(requestBodyUriSpec.uri(anyString())).thenReturn(requestBodySpec);
+        when(requestBodyUriSpec.uri(REALM.getTokenUrl())).thenReturn(requestBodySpec);
         when(requestBodySpec.contentType(any())).thenReturn(requestBodySpec);
-        when(requestBodySpec.body(any(BodyInserters.FormInserter.class))).thenReturn(requestHeadersSpec);
+        when(requestBodySpec.bodyValue(any())).thenReturn(requestHeadersSpec);
         when(requestHeadersSpec.retrieve()).thenReturn(responseSpec);
         when(responseSpec.onStatus(any(), any())).thenReturn(responseSpec);
-        when(responseSpec.bodyToMono(AccessTokenResponse.class)).thenReturn(Mono.just(accessTokenResponse));
+        when(responseSpec.bodyToFlux(DataBuffer.class)).thenReturn(tokenResponse());
 
-        Mono<AuthResponseDto> result = securityService.authenticate(authRequestDto);
+        Mono<AuthResponseDto> result = securityService.authenticate(REALM, authRequestDto);
 
         StepVerifier.create(result)
                 .expectNextMatches(authResponseDto ->
@@ -84,6 +126,9 @@ class SecurityServiceTest {
                                 authResponseDto.getExpiresIn() == 3600
                 )
                 .verifyComplete();
+        verify(requestBodySpec).bodyValue(argThat(body -> new String((byte[]) body, StandardCharsets.US_ASCII).equals(
+                "client_id=test-client-id&client_secret=test-client-secret&grant_type=password&scope=openid+profile"
+                        + "&username=test%40ya.ru&password=password")));
     }
 
     @Test
@@ -96,12 +141,12 @@ class SecurityServiceTest {
         when(webClient.post()).thenReturn(requestBodyUriSpec);
         when(requestBodyUriSpec.uri(any(String.class))).thenReturn(requestBodySpec);
         when(requestBodySpec.contentType(MediaType.APPLICATION_FORM_URLENCODED)).thenReturn(requestBodySpec);
-        when(requestBodySpec.body(any(BodyInserters.FormInserter.class))).thenReturn(requestHeadersSpec);
+        when(requestBodySpec.bodyValue(any())).thenReturn(requestHeadersSpec);
         when(requestHeadersSpec.retrieve()).thenReturn(responseSpec);
         when(responseSpec.onStatus(any(), any())).thenReturn(responseSpec);
-        when(responseSpec.bodyToMono(any(Class.class))).thenReturn(Mono.error(new AuthException("Error from Keycloak", "O_AUTHENTICATE_ERROR")));
+        when(responseSpec.bodyToFlux(any(Class.class))).thenReturn(Flux.error(new AuthException("Error from Keycloak", "O_AUTHENTICATE_ERROR")));
 
-        Mono<AuthResponseDto> result = securityService.authenticate(authRequestDto);
+        Mono<AuthResponseDto> result = securityService.authenticate(REALM, authRequestDto);
 
         StepVerifier.create(result)
                 .expectErrorSatisfies(error -> {
@@ -118,21 +163,16 @@ class SecurityServiceTest {
         RefreshTokenRequestDto refreshTokenRequestDto = RefreshTokenRequestDto.builder()
                 .refreshToken("eyJhbGciOiJIUzUxMiIsInR5cCIgOiAiSldUIiwia2lkIiA6ICJiZDVjYWJjNS1lMmI2LTQyYzYtYjI2My0yZmNiMWU4ZmI3ZDYifQ.")
                 .build();
-        AccessTokenResponse accessTokenResponse = new AccessTokenResponse();
-        accessTokenResponse.setToken("token");
-        accessTokenResponse.setExpiresIn(3600);
-        accessTokenResponse.setRefreshToken("refreshToken");
-        accessTokenResponse.setTokenType("Bearer");
 
         when(webClient.post()).thenReturn(requestBodyUriSpec);
         when(requestBodyUriSpec.uri(any(String.class))).thenReturn(requestBodySpec);
         when(requestBodySpec.contentType(MediaType.APPLICATION_FORM_URLENCODED)).thenReturn(requestBodySpec);
-        when(requestBodySpec.body(any(BodyInserters.FormInserter.class))).thenReturn(requestHeadersSpec);
+        when(requestBodySpec.bodyValue(any())).thenReturn(requestHeadersSpec);
         when(requestHeadersSpec.retrieve()).thenReturn(responseSpec);
         when(responseSpec.onStatus(any(), any())).thenReturn(responseSpec);
-        when(responseSpec.bodyToMono(AccessTokenResponse.class)).thenReturn(Mono.just(accessTokenResponse));
+        when(responseSpec.bodyToFlux(DataBuffer.class)).thenReturn(tokenResponse());
 
-        Mono<AuthResponseDto> result = securityService.refreshToken(refreshTokenRequestDto);
+        Mono<AuthResponseDto> result = securityService.refreshToken(REALM, refreshTokenRequestDto);
 
         StepVerifier.create(result)
                 .expectNextMatches(authResponseDto ->
@@ -152,12 +192,12 @@ class SecurityServiceTest {
         when(webClient.post()).thenReturn(requestBodyUriSpec);
         when(requestBodyUriSpec.uri(any(String.class))).thenReturn(requestBodySpec);
         when(requestBodySpec.contentType(MediaType.APPLICATION_FORM_URLENCODED)).thenReturn(requestBodySpec);
-        when(requestBodySpec.body(any(BodyInserters.FormInserter.class))).thenReturn(requestHeadersSpec);
+        when(requestBodySpec.bodyValue(any())).thenReturn(requestHeadersSpec);
         when(requestHeadersSpec.retrieve()).thenReturn(responseSpec);
         when(responseSpec.onStatus(any(), any())).thenReturn(responseSpec);
-        when(responseSpec.bodyToMono(any(Class.class))).thenReturn(Mono.error(new AuthException("Error from Keycloak", "O_REFRESH_TOKEN_ERROR")));
+        when(responseSpec.bodyToFlux(any(Class.class))).thenReturn(Flux.error(new AuthException("Error from Keycloak", "O_REFRESH_TOKEN_ERROR")));
 
-        Mono<AuthResponseDto> result = securityService.refreshToken(refreshTokenRequestDto);
+        Mono<AuthResponseDto> result = securityService.refreshToken(REALM, refreshTokenRequestDto);
 
         StepVerifier.create(result)
                 .expectErrorSatisfies(error -> {
@@ -0,0 +1,174 @@
+package com.github.gluhov.orchestrator.service;
+
+import com.github.gluhov.orchestrator.entity.UserEntity;
+import com.github.gluhov.orchestrator.keycloak.KeycloakAdminClient;
+import com.github.gluhov.orchestrator.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.keycloak.representations.idm.AdminEventRepresentation;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class UserReadModelTest {
+    private static final Instant START = Instant.parse("2024-09-01T10:00:00Z");
+
+    @Mock
+    private KeycloakAdminClient keycloakAdminClient;
+    @Mock
+    private UserRepository userRepository;
+
+    private final MutableClock clock = new MutableClock();
+    private UserReadModel userReadModel;
+
+    @BeforeEach
+    void setUp() {
+        userReadModel = new UserReadModel(keycloakAdminClient, userRepository, new SimpleMeterRegistry(), true,
+                Duration.ofMinutes(1), Duration.ofMinutes(15), Duration.ofSeconds(10), Duration.ofMinutes(10), 2, clock);
+    }
+
+    @Test
+    @DisplayName("Test full sync stores every page and removes users it did not see")
+    void fullSync() {
+        when(keycloakAdminClient.listUserEvents(0, 1)).thenReturn(Mono.just(List.of(event(100, "UPDATE", "users/a-id"))));
+        when(keycloakAdminClient.listUsers(0, 2)).thenReturn(Mono.just(List.of(user("a"), user("b"))));
+        when(keycloakAdminClient.listUsers(2, 2)).thenReturn(Mono.just(List.of(user("c"))));
+        when(userRepository.upsertAll(anyList())).thenAnswer(invocation -> Mono.just((long) invocation.<List<?>>getArgument(0).size()));
+        when(userRepository.deleteSyncedBefore(START)).thenReturn(Mono.just(1L));
+
+        assertFalse(userReadModel.isFresh());
+        StepVerifier.create(userReadModel.sync()).verifyComplete();
+
+        verify(userRepository, times(2)).upsertAll(anyList());
+        verify(userRepository).deleteSyncedBefore(START);
+        assertTrue(userReadModel.isFresh());
+    }
+
+    @Test
+    @DisplayName("Test polling re-reads the users mentioned by new admin events only")
+    void applyEvents() {
+        fullSyncWithWatermark(100);
+        clock.advance(Duration.ofSeconds(10));
+        when(keycloakAdminClient.listUserEvents(0, 2)).thenReturn(Mono.just(List.of(
+                event(300, "UPDATE", "users/a-id/reset-password"),
+                event(200, "DELETE", "users/b-id"))));
+        when(keycloakAdminClient.listUserEvents(2, 2)).thenReturn(Mono.just(List.of(
+                event(150, "CREATE", "users/a-id"),
+                event(100, "UPDATE", "users/old-id"))));
+        when(keycloakAdminClient.getUser("a-id")).thenReturn(Mono.just(user("a")));
+        when(keycloakAdminClient.getUser("b-id")).thenReturn(Mono.empty());
+        ArgumentCaptor<List<UserEntity>> upserted = ArgumentCaptor.captor();
+        when(userRepository.upsertAll(upserted.capture())).thenReturn(Mono.just(1L));
+        ArgumentCaptor<Collection<String>> deleted = ArgumentCaptor.captor();
+        when(userRepository.deleteAllById(deleted.capture())).thenReturn(Mono.just(1L));
+
+        StepVerifier.create(userReadModel.sync()).verifyComplete();
+
+        assertEquals(List.of("a-id"), upserted.getValue().stream().map(UserEntity::getId).toList());
+        assertEquals(START.plusSeconds(10), upserted.getValue().get(0).getSyncedAt());
+        assertEquals(List.of("b-id"), List.copyOf(deleted.getValue()));
+        verify(keycloakAdminClient, never()).getUser("old-id");
+    }
+
+    @Test
+    @DisplayName("Test lookups fall back to Keycloak once the model is older than the staleness bound")
+    void staleLookupIsEmpty() {
+        fullSyncWithWatermark(0);
+        when(userRepository.findById("a-id")).thenReturn(Mono.just(UserEntity.builder().id("a-id").syncedAt(START).build()));
+
+        StepVerifier.create(userReadModel.findById("a-id"))
+                .assertNext(user -> assertEquals("a-id", user.getId()))
+                .verifyComplete();
+
+        clock.advance(Duration.ofMinutes(2));
+        StepVerifier.create(userReadModel.findById("a-id")).verifyComplete();
+        verify(userRepository, times(1)).findById(any());
+    }
+
+    @Test
+    @DisplayName("Test a user last read from Keycloak longer ago than the max age is not served")
+    void outdatedUserIsEmpty() {
+        fullSyncWithWatermark(0);
+        when(userRepository.findById("a-id")).thenReturn(Mono.just(UserEntity.builder()
+                .id("a-id")
+                .syncedAt(START.minus(Duration.ofMinutes(16)))
+                .build()));
+
+        assertTrue(userReadModel.isFresh());
+        StepVerifier.create(userReadModel.findById("a-id")).verifyComplete();
+    }
+
+    private void fullSyncWithWatermark(long watermark) {
+        when(keycloakAdminClient.listUserEvents(0, 1))
+                .thenReturn(Mono.just(watermark == 0 ? List.of() : List.of(event(watermark, "UPDATE", "users/a-id"))));
+        when(keycloakAdminClient.listUsers(0, 2)).thenReturn(Mono.just(List.of()));
+        when(userRepository.upsertAll(List.of())).thenReturn(Mono.just(0L));
+        when(userRepository.deleteSyncedBefore(any())).thenReturn(Mono.just(0L));
+        StepVerifier.create(userReadModel.fullSync()).verifyComplete();
+    }
+
+    private static AdminEventRepresentation event(long time, String operationType, String resourcePath) {
+        AdminEventRepresentation event = new AdminEventRepresentation();
+        event.setTime(time);
+        event.setOperationType(operationType);
+        event.setResourceType("USER");
+        event.setResourcePath(resourcePath);
+        return event;
+    }
+
+    private static UserRepresentation user(String username) {
+        UserRepresentation user = new UserRepresentation();
+        user.setId(username + "-id");
+        user.setUsername(username);
+        user.setEnabled(true);
+        return user;
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant instant = START;
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
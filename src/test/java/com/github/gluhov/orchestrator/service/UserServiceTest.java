@@ -2,42 +2,65 @@ package com.github.gluhov.orchestrator.service;
 
 import com.github.gluhov.orchestrator.dto.AuthRequestDto;
 import com.github.gluhov.orchestrator.dto.UserInfoDto;
+import com.github.gluhov.orchestrator.entity.UserEntity;
 import com.github.gluhov.orchestrator.exception.ApiException;
 import com.github.gluhov.orchestrator.exception.AuthException;
-import jakarta.ws.rs.core.Response;
+import com.github.gluhov.orchestrator.keycloak.KeycloakAdminClient;
+import com.github.gluhov.orchestrator.keycloak.KeycloakUserImporter;
+import com.github.gluhov.orchestrator.util.RequestCoalescer;
+import com.github.gluhov.orchestrator.keycloak.KeycloakRealm;
+import com.github.gluhov.orchestrator.keycloak.KeycloakRealms;
+import com.github.gluhov.orchestrator.keycloak.KeycloakResilience;
+import com.github.gluhov.orchestrator.config.KeycloakResilienceProperties;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.keycloak.admin.client.resource.RealmResource;
-import org.keycloak.admin.client.resource.UsersResource;
 import org.keycloak.representations.UserInfo;
+import org.keycloak.representations.idm.PartialImportRepresentation;
 import org.keycloak.representations.idm.UserRepresentation;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
 import reactor.test.StepVerifier;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 public class UserServiceTest {
 
     @Mock
-    private RealmResource realmResource;
-
-    @Mock
-    private UsersResource usersResource;
+    private KeycloakAdminClient keycloakAdminClient;
 
     @Mock
     private WebClient webClient;
 
-    @Mock
-    private Response response;
-
     @Mock
     private WebClient.RequestHeadersUriSpec requestHeadersUriSpec;
 
@@ -47,9 +70,126 @@ public class UserServiceTest {
     @Mock
     private WebClient.ResponseSpec responseSpec;
 
+    @Spy
+    private UserInfoCache userInfoCache = new UserInfoCache(100, Duration.ofMinutes(5));
+
+    @Spy
+    private RequestCoalescer requestCoalescer = new RequestCoalescer(new SimpleMeterRegistry());
+
+    @Spy
+    private KeycloakResilience keycloakResilience = new KeycloakResilience(CircuitBreakerRegistry.ofDefaults(),
+            BulkheadRegistry.ofDefaults(), new SimpleMeterRegistry(), ObservationRegistry.NOOP, new KeycloakResilienceProperties());
+
+    @Mock
+    private KeycloakUserImporter keycloakUserImporter;
+
+    @Mock
+    private UserReadModel userReadModel;
+
+    @Mock
+    private KeycloakRealms keycloakRealms;
+
     @InjectMocks
     private UserService userService;
 
+    private KeycloakRealm realm;
+
+    @BeforeEach
+    void setUp() {
+        realm = realm("test-realm", true, keycloakAdminClient);
+        lenient().when(keycloakRealms.forToken(any())).thenReturn(realm);
+        lenient().when(userReadModel.findById(any())).thenReturn(Mono.empty());
+    }
+
+    private static KeycloakRealm realm(String name, boolean defaultRealm, KeycloakAdminClient adminClient) {
+        return KeycloakRealm.builder()
+                .name(name)
+                .defaultRealm(defaultRealm)
+                .userinfoUrl("http://localhost:8088/realms/" + name + "/protocol/openid-connect/userinfo")
+                .adminClient(adminClient)
+                .realmResource(() -> mock(RealmResource.class))
+                .build();
+    }
+
+    private Jwt jwt(Map<String, Object> claims) {
+        return Jwt.withTokenValue("token")
+                .header("alg", "RS256")
+                .subject("subject-id")
+                .expiresAt(Instant.now().plusSeconds(300))
+                .claims(c -> c.putAll(claims))
+                .build();
+    }
+
+    @Test
+    @DisplayName("Test get user info from token claims")
+    void getInfoFromClaims() {
+        ReflectionTestUtils.setField(userService, "profileSource", "claims");
+        Jwt jwt = jwt(Map.of(
+                "email", "test@example.com",
+                "given_name", "John",
+                "family_name", "Doe",
+                "name", "John Doe",
+                "preferred_username", "johndoe"));
+
+        StepVerifier.create(userService.getInfo(jwt, "Bearer token"))
+                .assertNext(userInfoDto -> {
+                    assertEquals("test@example.com", userInfoDto.getEmail());
+                    assertEquals("John", userInfoDto.getFirstName());
+                    assertEquals("Doe", userInfoDto.getLastName());
+                    assertEquals("John Doe", userInfoDto.getUsername());
+                }).verifyComplete();
+
+        verifyNoInteractions(webClient);
+    }
+
+    @Test
+    @DisplayName("Test get user info from claims without the name claim falls back to userinfo's name")
+    void getInfoClaimsWithoutName() {
+        ReflectionTestUtils.setField(userService, "profileSource", "claims");
+        Jwt jwt = jwt(Map.of(
+                "email", "test@example.com",
+                "given_name", "John",
+                "family_name", "Doe",
+                "preferred_username", "johndoe"));
+        UserInfo userInfo = new UserInfo();
+        userInfo.setEmail("test@example.com");
+        userInfo.setName("John Doe");
+
+        when(webClient.get()).thenReturn(requestHeadersUriSpec);
+        when(requestHeadersUriSpec.uri(any(String.class))).thenReturn(requestHeadersSpec);
+        when(requestHeadersSpec.header(any(String.class), any(String.class))).thenReturn(requestHeadersSpec);
+        when(requestHeadersSpec.retrieve()).thenReturn(responseSpec);
+        when(responseSpec.onStatus(any(), any())).thenReturn(responseSpec);
+        when(responseSpec.bodyToMono(UserInfo.class)).thenReturn(Mono.just(userInfo));
+
+        StepVerifier.create(userService.getInfo(jwt, "Bearer token"))
+                .assertNext(userInfoDto -> assertEquals("John Doe", userInfoDto.getUsername()))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Test get user info with incomplete claims falls back to cached userinfo")
+    void getInfoIncompleteClaims() {
+        ReflectionTestUtils.setField(userService, "profileSource", "claims");
+        Jwt jwt = jwt(Map.of("email", "test@example.com"));
+        UserInfo userInfo = new UserInfo();
+        userInfo.setEmail("test@example.com");
+        userInfo.setName("johndoe");
+
+        when(webClient.get()).thenReturn(requestHeadersUriSpec);
+        when(requestHeadersUriSpec.uri(any(String.class))).thenReturn(requestHeadersSpec);
+        when(requestHeadersSpec.header(any(String.class), any(String.class))).thenReturn(requestHeadersSpec);
+        when(requestHeadersSpec.retrieve()).thenReturn(responseSpec);
+        when(responseSpec.onStatus(any(), any())).thenReturn(responseSpec);
+        when(responseSpec.bodyToMono(UserInfo.class)).thenReturn(Mono.just(userInfo));
+
+        StepVerifier.create(userService.getInfo(jwt, "Bearer token").then(userService.getInfo(jwt, "Bearer token")))
+                .assertNext(userInfoDto -> assertEquals("johndoe", userInfoDto.getUsername()))
+                .verifyComplete();
+
+        verify(webClient, times(1)).get();
+    }
+
     @Test
     @DisplayName("Test get user info success")
     void getInfoSuccess() {
@@ -66,7 +206,7 @@ public class UserServiceTest {
         when(responseSpec.onStatus(any(), any())).thenReturn(responseSpec);
         when(responseSpec.bodyToMono(UserInfo.class)).thenReturn(Mono.just(userInfo));
 
-        Mono<UserInfoDto> result = userService.getInfo("Bearer token");
+        Mono<UserInfoDto> result = userService.getInfo(realm, "Bearer token");
 
         StepVerifier.create(result)
                 .assertNext(userInfoDto -> {
@@ -88,7 +228,7 @@ public class UserServiceTest {
         when(responseSpec.bodyToMono(any(Class.class))).thenReturn(Mono.error(new ApiException("Error from Keycloak: ", "O_GET_INFO_ERROR")));
         when(responseSpec.onStatus(any(), any())).thenReturn(responseSpec);
 
-        StepVerifier.create(userService.getInfo("Bearer token"))
+        StepVerifier.create(userService.getInfo(realm, "Bearer token"))
                 .expectErrorSatisfies(error -> {
                     assertTrue(error instanceof ApiException);
                     assertEquals("Error from Keycloak: ", error.getMessage());
@@ -105,20 +245,32 @@ public class UserServiceTest {
                 .lastName("Doe")
                 .firstName("John").build();
 
-        when(realmResource.users()).thenReturn(usersResource);
-
-        Response response = mock(Response.class);
-        when(response.getStatus()).thenReturn(201);
-        when(response.getHeaderString("Location")).thenReturn("/users/12345");
-        when(usersResource.create(any(UserRepresentation.class))).thenReturn(response);
+        when(keycloakAdminClient.createUser(any(UserRepresentation.class))).thenReturn(Mono.just("12345"));
 
-        Mono<String> result = userService.register(authRequestDto);
+        Mono<String> result = userService.register(realm, authRequestDto);
 
         StepVerifier.create(result)
                 .expectNext("12345")
                 .verifyComplete();
 
-        verify(usersResource, times(1)).create(any(UserRepresentation.class));
+        verify(keycloakAdminClient, times(1)).createUser(any(UserRepresentation.class));
+    }
+
+    @Test
+    @DisplayName("Test register makes no blocking call of its own on a non-blocking thread")
+    void registerMakesNoBlockingCallOfItsOwn() {
+        AuthRequestDto authRequestDto = AuthRequestDto.builder()
+                .email("test@example.com")
+                .password("password")
+                .build();
+
+        when(keycloakAdminClient.createUser(any(UserRepresentation.class))).thenReturn(Mono.just("12345"));
+
+        // BlockHound fails blocking calls on non-blocking threads such as the parallel scheduler's in every test; the
+        // admin client is mocked, its WebClient path is not covered here
+        StepVerifier.create(userService.register(realm, authRequestDto).subscribeOn(Schedulers.parallel()))
+                .expectNext("12345")
+                .verifyComplete();
     }
 
     @Test
@@ -127,11 +279,9 @@ public class UserServiceTest {
         AuthRequestDto authRequestDto = AuthRequestDto.builder()
                 .email("test@example.com").build();
 
-        when(realmResource.users()).thenReturn(usersResource);
-
-        when(realmResource.users().create(any(UserRepresentation.class))).thenReturn(response);
-        when(response.getStatus()).thenReturn(400);
-        Mono<String> result = userService.register(authRequestDto);
+        when(keycloakAdminClient.createUser(any(UserRepresentation.class)))
+                .thenReturn(Mono.error(new AuthException("Error from Keycloak: ", "O_REGISTER_USER_ERROR")));
+        Mono<String> result = userService.register(realm, authRequestDto);
         StepVerifier.create(result)
                 .expectErrorSatisfies(error -> {
                     assertTrue(error instanceof AuthException);
@@ -146,17 +296,212 @@ public class UserServiceTest {
         AuthRequestDto authRequestDto = AuthRequestDto.builder()
                 .email("test@example.com").build();
 
-        when(realmResource.users()).thenReturn(usersResource);
-
-        when(realmResource.users().create(any(UserRepresentation.class))).thenReturn(response);
-        when(response.getStatus()).thenReturn(201);
-        when(response.getHeaderString("Location")).thenReturn(null);
+        when(keycloakAdminClient.createUser(any(UserRepresentation.class)))
+                .thenReturn(Mono.error(new AuthException("Missing location header after user registration", "O_REGISTER_USER_ERROR")));
 
-        StepVerifier.create(userService.register(authRequestDto))
+        StepVerifier.create(userService.register(realm, authRequestDto))
                 .expectErrorSatisfies(error -> {
                     assertTrue(error instanceof AuthException);
                     assertEquals("Failed to register user", error.getMessage());
                     assertEquals("O_REGISTER_USER_ERROR", ((AuthException) error).getErrorCode());
                 }).verify();
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Test bulk registration reports every user and keeps going after a failure")
+    void registerAllReportsEachUser() {
+        ReflectionTestUtils.setField(userService, "bulkParallelism", 1);
+        when(keycloakAdminClient.createUser(any(UserRepresentation.class)))
+                .thenReturn(Mono.just("1"))
+                .thenReturn(Mono.error(new AuthException("Error from Keycloak: ", "O_REGISTER_USER_ERROR")))
+                .thenReturn(Mono.just("3"));
+
+        Flux<AuthRequestDto> requests = Flux.just("a@example.com", "b@example.com", "c@example.com")
+                .map(email -> AuthRequestDto.builder().email(email).password("password").build());
+
+        StepVerifier.create(userService.registerAll(realm, requests))
+                .assertNext(result -> {
+                    assertEquals(0, result.getIndex());
+                    assertEquals("a@example.com", result.getEmail());
+                    assertEquals("1", result.getUserId());
+                    assertNull(result.getErrorCode());
+                })
+                .assertNext(result -> {
+                    assertEquals(1, result.getIndex());
+                    assertNull(result.getUserId());
+                    assertEquals("O_REGISTER_USER_ERROR", result.getErrorCode());
+                    assertEquals("Failed to register user", result.getErrorMessage());
+                })
+                .assertNext(result -> {
+                    assertEquals(2, result.getIndex());
+                    assertEquals("3", result.getUserId());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Test bulk registration reads no further ahead than the parallelism")
+    void registerAllBoundsParallelism() {
+        ReflectionTestUtils.setField(userService, "bulkParallelism", 2);
+        List<Sinks.One<String>> pending = new ArrayList<>();
+        when(keycloakAdminClient.createUser(any(UserRepresentation.class))).thenAnswer(invocation -> {
+            Sinks.One<String> created = Sinks.one();
+            pending.add(created);
+            return created.asMono();
+        });
+        AtomicLong requested = new AtomicLong();
+        Flux<AuthRequestDto> requests = Flux.range(0, 10)
+                .map(i -> AuthRequestDto.builder().email(i + "@example.com").password("password").build())
+                .doOnRequest(requested::addAndGet);
+
+        StepVerifier.create(userService.registerAll(realm, requests))
+                .then(() -> {
+                    assertEquals(2, pending.size());
+                    assertEquals(2, requested.get());
+                    pending.get(0).tryEmitValue("0");
+                })
+                .assertNext(result -> assertEquals(0, result.getIndex()))
+                .then(() -> assertEquals(3, pending.size()))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    @DisplayName("Test import submits chunks in order and reports a failed chunk")
+    void importAllInChunks() {
+        ReflectionTestUtils.setField(userService, "importChunkSize", 2);
+        ReflectionTestUtils.setField(userService, "importParallelism", 2);
+        List<List<UserRepresentation>> chunks = new ArrayList<>();
+        when(keycloakUserImporter.importUsers(any(), anyList(), eq(PartialImportRepresentation.Policy.SKIP))).thenAnswer(invocation -> {
+            List<UserRepresentation> chunk = invocation.getArgument(1);
+            chunks.add(chunk);
+            if (chunks.size() == 2) {
+                return Mono.error(new ApiException("Error from Keycloak: ", "O_IMPORT_USERS_ERROR"));
+            }
+            return Mono.just(new KeycloakUserImporter.ImportSummary(chunk.size(), 0, 0));
+        });
+
+        Flux<AuthRequestDto> requests = Flux.range(0, 5)
+                .map(i -> AuthRequestDto.builder().email(i + "@example.com").password("password").build());
+
+        StepVerifier.create(userService.importAll(realm, requests, PartialImportRepresentation.Policy.SKIP))
+                .assertNext(result -> {
+                    assertEquals(0, result.getChunk());
+                    assertEquals(0, result.getFirstIndex());
+                    assertEquals(2, result.getSize());
+                    assertEquals(2, result.getAdded());
+                    assertNull(result.getErrorCode());
+                })
+                .assertNext(result -> {
+                    assertEquals(1, result.getChunk());
+                    assertEquals(2, result.getFirstIndex());
+                    assertEquals(0, result.getAdded());
+                    assertEquals("O_IMPORT_USERS_ERROR", result.getErrorCode());
+                })
+                .assertNext(result -> {
+                    assertEquals(2, result.getChunk());
+                    assertEquals(4, result.getFirstIndex());
+                    assertEquals(1, result.getSize());
+                    assertEquals(1, result.getAdded());
+                })
+                .verifyComplete();
+
+        UserRepresentation first = chunks.get(0).get(0);
+        assertEquals("0@example.com", first.getUsername());
+        assertEquals("0@example.com", first.getEmail());
+        assertEquals("password", first.getCredentials().get(0).getValue());
+    }
+
+    private static UserRepresentation user(String username) {
+        UserRepresentation user = new UserRepresentation();
+        user.setId(username + "-id");
+        user.setUsername(username);
+        user.setEnabled(true);
+        return user;
+    }
+
+    @Test
+    @DisplayName("Test export pages through the users until a short page")
+    void exportAllPages() {
+        ReflectionTestUtils.setField(userService, "exportPageSize", 2);
+        when(keycloakAdminClient.listUsers(4, 2)).thenReturn(Mono.just(List.of(user("c"), user("d"))));
+        when(keycloakAdminClient.listUsers(6, 2)).thenReturn(Mono.just(List.of(user("e"))));
+
+        StepVerifier.create(userService.exportAll(realm, 4))
+                .assertNext(exported -> {
+                    assertEquals(5, exported.getCursor());
+                    assertEquals("c", exported.getUsername());
+                    assertEquals("c-id", exported.getId());
+                    assertTrue(exported.getEnabled());
+                })
+                .assertNext(exported -> assertEquals(6, exported.getCursor()))
+                .assertNext(exported -> {
+                    assertEquals(7, exported.getCursor());
+                    assertEquals("e", exported.getUsername());
+                })
+                .verifyComplete();
+
+        verify(keycloakAdminClient, times(2)).listUsers(anyLong(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Test export fetches only the next page ahead of the consumer")
+    void exportAllPrefetchesOnePage() {
+        ReflectionTestUtils.setField(userService, "exportPageSize", 2);
+        when(keycloakAdminClient.listUsers(anyLong(), anyInt())).thenReturn(Mono.just(List.of(user("a"), user("b"))));
+
+        StepVerifier.create(userService.exportAll(realm, 0), 1)
+                .assertNext(exported -> assertEquals(1, exported.getCursor()))
+                .then(() -> verify(keycloakAdminClient, times(2)).listUsers(anyLong(), anyInt()))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    @DisplayName("Test get user info is served from the read model")
+    void getInfoFromReadModel() {
+        when(userReadModel.findById("subject-id")).thenReturn(Mono.just(UserEntity.builder()
+                .id("subject-id")
+                .username("johndoe")
+                .email("test@example.com")
+                .firstName("John")
+                .lastName("Doe")
+                .build()));
+
+        StepVerifier.create(userService.getInfo(jwt(Map.of("email", "test@example.com")), "Bearer token"))
+                .assertNext(userInfoDto -> {
+                    // the userinfo name claim, not the Keycloak username
+                    assertEquals("John Doe", userInfoDto.getUsername());
+                    assertEquals("John", userInfoDto.getFirstName());
+                })
+                .verifyComplete();
+
+        verifyNoInteractions(webClient);
+    }
+
+    @Test
+    @DisplayName("Test admin user lookup falls back to Keycloak when the read model has no copy")
+    void getUserByIdFallsBackToKeycloak() {
+        when(keycloakAdminClient.getUser("c-id")).thenReturn(Mono.just(user("c")));
+
+        StepVerifier.create(userService.getUserById(realm, "c-id"))
+                .assertNext(user -> {
+                    assertEquals("c-id", user.getId());
+                    assertEquals("c", user.getUsername());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Test users of another realm are read from that realm's Keycloak, never from the read model")
+    void getUserByIdInOtherRealm() {
+        KeycloakAdminClient tenantAdminClient = mock(KeycloakAdminClient.class);
+        when(tenantAdminClient.getUser("c-id")).thenReturn(Mono.just(user("c")));
+
+        StepVerifier.create(userService.getUserById(realm("tenant-a", false, tenantAdminClient), "c-id"))
+                .assertNext(user -> assertEquals("c-id", user.getId()))
+                .verifyComplete();
+
+        verifyNoInteractions(userReadModel, keycloakAdminClient);
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.gluhov.orchestrator.util;
+
+import com.github.gluhov.orchestrator.exception.ApiException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class AdaptiveConcurrencyLimitTest {
+
+    private AdaptiveConcurrencyLimit limit(int initialLimit) {
+        return new AdaptiveConcurrencyLimit(initialLimit, 1, 10, 0.5, Duration.ofSeconds(1).toNanos(),
+                error -> !(error instanceof ApiException));
+    }
+
+    @Test
+    @DisplayName("Test calls above the limit are rejected")
+    void rejectsAboveLimit() {
+        AdaptiveConcurrencyLimit limit = limit(1);
+        Sinks.One<String> first = Sinks.one();
+
+        StepVerifier.create(limit.limit(first.asMono(), () -> new ApiException("limited", "O_LIMITED")))
+                .then(() -> StepVerifier.create(limit.limit(Mono.just("second"), () -> new ApiException("limited", "O_LIMITED")))
+                        .expectErrorMessage("limited")
+                        .verify())
+                .then(() -> first.tryEmitValue("first"))
+                .expectNext("first")
+                .verifyComplete();
+        assertEquals(0, limit.getInFlight());
+    }
+
+    @Test
+    @DisplayName("Test limit backs off on drops and grows on fast calls")
+    void adaptsLimit() {
+        AdaptiveConcurrencyLimit limit = limit(8);
+
+        StepVerifier.create(limit.limit(Mono.error(new IOException("Connection reset")), () -> new ApiException("limited", "O_LIMITED")))
+                .expectError(IOException.class)
+                .verify();
+        assertEquals(4, limit.getLimit());
+
+        StepVerifier.create(limit.limit(Mono.error(new ApiException("Bad credentials", "O_AUTHENTICATE_ERROR")), () -> new ApiException("limited", "O_LIMITED")))
+                .expectError(ApiException.class)
+                .verify();
+        assertEquals(4, limit.getLimit());
+
+        AdaptiveConcurrencyLimit small = limit(1);
+        StepVerifier.create(small.limit(Mono.just("fast"), () -> new ApiException("limited", "O_LIMITED")))
+                .expectNext("fast")
+                .verifyComplete();
+        assertEquals(2, small.getLimit());
+    }
+}
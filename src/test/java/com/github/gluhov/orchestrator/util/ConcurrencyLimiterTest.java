@@ -0,0 +1,76 @@
+package com.github.gluhov.orchestrator.util;
+
+import com.github.gluhov.orchestrator.exception.ApiException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ConcurrencyLimiterTest {
+
+    @Test
+    @DisplayName("Test calls above the cap wait for a permit")
+    void queuesAboveCap() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 10, () -> new ApiException("busy", "O_BUSY"));
+        Sinks.One<String> first = Sinks.one();
+        Sinks.One<String> second = Sinks.one();
+
+        StepVerifier.create(limiter.limit(first.asMono()))
+                .then(() -> {
+                    assertEquals(1, limiter.getInFlight());
+                    StepVerifier.create(limiter.limit(second.asMono()))
+                            .then(() -> {
+                                assertEquals(1, limiter.getPending());
+                                first.tryEmitValue("first");
+                            })
+                            .then(() -> {
+                                assertEquals(0, limiter.getPending());
+                                second.tryEmitValue("second");
+                            })
+                            .expectNext("second")
+                            .verifyComplete();
+                })
+                .expectNext("first")
+                .verifyComplete();
+
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    @DisplayName("Test calls are rejected when the queue is full")
+    void rejectsWhenQueueFull() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 0, () -> new ApiException("busy", "O_BUSY"));
+        Sinks.One<String> first = Sinks.one();
+
+        StepVerifier.create(limiter.limit(first.asMono()))
+                .then(() -> StepVerifier.create(limiter.limit(first.asMono()))
+                        .expectErrorMessage("busy")
+                        .verify())
+                .then(() -> first.tryEmitValue("first"))
+                .expectNext("first")
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Test cancelled waiter releases its place in the queue")
+    void cancelledWaiterLeavesQueue() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 10, () -> new ApiException("busy", "O_BUSY"));
+        Sinks.One<String> first = Sinks.one();
+
+        StepVerifier.create(limiter.limit(first.asMono()))
+                .then(() -> {
+                    StepVerifier.create(limiter.limit(Sinks.<String>one().asMono()))
+                            .then(() -> assertEquals(1, limiter.getPending()))
+                            .thenCancel()
+                            .verify();
+                    assertEquals(0, limiter.getPending());
+                    first.tryEmitValue("first");
+                })
+                .expectNext("first")
+                .verifyComplete();
+
+        assertEquals(0, limiter.getInFlight());
+    }
+}
@@ -0,0 +1,78 @@
+package com.github.gluhov.orchestrator.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class QueueingDelayEstimatorTest {
+    private static final long MILLIS = Duration.ofMillis(1).toNanos();
+
+    private final AtomicLong now = new AtomicLong(1_000_000 * MILLIS);
+    private final QueueingDelayEstimator estimator = new QueueingDelayEstimator(Duration.ofSeconds(1), 10,
+            Duration.ofMinutes(1), now::get);
+
+    private void respond(long millis, int times) {
+        for (int i = 0; i < times; i++) {
+            now.addAndGet(10 * MILLIS);
+            estimator.record(millis * MILLIS);
+        }
+    }
+
+    @Test
+    @DisplayName("Test responses at the baseline are not counted as queueing")
+    void noDelayAtBaseline() {
+        assertEquals(0, estimator.get());
+        respond(50, 100);
+        assertEquals(0, estimator.get());
+    }
+
+    @Test
+    @DisplayName("Test slower responses than the baseline are estimated as queueing delay")
+    void delayAboveBaseline() {
+        respond(50, 100);
+        respond(450, 500);
+        assertEquals(400 * MILLIS, estimator.get(), 5 * MILLIS);
+    }
+
+    @Test
+    @DisplayName("Test slow first responses are not taken for queueing")
+    void warmsUp() {
+        respond(2000, 1);
+        respond(50, 8);
+        assertEquals(0, estimator.get());
+        respond(50, 1);
+        // the mean of the first responses
+        assertEquals(195 * MILLIS, estimator.get(), MILLIS);
+        respond(50, 1000);
+        assertEquals(0, estimator.get(), MILLIS);
+    }
+
+    @Test
+    @DisplayName("Test the estimate fades without new responses")
+    void fadesWithoutResponses() {
+        respond(50, 100);
+        respond(1050, 500);
+        long delay = estimator.get();
+        now.addAndGet(Duration.ofSeconds(1).toNanos());
+        assertEquals(delay / Math.E, estimator.get(), 5 * MILLIS);
+        now.addAndGet(Duration.ofSeconds(10).toNanos());
+        assertTrue(estimator.get() < MILLIS);
+        // the faded delay does not come back with the next response
+        respond(50, 1);
+        assertTrue(estimator.get() < MILLIS);
+    }
+
+    @Test
+    @DisplayName("Test a baseline older than two windows is forgotten")
+    void baselineExpires() {
+        respond(50, 10);
+        now.addAndGet(Duration.ofMinutes(2).toNanos());
+        respond(200, 500);
+        assertEquals(0, estimator.get());
+    }
+}
@@ -0,0 +1,76 @@
+package com.github.gluhov.orchestrator.util;
+
+import com.github.gluhov.orchestrator.exception.ApiException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RequestCoalescerTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RequestCoalescer coalescer = new RequestCoalescer(meterRegistry);
+
+    @Test
+    @DisplayName("Test concurrent identical calls share one upstream call")
+    void sharesInFlightCall() {
+        AtomicInteger calls = new AtomicInteger();
+        Sinks.One<String> upstream = Sinks.one();
+
+        Mono<String> first = coalescer.coalesce("userinfo", "Bearer token", () -> {
+            calls.incrementAndGet();
+            return upstream.asMono();
+        });
+        Mono<String> second = coalescer.coalesce("userinfo", "Bearer token", () -> {
+            calls.incrementAndGet();
+            return upstream.asMono();
+        });
+
+        StepVerifier.create(Mono.zip(first, second))
+                .then(() -> upstream.tryEmitValue("info"))
+                .assertNext(results -> {
+                    assertEquals("info", results.getT1());
+                    assertEquals("info", results.getT2());
+                })
+                .verifyComplete();
+
+        assertEquals(1, calls.get());
+        assertEquals(2, meterRegistry.get("orchestrator.coalescer.requests").counter().count());
+        assertEquals(1, meterRegistry.get("orchestrator.coalescer.coalesced").counter().count());
+    }
+
+    @Test
+    @DisplayName("Test waiting subscribers receive the shared error")
+    void sharesError() {
+        Sinks.One<String> upstream = Sinks.one();
+
+        Mono<String> first = coalescer.coalesce("token.refresh", "refresh", upstream::asMono);
+        Mono<String> second = coalescer.coalesce("token.refresh", "refresh", upstream::asMono);
+
+        StepVerifier.create(Mono.zipDelayError(first.onErrorReturn("error-1"), second.onErrorReturn("error-2")))
+                .then(() -> upstream.tryEmitError(new ApiException("Error from Keycloak", "O_REFRESH_TOKEN_ERROR")))
+                .assertNext(results -> {
+                    assertEquals("error-1", results.getT1());
+                    assertEquals("error-2", results.getT2());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Test different credentials and finished calls are not coalesced")
+    void separatesKeys() {
+        AtomicInteger calls = new AtomicInteger();
+
+        Mono<String> call = coalescer.coalesce("userinfo", "Bearer one", () -> Mono.fromCallable(() -> "call-" + calls.incrementAndGet()));
+        Mono<String> other = coalescer.coalesce("userinfo", "Bearer two", () -> Mono.fromCallable(() -> "call-" + calls.incrementAndGet()));
+
+        StepVerifier.create(call.then(call).then(other))
+                .expectNext("call-3")
+                .verifyComplete();
+    }
+}
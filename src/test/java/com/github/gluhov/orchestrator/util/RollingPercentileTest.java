@@ -0,0 +1,35 @@
+package com.github.gluhov.orchestrator.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RollingPercentileTest {
+
+    @Test
+    @DisplayName("Test the percentile is unknown until the first recompute")
+    void unknownUntilRecomputed() {
+        RollingPercentile p95 = new RollingPercentile(0.95, 80);
+        for (int i = 1; i < 10; i++) {
+            p95.record(i);
+        }
+        assertEquals(-1, p95.get());
+        p95.record(10);
+        assertEquals(10, p95.get());
+    }
+
+    @Test
+    @DisplayName("Test the percentile covers the last values only")
+    void lastValuesOnly() {
+        RollingPercentile p95 = new RollingPercentile(0.95, 80);
+        for (int i = 1; i <= 80; i++) {
+            p95.record(i);
+        }
+        assertEquals(76, p95.get());
+        for (int i = 0; i < 80; i++) {
+            p95.record(1000 + i % 10);
+        }
+        assertEquals(1009, p95.get());
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.gluhov.orchestrator.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SlidingWindowCounterTest {
+    private static final long MINUTE = Duration.ofMinutes(1).toNanos();
+
+    private final AtomicLong now = new AtomicLong(100 * MINUTE);
+    private final SlidingWindowCounter counter = new SlidingWindowCounter(Duration.ofMinutes(1), 1024, now::get);
+
+    @Test
+    @DisplayName("Test counts are kept per key")
+    void countsPerKey() {
+        assertEquals(1, counter.increment("alice"));
+        assertEquals(2, counter.increment("alice"));
+        assertEquals(1, counter.increment("bob"));
+        counter.decrement("alice");
+        assertEquals(1, counter.get("alice"));
+        assertEquals(0, counter.get("carol"));
+    }
+
+    @Test
+    @DisplayName("Test the previous window is weighted by its part still inside the sliding window")
+    void slidesOverWindows() {
+        for (int i = 0; i < 10; i++) {
+            counter.increment("alice");
+        }
+        now.addAndGet(MINUTE + MINUTE / 4);
+        assertEquals(7.5, counter.get("alice"), 0.01);
+        now.addAndGet(MINUTE);
+        assertEquals(0, counter.get("alice"));
+    }
+
+    @Test
+    @DisplayName("Test memory stays fixed and estimates stay close with many more keys than cells")
+    void boundedWithManyKeys() {
+        for (int i = 0; i < 100_000; i++) {
+            counter.increment("user-" + i);
+        }
+        for (int i = 0; i < 20; i++) {
+            counter.increment("alice");
+        }
+        // a collision can only overestimate
+        double alice = counter.get("alice");
+        assertTrue(alice >= 20, "estimate " + alice);
+    }
+}